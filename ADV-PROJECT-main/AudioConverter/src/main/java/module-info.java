@@ -5,13 +5,16 @@ module se233.audioconverter {
     requires com.google.gson;
     requires org.apache.commons.lang3;
     requires org.slf4j;
+    requires static jdk.incubator.vector;
+    requires jdk.management;
+    requires jdk.httpserver;
 
     // เพิ่ม requires สำหรับ ffmpeg
     requires ffmpeg;
 
     opens se233.audioconverter to javafx.fxml;
     opens se233.audioconverter.controller to javafx.fxml;
-    opens se233.audioconverter.model to javafx.fxml;
+    opens se233.audioconverter.model to javafx.fxml, com.google.gson;
 
     exports se233.audioconverter;
     exports se233.audioconverter.controller;
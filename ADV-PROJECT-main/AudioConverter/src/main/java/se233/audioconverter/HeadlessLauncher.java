@@ -0,0 +1,290 @@
+package se233.audioconverter;
+
+import se233.audioconverter.controller.AdaptiveConcurrencyController;
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.PresetDefinition;
+import se233.audioconverter.model.TuningProfile;
+import se233.audioconverter.service.AppConfig;
+import se233.audioconverter.service.AppDataDirectory;
+import se233.audioconverter.service.AutoTuner;
+import se233.audioconverter.service.ConversionHttpServer;
+import se233.audioconverter.service.FFmpegService;
+import se233.audioconverter.service.PresetLibrary;
+import se233.audioconverter.service.ProcessPriority;
+import se233.audioconverter.service.QueueWorker;
+import se233.audioconverter.service.SharedJobQueue;
+import se233.audioconverter.service.WatchFolderService;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Entry point for running without the GUI.
+//   watch <inboxDir> <outputDir> [--preset NAME]
+//   submit <queueDir> <outputDir> [--preset NAME] <file>...
+//   worker <queueDir> [--slots N] [--node ID]
+//   serve [--port N]
+//   autotune [--formats MP3,FLAC] [--seconds N]
+// watch, worker and serve also take --nice N --ionice CLASS[:LEVEL] --cpus LIST --cpus-per-job N
+public class HeadlessLauncher {
+    private static final int WORKER_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(2);
+        }
+
+        String command = args[0];
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        switch (command) {
+            case "watch" -> runWatch(rest);
+            case "submit" -> runSubmit(rest);
+            case "worker" -> runWorker(rest);
+            case "serve" -> runServer(rest);
+            case "autotune" -> runAutotune(rest);
+            default -> {
+                System.err.println("Unknown command: " + command);
+                printUsage();
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void runWatch(String[] args) throws Exception {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(2);
+        }
+        Path inbox = Paths.get(args[0]);
+        Path outputDir = Paths.get(args[1]);
+        ConversionSettings settings = settingsFromArgs(args);
+        AppConfig config = AppConfig.get();
+
+        FFmpegService ffmpegService = new FFmpegService();
+        ffmpegService.setProcessPriority(processPriority(config, args));
+        int workerCount = workerCount(config, ffmpegService, settings.getOutputFormat());
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        DeviceAwareScheduler scheduler = DeviceAwareScheduler.fromConfig(workers, workerCount, config);
+        WatchFolderService watcher = new WatchFolderService(inbox, outputDir, settings, ffmpegService,
+                scheduler, AppDataDirectory.resolve(WatchFolderService.journalFileName(inbox)),
+                config.getLong("watch.settleMillis", 5000));
+        watcher.start();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.close();
+            } catch (Exception e) {
+                // shutting down anyway
+            }
+            workers.shutdown();
+            ffmpegService.shutdown();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    private static void runSubmit(String[] args) throws Exception {
+        if (args.length < 3) {
+            printUsage();
+            System.exit(2);
+        }
+        Path outputDir = Paths.get(args[1]).toAbsolutePath();
+        ConversionSettings settings = settingsFromArgs(args);
+        SharedJobQueue queue = new SharedJobQueue(Paths.get(args[0]), nodeId(args), leaseTimeout());
+
+        for (String file : positionalArgs(args, 2)) {
+            String id = queue.submit(Paths.get(file).toAbsolutePath().toString(),
+                    outputDir.toString(), settings);
+            System.out.println(id + " " + file);
+        }
+    }
+
+    private static void runWorker(String[] args) throws Exception {
+        if (args.length < 1) {
+            printUsage();
+            System.exit(2);
+        }
+        AppConfig config = AppConfig.get();
+        String slots = optionValue(args, "--slots");
+        SharedJobQueue queue = new SharedJobQueue(Paths.get(args[0]), nodeId(args), leaseTimeout());
+        FFmpegService ffmpegService = new FFmpegService();
+        ffmpegService.setProcessPriority(processPriority(config, args));
+        QueueWorker worker = new QueueWorker(queue, ffmpegService,
+                slots != null ? Integer.parseInt(slots) : workerCount(config, ffmpegService, null),
+                config.getLong("queue.pollMillis", 2000));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            worker.close();
+            ffmpegService.shutdown();
+        }));
+        worker.run();
+    }
+
+    private static void runServer(String[] args) throws Exception {
+        AppConfig config = AppConfig.get();
+        String port = optionValue(args, "--port");
+
+        FFmpegService ffmpegService = new FFmpegService();
+        ffmpegService.setProcessPriority(processPriority(config, args));
+        int workerCount = workerCount(config, ffmpegService, null);
+        int maxWorkers = Math.max(workerCount, config.getInt("adaptive.maxWorkers",
+                Runtime.getRuntime().availableProcessors()));
+
+        // The pool holds enough threads for the adaptive ceiling; the scheduler limit decides how many run
+        ExecutorService workers = Executors.newFixedThreadPool(maxWorkers);
+        DeviceAwareScheduler scheduler = DeviceAwareScheduler.fromConfig(workers, workerCount, config);
+        AdaptiveConcurrencyController adaptive = AdaptiveConcurrencyController.fromConfig(
+                scheduler, ffmpegService::getProcessedAudioSeconds, maxWorkers, config);
+        ConversionHttpServer server = new ConversionHttpServer(
+                new InetSocketAddress(config.getString("server.bind", "127.0.0.1"),
+                        port != null ? Integer.parseInt(port) : config.getInt("server.port", 8089)),
+                scheduler, ffmpegService, AppDataDirectory.resolve("server"),
+                config.getInt("server.maxQueued", 256));
+        if (adaptive != null) {
+            server.setMetricsSource(adaptive::getMetrics);
+            adaptive.start();
+        }
+        server.start();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (adaptive != null) {
+                adaptive.close();
+            }
+            server.close();
+            workers.shutdown();
+            ffmpegService.shutdown();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    private static void runAutotune(String[] args) throws Exception {
+        String formatList = optionValue(args, "--formats");
+        String seconds = optionValue(args, "--seconds");
+        List<ConversionSettings.OutputFormat> formats = new ArrayList<>();
+        if (formatList != null) {
+            for (String name : formatList.split(",")) {
+                formats.add(ConversionSettings.OutputFormat.valueOf(name.trim().toUpperCase()));
+            }
+        } else {
+            formats.addAll(Arrays.asList(ConversionSettings.OutputFormat.values()));
+        }
+
+        FFmpegService ffmpegService = new FFmpegService();
+        AutoTuner tuner = new AutoTuner(ffmpegService.getFfmpegExecutable(),
+                seconds != null ? Integer.parseInt(seconds) : AppConfig.get().getInt("autotune.seconds", 20));
+        TuningProfile profile = tuner.run(formats);
+
+        Path path = AutoTuner.profilePath(AppConfig.get());
+        AutoTuner.save(profile, path);
+        for (ConversionSettings.OutputFormat format : formats) {
+            TuningProfile.FormatTuning tuning = profile.get(format);
+            System.out.printf("%-5s workers=%d threads=%d %.1fx realtime%n", format,
+                    tuning.getWorkers(), tuning.getThreads(), tuning.getRealtimeFactor());
+        }
+        System.out.println("Profile written to " + path);
+        ffmpegService.shutdown();
+    }
+
+    // An explicit workers setting wins, then the autotune profile, then the built-in default
+    private static int workerCount(AppConfig config, FFmpegService ffmpegService,
+                                   ConversionSettings.OutputFormat format) {
+        TuningProfile profile = ffmpegService.getTuningProfile();
+        int tuned = format != null ? profile.workersFor(format, WORKER_THREADS)
+                : profile.getMaxWorkers(WORKER_THREADS);
+        return config.getInt("workers", tuned);
+    }
+
+    // Command-line options override the process.* config keys
+    private static ProcessPriority processPriority(AppConfig config, String[] args) {
+        String cpusPerJob = optionValue(args, "--cpus-per-job");
+        return ProcessPriority.parse(
+                optionOrConfig(args, "--nice", config, "process.nice"),
+                optionOrConfig(args, "--ionice", config, "process.ionice"),
+                optionOrConfig(args, "--cpus", config, "process.cpus"),
+                cpusPerJob != null ? Integer.parseInt(cpusPerJob) : config.getInt("process.cpusPerJob", 0));
+    }
+
+    private static String optionOrConfig(String[] args, String option, AppConfig config, String key) {
+        String value = optionValue(args, option);
+        return value != null ? value : config.getString(key, null);
+    }
+
+    private static String nodeId(String[] args) {
+        String node = optionValue(args, "--node");
+        if (node != null) {
+            return node;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    private static long leaseTimeout() {
+        return AppConfig.get().getLong("queue.leaseTimeoutMillis", 60000);
+    }
+
+    // Arguments from index start on that are neither options nor option values
+    static List<String> positionalArgs(String[] args, int start) {
+        List<String> result = new ArrayList<>();
+        for (int i = start; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                i++;
+            } else {
+                result.add(args[i]);
+            }
+        }
+        return result;
+    }
+
+    static ConversionSettings settingsFromArgs(String[] args) {
+        ConversionSettings settings = new ConversionSettings();
+        String presetId = optionValue(args, "--preset");
+        if (presetId != null) {
+            PresetDefinition preset = PresetLibrary.fromConfig(AppConfig.get()).find(presetId);
+            if (preset == null) {
+                throw new IllegalArgumentException("Unknown preset: " + presetId);
+            }
+            settings.loadFromPreset(preset);
+        }
+        return settings;
+    }
+
+    static String optionValue(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HeadlessLauncher <command> [options]");
+        System.err.println("  watch <inboxDir> <outputDir> [--preset NAME]");
+        System.err.println("  submit <queueDir> <outputDir> [--preset NAME] <file>...");
+        System.err.println("  worker <queueDir> [--slots N] [--node ID]");
+        System.err.println("  serve [--port N]");
+        System.err.println("  autotune [--formats MP3,FLAC] [--seconds N]");
+        System.err.println("Scheduling (watch, worker, serve): --nice 0-19 --ionice idle|best-effort[:N]|realtime[:N]");
+        System.err.println("  --cpus 0-3,8 --cpus-per-job N");
+        System.err.println("Presets: " + PresetLibrary.fromConfig(AppConfig.get()).getPresets().stream()
+                .map(PresetDefinition::getId).toList());
+    }
+}
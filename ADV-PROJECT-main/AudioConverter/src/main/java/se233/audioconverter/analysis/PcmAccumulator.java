@@ -0,0 +1,48 @@
+package se233.audioconverter.analysis;
+
+// Running totals for one scan. Samples are normalized to [-1, 1] before being added,
+// so results are independent of the bit depth.
+public class PcmAccumulator {
+    double peak;
+    double sum;
+    double sumSquares;
+    long clippedSamples;
+    long samples;
+    long firstLoudSample = -1;
+    long lastLoudSample = -1;
+
+    public double getPeak() {
+        return peak;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getSumSquares() {
+        return sumSquares;
+    }
+
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getFirstLoudSample() {
+        return firstLoudSample;
+    }
+
+    public long getLastLoudSample() {
+        return lastLoudSample;
+    }
+
+    void markLoud(long first, long last) {
+        if (firstLoudSample < 0) {
+            firstLoudSample = first;
+        }
+        lastLoudSample = last;
+    }
+}
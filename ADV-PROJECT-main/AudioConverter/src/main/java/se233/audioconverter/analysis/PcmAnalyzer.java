@@ -0,0 +1,131 @@
+package se233.audioconverter.analysis;
+
+import se233.audioconverter.exception.AudioConversionException;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.PcmAnalysis;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Computes level statistics straight from memory-mapped WAV data instead of spawning ffmpeg.
+public class PcmAnalyzer {
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+    private static final double DEFAULT_SILENCE_DBFS = -60.0;
+
+    private final PcmKernel kernel;
+    private final double silenceThreshold;
+
+    public PcmAnalyzer() {
+        this(selectKernel(), DEFAULT_SILENCE_DBFS);
+    }
+
+    public PcmAnalyzer(PcmKernel kernel, double silenceThresholdDbfs) {
+        this.kernel = kernel;
+        this.silenceThreshold = Math.pow(10.0, silenceThresholdDbfs / 20.0);
+    }
+
+    // Vector kernels need the incubator module (--add-modules jdk.incubator.vector);
+    // -Daudioconverter.analysis.scalar=true forces the fallback.
+    public static PcmKernel selectKernel() {
+        if (!Boolean.getBoolean("audioconverter.analysis.scalar")
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorPcmKernel();
+            } catch (LinkageError e) {
+                // fall through to scalar
+            }
+        }
+        return new ScalarPcmKernel();
+    }
+
+    public static boolean canAnalyze(AudioFile audioFile) {
+        return "wav".equalsIgnoreCase(audioFile.getFormat());
+    }
+
+    public PcmAnalysis analyze(AudioFile audioFile) throws AudioConversionException {
+        try {
+            return analyze(Paths.get(audioFile.getFilePath()));
+        } catch (IOException e) {
+            throw new AudioConversionException(
+                    audioFile.getName(),
+                    AudioConversionException.ErrorType.IO_ERROR,
+                    e
+            );
+        }
+    }
+
+    public PcmAnalysis analyze(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WavFormat format = WavFormat.read(channel);
+            if (!format.isSupported()) {
+                throw new IOException(String.format("Unsupported WAV encoding (format %d, %d bit)",
+                        format.getAudioFormat(), format.getBitsPerSample()));
+            }
+
+            int bytesPerSample = format.getBytesPerSample();
+            long frameBytes = (long) bytesPerSample * format.getChannels();
+            long window = Math.max(frameBytes, WINDOW_BYTES - (WINDOW_BYTES % frameBytes));
+            long dataLength = format.getDataLength() - (format.getDataLength() % frameBytes);
+
+            PcmAccumulator acc = new PcmAccumulator();
+            for (long offset = 0; offset < dataLength; offset += window) {
+                long length = Math.min(window, dataLength - offset);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        format.getDataOffset() + offset, length);
+                int samples = (int) (length / bytesPerSample);
+                long base = offset / bytesPerSample;
+                scanWindow(format, buffer, samples, base, acc);
+            }
+
+            return toResult(format, acc);
+        }
+    }
+
+    private void scanWindow(WavFormat format, MappedByteBuffer buffer, int samples, long base,
+                            PcmAccumulator acc) {
+        if (format.getAudioFormat() == WavFormat.FORMAT_FLOAT) {
+            kernel.scanFloat(buffer, samples, base, silenceThreshold, acc);
+            return;
+        }
+        switch (format.getBitsPerSample()) {
+            case 16 -> kernel.scan16(buffer, samples, base, silenceThreshold, acc);
+            case 24 -> kernel.scan24(buffer, samples, base, silenceThreshold, acc);
+            default -> kernel.scan32(buffer, samples, base, silenceThreshold, acc);
+        }
+    }
+
+    private PcmAnalysis toResult(WavFormat format, PcmAccumulator acc) {
+        int channels = format.getChannels();
+        double sampleRate = format.getSampleRate();
+        long frames = acc.getSamples() / channels;
+        double duration = frames / sampleRate;
+
+        double leadingSilence;
+        double trailingSilence;
+        if (acc.getFirstLoudSample() < 0) {
+            leadingSilence = duration;
+            trailingSilence = duration;
+        } else {
+            leadingSilence = (acc.getFirstLoudSample() / channels) / sampleRate;
+            trailingSilence = (frames - 1 - acc.getLastLoudSample() / channels) / sampleRate;
+        }
+
+        double rms = acc.getSamples() > 0 ? Math.sqrt(acc.getSumSquares() / acc.getSamples()) : 0.0;
+        double dcOffset = acc.getSamples() > 0 ? acc.getSum() / acc.getSamples() : 0.0;
+
+        return new PcmAnalysis(toDbfs(acc.getPeak()), toDbfs(rms), dcOffset,
+                acc.getClippedSamples(), leadingSilence, trailingSilence, duration);
+    }
+
+    private static double toDbfs(double level) {
+        return level > 0 ? 20.0 * Math.log10(level) : Double.NEGATIVE_INFINITY;
+    }
+
+    public PcmKernel getKernel() {
+        return kernel;
+    }
+}
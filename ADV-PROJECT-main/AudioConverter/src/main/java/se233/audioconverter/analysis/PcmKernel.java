@@ -0,0 +1,21 @@
+package se233.audioconverter.analysis;
+
+import java.nio.ByteBuffer;
+
+// Scans a little-endian PCM window. baseSample is the index of the first sample in the
+// window (counted over interleaved samples) and is used for the silence bounds.
+public interface PcmKernel {
+    void scan16(ByteBuffer buffer, int sampleCount, long baseSample,
+                double silenceThreshold, PcmAccumulator acc);
+
+    void scan24(ByteBuffer buffer, int sampleCount, long baseSample,
+                double silenceThreshold, PcmAccumulator acc);
+
+    void scan32(ByteBuffer buffer, int sampleCount, long baseSample,
+                double silenceThreshold, PcmAccumulator acc);
+
+    void scanFloat(ByteBuffer buffer, int sampleCount, long baseSample,
+                   double silenceThreshold, PcmAccumulator acc);
+
+    String getName();
+}
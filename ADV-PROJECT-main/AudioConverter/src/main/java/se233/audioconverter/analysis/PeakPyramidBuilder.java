@@ -0,0 +1,111 @@
+package se233.audioconverter.analysis;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Collects min/max peaks for fixed-size buckets of frames while the audio is decoded once,
+// then folds them pairwise into coarser levels. Peaks are quantized to signed bytes.
+public class PeakPyramidBuilder {
+    public static final int MAGIC = 0x57504B31; // "WPK1"
+    public static final int DEFAULT_BUCKET_FRAMES = 256;
+    private static final int MIN_LEVEL_BUCKETS = 64;
+
+    private final int channels;
+    private final int sampleRate;
+    private final int bucketFrames;
+
+    private byte[] base = new byte[4096];
+    private int baseBuckets;
+    private long frames;
+    private int samplesInBucket;
+    private float bucketMin = Float.MAX_VALUE;
+    private float bucketMax = -Float.MAX_VALUE;
+
+    public PeakPyramidBuilder(int channels, int sampleRate) {
+        this(channels, sampleRate, DEFAULT_BUCKET_FRAMES);
+    }
+
+    public PeakPyramidBuilder(int channels, int sampleRate, int bucketFrames) {
+        this.channels = Math.max(1, channels);
+        this.sampleRate = sampleRate;
+        this.bucketFrames = bucketFrames;
+    }
+
+    // Samples are interleaved and normalized to [-1, 1]
+    public void add(float sample) {
+        if (sample < bucketMin) {
+            bucketMin = sample;
+        }
+        if (sample > bucketMax) {
+            bucketMax = sample;
+        }
+        samplesInBucket++;
+        if (samplesInBucket == bucketFrames * channels) {
+            flushBucket();
+        }
+    }
+
+    private void flushBucket() {
+        if (samplesInBucket == 0) {
+            return;
+        }
+        if (baseBuckets * 2 + 2 > base.length) {
+            base = Arrays.copyOf(base, base.length * 2);
+        }
+        base[baseBuckets * 2] = quantize(bucketMin);
+        base[baseBuckets * 2 + 1] = quantize(bucketMax);
+        baseBuckets++;
+        frames += samplesInBucket / channels;
+        samplesInBucket = 0;
+        bucketMin = Float.MAX_VALUE;
+        bucketMax = -Float.MAX_VALUE;
+    }
+
+    private static byte quantize(float value) {
+        int q = Math.round(value * 127f);
+        return (byte) Math.max(-127, Math.min(127, q));
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        flushBucket();
+
+        List<byte[]> levels = new ArrayList<>();
+        byte[] level = Arrays.copyOf(base, baseBuckets * 2);
+        levels.add(level);
+        while (level.length / 2 > MIN_LEVEL_BUCKETS) {
+            level = fold(level);
+            levels.add(level);
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(sampleRate);
+        out.writeLong(frames);
+        out.writeInt(bucketFrames);
+        out.writeInt(levels.size());
+        for (byte[] l : levels) {
+            out.writeInt(l.length / 2);
+        }
+        for (byte[] l : levels) {
+            out.write(l);
+        }
+        out.flush();
+    }
+
+    private static byte[] fold(byte[] level) {
+        int buckets = level.length / 2;
+        int folded = (buckets + 1) / 2;
+        byte[] result = new byte[folded * 2];
+        for (int i = 0; i < folded; i++) {
+            int a = i * 2;
+            int b = Math.min(a + 1, buckets - 1);
+            result[i * 2] = (byte) Math.min(level[a * 2], level[b * 2]);
+            result[i * 2 + 1] = (byte) Math.max(level[a * 2 + 1], level[b * 2 + 1]);
+        }
+        return result;
+    }
+}
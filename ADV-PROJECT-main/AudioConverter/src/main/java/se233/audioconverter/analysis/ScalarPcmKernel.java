@@ -0,0 +1,88 @@
+package se233.audioconverter.analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Portable implementation, also used for the tail of each window in the vector kernel.
+public class ScalarPcmKernel implements PcmKernel {
+    private static final double SCALE_16 = 1.0 / 32768.0;
+    private static final double SCALE_24 = 1.0 / 8388608.0;
+    private static final double SCALE_32 = 1.0 / 2147483648.0;
+
+    @Override
+    public void scan16(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        scan16(buffer, 0, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    void scan16(ByteBuffer buffer, int fromSample, int toSample, long baseSample,
+                double silenceThreshold, PcmAccumulator acc) {
+        ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = fromSample; i < toSample; i++) {
+            short raw = le.getShort(i * 2);
+            boolean clipped = raw == Short.MAX_VALUE || raw == Short.MIN_VALUE;
+            add(raw * SCALE_16, clipped, baseSample + i, silenceThreshold, acc);
+        }
+    }
+
+    @Override
+    public void scan24(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        for (int i = 0; i < sampleCount; i++) {
+            int offset = i * 3;
+            int raw = (buffer.get(offset) & 0xFF)
+                    | ((buffer.get(offset + 1) & 0xFF) << 8)
+                    | (buffer.get(offset + 2) << 16);
+            boolean clipped = raw == 0x7FFFFF || raw == -0x800000;
+            add(raw * SCALE_24, clipped, baseSample + i, silenceThreshold, acc);
+        }
+    }
+
+    @Override
+    public void scan32(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < sampleCount; i++) {
+            int raw = le.getInt(i * 4);
+            boolean clipped = raw == Integer.MAX_VALUE || raw == Integer.MIN_VALUE;
+            add(raw * SCALE_32, clipped, baseSample + i, silenceThreshold, acc);
+        }
+    }
+
+    @Override
+    public void scanFloat(ByteBuffer buffer, int sampleCount, long baseSample,
+                          double silenceThreshold, PcmAccumulator acc) {
+        scanFloat(buffer, 0, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    void scanFloat(ByteBuffer buffer, int fromSample, int toSample, long baseSample,
+                   double silenceThreshold, PcmAccumulator acc) {
+        ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = fromSample; i < toSample; i++) {
+            double value = le.getFloat(i * 4);
+            add(value, Math.abs(value) >= 1.0, baseSample + i, silenceThreshold, acc);
+        }
+    }
+
+    private static void add(double value, boolean clipped, long index,
+                            double silenceThreshold, PcmAccumulator acc) {
+        double abs = Math.abs(value);
+        if (abs > acc.peak) {
+            acc.peak = abs;
+        }
+        acc.sum += value;
+        acc.sumSquares += value * value;
+        acc.samples++;
+        if (clipped) {
+            acc.clippedSamples++;
+        }
+        if (abs > silenceThreshold) {
+            acc.markLoud(index, index);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,143 @@
+package se233.audioconverter.analysis;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// SIMD kernels for 16-bit integer and 32-bit float PCM (jdk.incubator.vector).
+// Only load this class after checking the module is present, see PcmAnalyzer.selectKernel().
+public class VectorPcmKernel implements PcmKernel {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final double SCALE_16 = 1.0 / 32768.0;
+
+    // Float partial sums are folded into the double accumulator this often to keep precision
+    private static final int FLUSH_INTERVAL = 256;
+
+    private final ScalarPcmKernel scalar = new ScalarPcmKernel();
+
+    @Override
+    public void scan16(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        int step = SHORTS.length();
+        int parts = SHORTS.length() / FLOATS.length();
+        int upper = SHORTS.loopBound(sampleCount);
+        short threshold = (short) Math.min(Short.MAX_VALUE, Math.floor(silenceThreshold * 32768.0));
+
+        ShortVector max = ShortVector.broadcast(SHORTS, Short.MIN_VALUE);
+        ShortVector min = ShortVector.broadcast(SHORTS, Short.MAX_VALUE);
+        FloatVector sum = FloatVector.zero(FLOATS);
+        FloatVector squares = FloatVector.zero(FLOATS);
+        long clipped = 0;
+        int pending = 0;
+
+        for (int i = 0; i < upper; i += step) {
+            ShortVector v = ShortVector.fromByteBuffer(SHORTS, buffer, i * 2, ByteOrder.LITTLE_ENDIAN);
+            max = max.max(v);
+            min = min.min(v);
+
+            VectorMask<Short> clip = v.compare(VectorOperators.EQ, Short.MAX_VALUE)
+                    .or(v.compare(VectorOperators.EQ, Short.MIN_VALUE));
+            clipped += clip.trueCount();
+
+            VectorMask<Short> loud = v.compare(VectorOperators.GT, threshold)
+                    .or(v.compare(VectorOperators.LT, (short) -threshold));
+            if (loud.anyTrue()) {
+                acc.markLoud(baseSample + i + loud.firstTrue(), baseSample + i + loud.lastTrue());
+            }
+
+            for (int part = 0; part < parts; part++) {
+                FloatVector f = (FloatVector) v.convert(VectorOperators.S2F, part);
+                sum = sum.add(f);
+                squares = f.fma(f, squares);
+            }
+
+            if (++pending == FLUSH_INTERVAL) {
+                acc.sum += sum.reduceLanes(VectorOperators.ADD) * SCALE_16;
+                acc.sumSquares += squares.reduceLanes(VectorOperators.ADD) * SCALE_16 * SCALE_16;
+                sum = FloatVector.zero(FLOATS);
+                squares = FloatVector.zero(FLOATS);
+                pending = 0;
+            }
+        }
+
+        acc.sum += sum.reduceLanes(VectorOperators.ADD) * SCALE_16;
+        acc.sumSquares += squares.reduceLanes(VectorOperators.ADD) * SCALE_16 * SCALE_16;
+        acc.clippedSamples += clipped;
+        acc.samples += upper;
+        if (upper > 0) {
+            int peakRaw = Math.max(max.reduceLanes(VectorOperators.MAX), -min.reduceLanes(VectorOperators.MIN));
+            acc.peak = Math.max(acc.peak, peakRaw * SCALE_16);
+        }
+
+        scalar.scan16(buffer, upper, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    @Override
+    public void scanFloat(ByteBuffer buffer, int sampleCount, long baseSample,
+                          double silenceThreshold, PcmAccumulator acc) {
+        int step = FLOATS.length();
+        int upper = FLOATS.loopBound(sampleCount);
+        float threshold = (float) silenceThreshold;
+
+        FloatVector peak = FloatVector.zero(FLOATS);
+        FloatVector sum = FloatVector.zero(FLOATS);
+        FloatVector squares = FloatVector.zero(FLOATS);
+        long clipped = 0;
+        int pending = 0;
+
+        for (int i = 0; i < upper; i += step) {
+            FloatVector v = FloatVector.fromByteBuffer(FLOATS, buffer, i * 4, ByteOrder.LITTLE_ENDIAN);
+            FloatVector abs = v.abs();
+            peak = peak.max(abs);
+            clipped += abs.compare(VectorOperators.GE, 1.0f).trueCount();
+
+            VectorMask<Float> loud = abs.compare(VectorOperators.GT, threshold);
+            if (loud.anyTrue()) {
+                acc.markLoud(baseSample + i + loud.firstTrue(), baseSample + i + loud.lastTrue());
+            }
+
+            sum = sum.add(v);
+            squares = v.fma(v, squares);
+
+            if (++pending == FLUSH_INTERVAL) {
+                acc.sum += sum.reduceLanes(VectorOperators.ADD);
+                acc.sumSquares += squares.reduceLanes(VectorOperators.ADD);
+                sum = FloatVector.zero(FLOATS);
+                squares = FloatVector.zero(FLOATS);
+                pending = 0;
+            }
+        }
+
+        acc.sum += sum.reduceLanes(VectorOperators.ADD);
+        acc.sumSquares += squares.reduceLanes(VectorOperators.ADD);
+        acc.clippedSamples += clipped;
+        acc.samples += upper;
+        acc.peak = Math.max(acc.peak, peak.reduceLanes(VectorOperators.MAX));
+
+        scalar.scanFloat(buffer, upper, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    // 24/32-bit integer PCM is rare in our inputs, keep the scalar path for those
+    @Override
+    public void scan24(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        scalar.scan24(buffer, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    @Override
+    public void scan32(ByteBuffer buffer, int sampleCount, long baseSample,
+                       double silenceThreshold, PcmAccumulator acc) {
+        scalar.scan32(buffer, sampleCount, baseSample, silenceThreshold, acc);
+    }
+
+    @Override
+    public String getName() {
+        return "vector-" + SHORTS.vectorBitSize();
+    }
+}
@@ -0,0 +1,127 @@
+package se233.audioconverter.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Minimal RIFF/WAVE header reader: locates the fmt and data chunks.
+public class WavFormat {
+    public static final int FORMAT_PCM = 1;
+    public static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final int audioFormat;
+    private final int channels;
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final long dataOffset;
+    private final long dataLength;
+
+    private WavFormat(int audioFormat, int channels, int sampleRate, int bitsPerSample,
+                      long dataOffset, long dataLength) {
+        this.audioFormat = audioFormat;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    public static WavFormat read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) { // "RIFF" / "WAVE"
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+
+        int audioFormat = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        long position = 12;
+        long fileSize = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (position + 8 <= fileSize) {
+            chunk.clear();
+            readFully(channel, chunk, position);
+            int id = chunk.getInt(0);
+            long size = Integer.toUnsignedLong(chunk.getInt(4));
+            long body = position + 8;
+
+            if (id == 0x20746D66) { // "fmt "
+                if (size < 16) {
+                    throw new IOException("WAV fmt chunk too short: " + size + " bytes");
+                }
+                ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 40)).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, fmt, body);
+                audioFormat = Short.toUnsignedInt(fmt.getShort(0));
+                channels = Short.toUnsignedInt(fmt.getShort(2));
+                sampleRate = fmt.getInt(4);
+                bitsPerSample = Short.toUnsignedInt(fmt.getShort(14));
+                if (audioFormat == FORMAT_EXTENSIBLE && fmt.capacity() >= 26) {
+                    // First two bytes of the SubFormat GUID carry the real format tag
+                    audioFormat = Short.toUnsignedInt(fmt.getShort(24));
+                }
+            } else if (id == 0x61746164) { // "data"
+                if (audioFormat < 0) {
+                    throw new IOException("WAV data chunk before fmt chunk");
+                }
+                // Streamed/oversized files often carry a bogus size, trust the file length instead
+                long length = Math.min(size, fileSize - body);
+                return new WavFormat(audioFormat, channels, sampleRate, bitsPerSample, body, length);
+            }
+
+            position = body + size + (size & 1);
+        }
+        throw new IOException("WAV file has no data chunk");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of WAV header");
+            }
+        }
+    }
+
+    public boolean isSupported() {
+        return channels > 0 && sampleRate > 0 &&
+                ((audioFormat == FORMAT_PCM && (bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32))
+                        || (audioFormat == FORMAT_FLOAT && bitsPerSample == 32));
+    }
+
+    public int getAudioFormat() {
+        return audioFormat;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public int getBytesPerSample() {
+        return bitsPerSample / 8;
+    }
+
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public long getSampleCount() {
+        return dataLength / getBytesPerSample();
+    }
+}
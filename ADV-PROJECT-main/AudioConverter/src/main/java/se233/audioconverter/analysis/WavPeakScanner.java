@@ -0,0 +1,70 @@
+package se233.audioconverter.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Feeds a WAV file into a PeakPyramidBuilder straight from mapped windows, without ffmpeg.
+public final class WavPeakScanner {
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private WavPeakScanner() {
+    }
+
+    public static PeakPyramidBuilder scan(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WavFormat format = WavFormat.read(channel);
+            if (!format.isSupported()) {
+                throw new IOException(String.format("Unsupported WAV encoding (format %d, %d bit)",
+                        format.getAudioFormat(), format.getBitsPerSample()));
+            }
+
+            PeakPyramidBuilder builder = new PeakPyramidBuilder(format.getChannels(), format.getSampleRate());
+            int bytesPerSample = format.getBytesPerSample();
+            long frameBytes = (long) bytesPerSample * format.getChannels();
+            long window = Math.max(frameBytes, WINDOW_BYTES - (WINDOW_BYTES % frameBytes));
+            long dataLength = format.getDataLength() - (format.getDataLength() % frameBytes);
+
+            for (long offset = 0; offset < dataLength; offset += window) {
+                long length = Math.min(window, dataLength - offset);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        format.getDataOffset() + offset, length).order(ByteOrder.LITTLE_ENDIAN);
+                scanWindow(format, buffer, (int) (length / bytesPerSample), builder);
+            }
+            return builder;
+        }
+    }
+
+    private static void scanWindow(WavFormat format, ByteBuffer buffer, int samples, PeakPyramidBuilder builder) {
+        if (format.getAudioFormat() == WavFormat.FORMAT_FLOAT) {
+            for (int i = 0; i < samples; i++) {
+                builder.add(buffer.getFloat(i * 4));
+            }
+            return;
+        }
+        switch (format.getBitsPerSample()) {
+            case 16 -> {
+                for (int i = 0; i < samples; i++) {
+                    builder.add(buffer.getShort(i * 2) / 32768f);
+                }
+            }
+            case 24 -> {
+                for (int i = 0; i < samples; i++) {
+                    int offset = i * 3;
+                    int raw = (buffer.get(offset) & 0xFF)
+                            | ((buffer.get(offset + 1) & 0xFF) << 8)
+                            | (buffer.get(offset + 2) << 16);
+                    builder.add(raw / 8388608f);
+                }
+            }
+            default -> {
+                for (int i = 0; i < samples; i++) {
+                    builder.add(buffer.getInt(i * 4) / 2147483648f);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package se233.audioconverter.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Read-only view over a peak pyramid file. The peaks stay in the mapped file, only the header is parsed.
+public class WaveformPeaks {
+    private final ByteBuffer buffer;
+    private final int sampleRate;
+    private final long frames;
+    private final int bucketFrames;
+    private final int[] bucketCounts;
+    private final int[] levelOffsets;
+
+    private WaveformPeaks(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != PeakPyramidBuilder.MAGIC) {
+            throw new IOException("Not a waveform peak file");
+        }
+        this.sampleRate = buffer.getInt(4);
+        this.frames = buffer.getLong(8);
+        this.bucketFrames = buffer.getInt(16);
+        int levels = buffer.getInt(20);
+
+        bucketCounts = new int[levels];
+        levelOffsets = new int[levels];
+        int offset = 24 + levels * 4;
+        for (int i = 0; i < levels; i++) {
+            bucketCounts[i] = buffer.getInt(24 + i * 4);
+            levelOffsets[i] = offset;
+            offset += bucketCounts[i] * 2;
+        }
+        if (offset > buffer.limit()) {
+            throw new IOException("Truncated waveform peak file");
+        }
+    }
+
+    public static WaveformPeaks map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new WaveformPeaks(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Coarsest level that still has at least one bucket per pixel
+    public int levelFor(int pixels) {
+        int level = 0;
+        while (level + 1 < bucketCounts.length && bucketCounts[level + 1] >= pixels) {
+            level++;
+        }
+        return level;
+    }
+
+    // Fills per-pixel min/max (-127..127) for a waveform drawn width pixels wide
+    public void render(int width, byte[] mins, byte[] maxs) {
+        int level = levelFor(width);
+        int buckets = bucketCounts[level];
+        int offset = levelOffsets[level];
+        for (int x = 0; x < width; x++) {
+            int from = (int) ((long) x * buckets / width);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * buckets / width));
+            byte min = 0;
+            byte max = 0;
+            for (int i = from; i < to && i < buckets; i++) {
+                min = (byte) Math.min(min, buffer.get(offset + i * 2));
+                max = (byte) Math.max(max, buffer.get(offset + i * 2 + 1));
+            }
+            mins[x] = min;
+            maxs[x] = max;
+        }
+    }
+
+    public int getLevelCount() {
+        return bucketCounts.length;
+    }
+
+    public int getBucketCount(int level) {
+        return bucketCounts[level];
+    }
+
+    public int getBucketFrames() {
+        return bucketFrames;
+    }
+
+    public double getDurationSeconds() {
+        return sampleRate > 0 ? (double) frames / sampleRate : 0.0;
+    }
+}
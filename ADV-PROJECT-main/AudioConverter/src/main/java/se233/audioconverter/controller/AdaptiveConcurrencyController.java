@@ -0,0 +1,231 @@
+package se233.audioconverter.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.service.AppConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+// Adjusts the scheduler's CPU limit at runtime with AIMD feedback. Every interval it compares
+// processed audio-seconds per second (ffmpeg's out_time of running jobs, not just completions,
+// so long files do not read as zero throughput) with the previous sample and checks system
+// pressure (/proc/pressure/cpu and io, load average per core):
+//   - pressure above threshold, or throughput collapsing at an unchanged limit -> multiply down
+//   - the last increase bought less than MIN_GAIN -> step back by one and hold for a while
+//   - all slots busy and work queued -> add one
+// An interval that reported no progress at all (jobs still probing or analysing) is not a
+// throughput sample; it neither triggers a decrease nor replaces the previous sample.
+public class AdaptiveConcurrencyController implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+    private static final Path CPU_PRESSURE = Paths.get("/proc/pressure/cpu");
+    private static final Path IO_PRESSURE = Paths.get("/proc/pressure/io");
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double MIN_GAIN = 1.05;
+    private static final double COLLAPSE = 0.6;
+    private static final int HOLD_TICKS = 6;
+
+    private final DeviceAwareScheduler scheduler;
+    private final DoubleSupplier processedAudioSeconds;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double cpuPressureLimit;
+    private final double ioPressureLimit;
+    private final double loadPerCoreLimit;
+    private final long intervalMillis;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final ScheduledExecutorService timer;
+
+    private long lastTickNanos = System.nanoTime();
+    private double lastProcessed;
+    private double lastThroughput = -1;
+    private int lastLimit;
+    private boolean lastWasIncrease;
+    private int holdTicks;
+
+    // Exposed through getMetrics()
+    private double cpuPressure = -1;
+    private double ioPressure = -1;
+    private double loadPerCore = -1;
+    private String lastDecision = "start";
+    private long increases;
+    private long decreases;
+
+    public AdaptiveConcurrencyController(DeviceAwareScheduler scheduler, DoubleSupplier processedAudioSeconds,
+                                         int minLimit, int maxLimit, double cpuPressureLimit,
+                                         double ioPressureLimit, double loadPerCoreLimit,
+                                         long intervalMillis) {
+        this.scheduler = scheduler;
+        this.processedAudioSeconds = processedAudioSeconds;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.cpuPressureLimit = cpuPressureLimit;
+        this.ioPressureLimit = ioPressureLimit;
+        this.loadPerCoreLimit = loadPerCoreLimit;
+        this.intervalMillis = intervalMillis;
+        this.lastProcessed = processedAudioSeconds.getAsDouble();
+        this.lastLimit = scheduler.getCpuLimit();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "adaptive-concurrency");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Returns null when adaptive.enabled=false, the caller then keeps its fixed limit.
+    // adaptive.loadPerCore of 0 or less leaves load average out of the decision.
+    public static AdaptiveConcurrencyController fromConfig(DeviceAwareScheduler scheduler,
+                                                           DoubleSupplier processedAudioSeconds,
+                                                           int maxLimit, AppConfig config) {
+        if (!config.getBoolean("adaptive.enabled", true)) {
+            return null;
+        }
+        return new AdaptiveConcurrencyController(scheduler, processedAudioSeconds,
+                config.getInt("adaptive.minWorkers", 1),
+                config.getInt("adaptive.maxWorkers", maxLimit),
+                config.getDouble("adaptive.cpuPressure", 40.0),
+                config.getDouble("adaptive.ioPressure", 30.0),
+                config.getDouble("adaptive.loadPerCore", 2.0),
+                config.getLong("adaptive.intervalMillis", 5000));
+    }
+
+    public void start() {
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                logger.warn("Adaptive concurrency tick failed: {}", e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void tick() {
+        long now = System.nanoTime();
+        double processed = processedAudioSeconds.getAsDouble();
+        double elapsed = (now - lastTickNanos) / 1e9;
+        double throughput = elapsed > 0 ? (processed - lastProcessed) / elapsed : 0;
+        long sampleStart = lastTickNanos;
+        lastTickNanos = now;
+        lastProcessed = processed;
+
+        cpuPressure = readPressure(CPU_PRESSURE);
+        ioPressure = readPressure(IO_PRESSURE);
+        double load = os.getSystemLoadAverage();
+        loadPerCore = load >= 0 ? load / os.getAvailableProcessors() : -1;
+
+        int limit = scheduler.getCpuLimit();
+        // Someone else (a new batch) reset the limit, start learning from there
+        if (limit != lastLimit) {
+            lastThroughput = -1;
+            lastWasIncrease = false;
+        }
+
+        boolean busy = scheduler.getQueuedCount() > 0 || scheduler.getRunningCount() > 0;
+        if (!busy) {
+            lastThroughput = -1;
+            decide(limit, limit, "idle", throughput);
+            return;
+        }
+
+        int next = limit;
+        String reason;
+        boolean overloaded = loadPerCoreLimit > 0 && loadPerCore > loadPerCoreLimit;
+        if (cpuPressure > cpuPressureLimit || ioPressure > ioPressureLimit || overloaded) {
+            next = Math.max(minLimit, (int) Math.floor(limit * DECREASE_FACTOR));
+            reason = String.format("pressure cpu=%.1f io=%.1f load/core=%.2f", cpuPressure, ioPressure, loadPerCore);
+        } else if (throughput <= 0) {
+            // Nothing reported progress: no evidence either way. The previous sample (and whether
+            // it followed an increase) stays, and the next one spans the empty intervals too
+            lastTickNanos = sampleStart;
+            lastDecision = "no progress sample";
+            return;
+        } else if (lastThroughput > 0 && lastWasIncrease && throughput < lastThroughput * MIN_GAIN) {
+            next = Math.max(minLimit, limit - 1);
+            holdTicks = HOLD_TICKS;
+            reason = "no gain from last increase";
+        } else if (lastThroughput > 0 && !lastWasIncrease && throughput < lastThroughput * COLLAPSE) {
+            next = Math.max(minLimit, (int) Math.floor(limit * DECREASE_FACTOR));
+            reason = "throughput collapsed";
+        } else if (holdTicks > 0) {
+            holdTicks--;
+            reason = "holding";
+        } else if (scheduler.getQueuedCount() > 0 && scheduler.getRunningCount() >= limit && limit < maxLimit) {
+            next = limit + 1;
+            reason = "probing";
+        } else {
+            reason = "steady";
+        }
+
+        lastThroughput = throughput;
+        decide(limit, next, reason, throughput);
+    }
+
+    private void decide(int limit, int next, String reason, double throughput) {
+        lastWasIncrease = next > limit;
+        if (next > limit) {
+            increases++;
+        } else if (next < limit) {
+            decreases++;
+        }
+        lastDecision = reason;
+        lastLimit = next;
+        if (next != limit) {
+            logger.info("Concurrency {} -> {} ({}, {} audio-s/s)", limit, next, reason,
+                    String.format("%.1f", throughput));
+            scheduler.setCpuLimit(next);
+        }
+    }
+
+    // "some avg10=" of a PSI file in percent, -1 where PSI is not available
+    static double readPressure(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file);
+            for (String line : lines) {
+                if (line.startsWith("some")) {
+                    for (String field : line.split(" ")) {
+                        if (field.startsWith("avg10=")) {
+                            return Double.parseDouble(field.substring(6));
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux, or PSI disabled in the kernel
+        }
+        return -1;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("concurrencyLimit", scheduler.getCpuLimit());
+        metrics.put("concurrencyMin", minLimit);
+        metrics.put("concurrencyMax", maxLimit);
+        metrics.put("running", scheduler.getRunningCount());
+        metrics.put("queued", scheduler.getQueuedCount());
+        metrics.put("throughputAudioSecondsPerSecond", Math.max(0, lastThroughput));
+        metrics.put("processedAudioSeconds", lastProcessed);
+        metrics.put("cpuPressureAvg10", cpuPressure);
+        metrics.put("ioPressureAvg10", ioPressure);
+        metrics.put("loadPerCore", loadPerCore);
+        metrics.put("lastDecision", lastDecision);
+        metrics.put("increases", increases);
+        metrics.put("decreases", decreases);
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
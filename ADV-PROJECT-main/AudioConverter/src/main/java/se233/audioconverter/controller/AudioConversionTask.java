@@ -6,10 +6,10 @@ import se233.audioconverter.model.ConversionSettings;
 import se233.audioconverter.service.FFmpegService;
 import net.bramp.ffmpeg.progress.Progress;
 import net.bramp.ffmpeg.progress.ProgressListener;
-import net.bramp.ffmpeg.probe.FFmpegProbeResult;
-import net.bramp.ffmpeg.probe.FFmpegFormat;
 
+import java.nio.file.Path;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 public class AudioConversionTask implements Callable<Void> {
     private final AudioFile audioFile;
@@ -18,6 +18,7 @@ public class AudioConversionTask implements Callable<Void> {
     private final FFmpegService ffmpegService;
 
     private ProgressCallback progressCallback;
+    private volatile CompletableFuture<Path> published;
 
     public interface ProgressCallback {
         void onProgress(double percentage, String message);
@@ -41,13 +42,12 @@ public class AudioConversionTask implements Callable<Void> {
         updateStatus(AudioFile.ConversionStatus.PROCESSING);
 
         try {
-            FFmpegProbeResult probeResult = ffmpegService.probeFile(audioFile.getFilePath());
-            FFmpegFormat format = probeResult.getFormat();
+            // WAV headers are read directly and a probed file is not probed again, so short
+            // clips don't pay for an ffprobe process on top of the ffmpeg one
+            ffmpegService.probeSource(audioFile);
+            final double duration = audioFile.getDurationSeconds();
 
-
-            final double duration = format.duration;
-
-            ffmpegService.convertAudio(audioFile, settings, outputPath, new ProgressListener() {
+            CompletableFuture<Path> output = ffmpegService.convertAudio(audioFile, settings, outputPath, new ProgressListener() {
                 @Override
                 public void progress(Progress progress) {
                     if (duration > 0 && progressCallback != null) {
@@ -61,7 +61,11 @@ public class AudioConversionTask implements Callable<Void> {
                 }
             });
 
-            updateStatus(AudioFile.ConversionStatus.COMPLETED);
+            // With a staging directory the output is still being moved; the file counts as
+            // completed (and gets journaled as such) only once it is at its destination
+            published = output.whenComplete((path, error) -> updateStatus(error == null
+                    ? AudioFile.ConversionStatus.COMPLETED
+                    : AudioFile.ConversionStatus.FAILED));
 
         } catch (AudioConversionException e) {
             updateStatus(AudioFile.ConversionStatus.FAILED);
@@ -71,13 +75,27 @@ public class AudioConversionTask implements Callable<Void> {
         return null;
     }
 
-    private void updateStatus(AudioFile.ConversionStatus status) {
+    void updateStatus(AudioFile.ConversionStatus status) {
         audioFile.setStatus(status);
         if (progressCallback != null) {
             progressCallback.onStatusChange(status);
         }
     }
 
+    // Blocks until the output of a finished call() is at its destination; a failed move is
+    // thrown as an IO_ERROR. Returns right away if call() did not get that far.
+    public void awaitPublished() throws AudioConversionException {
+        CompletableFuture<Path> output = published;
+        if (output != null) {
+            FFmpegService.awaitOutput(audioFile, output);
+        }
+    }
+
+    // Completes with the output path once it is at its destination; null until call() returned
+    public CompletableFuture<Path> getPublished() {
+        return published;
+    }
+
     public AudioFile getAudioFile() {
         return audioFile;
     }
@@ -0,0 +1,96 @@
+package se233.audioconverter.controller;
+
+import se233.audioconverter.service.JobEstimator;
+
+import java.util.Locale;
+
+// Tracks a batch in estimated work rather than file count, so one long file does not
+// stall the bar. The remaining time uses the predicted job times until the first jobs
+// finish, then the rate actually achieved in this batch.
+public class BatchProgress {
+    private final int files;
+    private final int workers;
+    private final double totalWork;
+    private final double totalAudio;
+    private final long totalInputBytes;
+    private final long totalOutputBytes;
+    private final long startNanos = System.nanoTime();
+
+    private int doneFiles;
+    private double doneWork;
+    private double doneAudio;
+    private long doneInputBytes;
+
+    public BatchProgress(int files, int workers, double totalWork, double totalAudio,
+                         long totalInputBytes, long totalOutputBytes) {
+        this.files = files;
+        this.workers = Math.max(1, workers);
+        this.totalWork = totalWork;
+        this.totalAudio = totalAudio;
+        this.totalInputBytes = totalInputBytes;
+        this.totalOutputBytes = totalOutputBytes;
+    }
+
+    public synchronized void complete(JobEstimator.Estimate estimate, long inputBytes) {
+        doneFiles++;
+        doneWork += estimate.getWallSeconds();
+        doneAudio += estimate.getAudioSeconds();
+        doneInputBytes += inputBytes;
+    }
+
+    public synchronized double getFraction() {
+        return totalWork > 0 ? Math.min(1.0, doneWork / totalWork) : (double) doneFiles / Math.max(1, files);
+    }
+
+    public synchronized double getRemainingSeconds() {
+        double remaining = Math.max(0, totalWork - doneWork);
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        if (doneWork > 0 && elapsed > 0) {
+            return remaining / (doneWork / elapsed);
+        }
+        return remaining / workers;
+    }
+
+    public synchronized String getStatus() {
+        return String.format("%d of %d files, %s of %s audio, %s of %s, ~%s left",
+                doneFiles, files, formatDuration(doneAudio), formatDuration(totalAudio),
+                formatBytes(doneInputBytes), formatBytes(totalInputBytes),
+                formatDuration(getRemainingSeconds()));
+    }
+
+    public String getPlan(long freeBytes) {
+        String plan = String.format("%d files, %s audio, est. %s, needs %s (%s free)",
+                files, formatDuration(totalAudio), formatDuration(totalWork / workers),
+                formatBytes(totalOutputBytes), formatBytes(freeBytes));
+        return totalOutputBytes > freeBytes ? plan + " - NOT ENOUGH SPACE" : plan;
+    }
+
+    public long getTotalOutputBytes() {
+        return totalOutputBytes;
+    }
+
+    static String formatDuration(double seconds) {
+        long s = Math.round(seconds);
+        if (s >= 3600) {
+            return String.format("%dh %02dm", s / 3600, (s % 3600) / 60);
+        }
+        if (s >= 60) {
+            return String.format("%dm %02ds", s / 60, s % 60);
+        }
+        return s + "s";
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+}
@@ -0,0 +1,294 @@
+package se233.audioconverter.controller;
+
+import se233.audioconverter.service.AppConfig;
+import se233.audioconverter.service.DeviceResolver;
+import se233.audioconverter.service.MemoryBudget;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+// Dispatches conversion jobs to the worker pool only when a CPU slot, an I/O slot on
+// every device the job touches and enough of the memory budget are free. Spinning disks
+// default to one job at a time to avoid seek thrashing; SSDs and network mounts use the
+// SSD limit. A job larger than the whole budget still runs, but only on its own.
+//
+// Jobs that touch the same devices wait in one FIFO (a route); a route is ready while each
+// of its devices has a free slot. Dispatch takes the head of the first ready route and only
+// revisits routes whose devices changed, so a 100k-file batch on one disk costs O(1) per
+// job instead of a scan of the whole queue. Ready routes take turns, and within a route
+// jobs start in submit order: a head too large for the free memory waits rather than being
+// overtaken by smaller jobs behind it.
+public class DeviceAwareScheduler {
+    private static class Job {
+        final Callable<Void> work;
+        final Set<String> devices;
+        final LongSupplier memoryEstimate;
+        // Taken from memoryEstimate when the job is considered for dispatch, held while it runs
+        long memoryBytes;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Job(Callable<Void> work, Set<String> devices, LongSupplier memoryEstimate) {
+            this.work = work;
+            this.devices = devices;
+            this.memoryEstimate = memoryEstimate;
+        }
+    }
+
+    private static class Route {
+        final Set<String> devices;
+        final ArrayDeque<Job> jobs = new ArrayDeque<>();
+
+        Route(Set<String> devices) {
+            this.devices = devices;
+        }
+    }
+
+    private final Executor executor;
+    private final DeviceResolver resolver;
+    private int cpuLimit;
+    private final int hddLimit;
+    private final int ssdLimit;
+    private final long memoryBudget;
+
+    private final Map<Set<String>, Route> routes = new HashMap<>();
+    private final Map<String, List<Route>> routesByDevice = new HashMap<>();
+    // Routes with queued jobs and a free slot on every device, in turn order
+    private final LinkedHashSet<Route> ready = new LinkedHashSet<>();
+    private final Map<String, Integer> activePerDevice = new HashMap<>();
+    private final Map<String, Integer> limitPerDevice = new HashMap<>();
+    private int queued;
+    private int running;
+    private long memoryInUse;
+
+    public DeviceAwareScheduler(Executor executor, int cpuLimit, int hddLimit, int ssdLimit,
+                                DeviceResolver resolver) {
+        this(executor, cpuLimit, hddLimit, ssdLimit, 0, resolver);
+    }
+
+    // memoryBudget of 0 disables memory admission
+    public DeviceAwareScheduler(Executor executor, int cpuLimit, int hddLimit, int ssdLimit,
+                                long memoryBudget, DeviceResolver resolver) {
+        this.executor = executor;
+        this.cpuLimit = cpuLimit;
+        this.hddLimit = hddLimit;
+        this.ssdLimit = ssdLimit;
+        this.memoryBudget = memoryBudget;
+        this.resolver = resolver;
+    }
+
+    public static DeviceAwareScheduler fromConfig(Executor executor, int cpuLimit, AppConfig config) {
+        return new DeviceAwareScheduler(executor, cpuLimit,
+                config.getInt("io.hddJobsPerDevice", 1),
+                config.getInt("io.ssdJobsPerDevice", cpuLimit),
+                MemoryBudget.fromConfig(config),
+                new DeviceResolver());
+    }
+
+    // Takes effect for the next dispatch; running jobs are never interrupted
+    public void setCpuLimit(int cpuLimit) {
+        synchronized (this) {
+            this.cpuLimit = Math.max(1, cpuLimit);
+        }
+        dispatch();
+    }
+
+    public synchronized int getCpuLimit() {
+        return cpuLimit;
+    }
+
+    public CompletableFuture<Void> submit(Callable<Void> work, Path input, Path outputDir) {
+        return submit(work, input, outputDir, 0);
+    }
+
+    public CompletableFuture<Void> submit(Callable<Void> work, Path input, Path outputDir,
+                                          long memoryBytes) {
+        return submit(work, input, outputDir, () -> memoryBytes);
+    }
+
+    // The estimate is asked for when the job comes up for dispatch, not here, so jobs queued
+    // behind a long batch are sized with what the estimator learned from the jobs before them
+    public CompletableFuture<Void> submit(Callable<Void> work, Path input, Path outputDir,
+                                          LongSupplier memoryEstimate) {
+        Set<String> devices = new LinkedHashSet<>();
+        for (Path path : new Path[]{input, outputDir}) {
+            if (path == null) {
+                continue;
+            }
+            DeviceResolver.Device device = resolver.resolve(path);
+            devices.add(device.getKey());
+            synchronized (this) {
+                limitPerDevice.putIfAbsent(device.getKey(), device.isRotational() ? hddLimit : ssdLimit);
+            }
+        }
+
+        Job job = new Job(work, devices, memoryEstimate);
+        synchronized (this) {
+            Route route = routes.computeIfAbsent(devices, this::newRoute);
+            route.jobs.add(job);
+            queued++;
+            if (route.jobs.size() == 1 && devicesFree(route)) {
+                ready.add(route);
+            }
+        }
+        dispatch();
+        return job.future;
+    }
+
+    private Route newRoute(Set<String> devices) {
+        Route route = new Route(devices);
+        for (String device : devices) {
+            routesByDevice.computeIfAbsent(device, d -> new ArrayList<>()).add(route);
+        }
+        return route;
+    }
+
+    // Starts queued jobs while CPU slots last; routes blocked on a busy disk are not ready, so
+    // they are never looked at until one of their devices frees up
+    private void dispatch() {
+        while (true) {
+            Job next = null;
+            synchronized (this) {
+                if (running >= cpuLimit) {
+                    return;
+                }
+                Iterator<Route> it = ready.iterator();
+                while (it.hasNext()) {
+                    Route route = it.next();
+                    if (fitsMemory(route.jobs.peek())) {
+                        next = route.jobs.poll();
+                        queued--;
+                        // To the back of the turn order, or out if it has nothing left
+                        it.remove();
+                        if (!route.jobs.isEmpty()) {
+                            ready.add(route);
+                        }
+                        acquire(next);
+                        break;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            start(next);
+        }
+    }
+
+    // Removes a job that has not started yet and cancels its future. Returns false once the
+    // job was dispatched (or already finished); a running job is never interrupted. Linear in
+    // the queue length, meant for the odd user cancel, not for bulk use.
+    public boolean cancel(CompletableFuture<Void> future) {
+        if (!removeQueued(future)) {
+            return false;
+        }
+        // Outside the lock, dependent stages run right here
+        future.cancel(false);
+        return true;
+    }
+
+    private synchronized boolean removeQueued(CompletableFuture<Void> future) {
+        for (Route route : routes.values()) {
+            Iterator<Job> it = route.jobs.iterator();
+            while (it.hasNext()) {
+                if (it.next().future == future) {
+                    it.remove();
+                    queued--;
+                    if (route.jobs.isEmpty()) {
+                        ready.remove(route);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void start(Job job) {
+        executor.execute(() -> {
+            try {
+                job.work.call();
+                job.future.complete(null);
+            } catch (Throwable t) {
+                job.future.completeExceptionally(t);
+            } finally {
+                release(job);
+                dispatch();
+            }
+        });
+    }
+
+    private boolean fitsMemory(Job job) {
+        if (memoryBudget <= 0) {
+            return true;
+        }
+        job.memoryBytes = job.memoryEstimate.getAsLong();
+        return running == 0 || memoryInUse + job.memoryBytes <= memoryBudget;
+    }
+
+    private boolean devicesFree(Route route) {
+        for (String device : route.devices) {
+            if (isFull(device)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isFull(String device) {
+        int limit = Math.max(1, limitPerDevice.getOrDefault(device, ssdLimit));
+        return activePerDevice.getOrDefault(device, 0) >= limit;
+    }
+
+    private void acquire(Job job) {
+        running++;
+        memoryInUse += job.memoryBytes;
+        for (String device : job.devices) {
+            activePerDevice.merge(device, 1, Integer::sum);
+            if (isFull(device)) {
+                routesByDevice.get(device).forEach(ready::remove);
+            }
+        }
+    }
+
+    private synchronized void release(Job job) {
+        running--;
+        memoryInUse -= job.memoryBytes;
+        for (String device : job.devices) {
+            activePerDevice.merge(device, -1, Integer::sum);
+        }
+        for (String device : job.devices) {
+            for (Route route : routesByDevice.get(device)) {
+                if (!route.jobs.isEmpty() && devicesFree(route)) {
+                    ready.add(route);
+                }
+            }
+        }
+    }
+
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized long getMemoryInUse() {
+        return memoryInUse;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+}
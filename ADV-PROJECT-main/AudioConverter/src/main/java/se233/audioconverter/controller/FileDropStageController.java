@@ -1,6 +1,5 @@
 package se233.audioconverter.controller;
 
-import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -12,22 +11,24 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.AudioFileTable;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class FileDropStageController {
     private static final List<String> SUPPORTED_FORMATS = Arrays.asList("mp3", "wav", "m4a", "flac");
 
-    private final ObservableList<AudioFile> audioFiles;
+    private final AudioFileTable audioFiles;
     private final VBox dropZone;
     private final ListView<AudioFile> filePreviewList;
     private final VBox filePreviewBox;
     private final Label fileCountLabel;
     private final Runnable onFileListChanged;
 
-    public FileDropStageController(ObservableList<AudioFile> audioFiles,
+    public FileDropStageController(AudioFileTable audioFiles,
                                    VBox dropZone,
                                    ListView<AudioFile> filePreviewList,
                                    VBox filePreviewBox,
@@ -111,17 +112,8 @@ public class FileDropStageController {
                         .filter(file -> isAudioFile(file.getName()))
                         .toList();
 
-                for (File file : validFiles) {
-                    AudioFile audioFile = new AudioFile(file.getAbsolutePath());
-                    boolean exists = audioFiles.stream()
-                            .anyMatch(af -> af.getFilePath().equals(audioFile.getFilePath()));
-                    if (!exists) {
-                        audioFiles.add(audioFile);
-                    }
-                }
-
+                addFiles(validFiles);
                 success = !validFiles.isEmpty();
-                updateFilePreview();
             }
 
             dropZone.setStyle("-fx-border-color: #4CAF50; -fx-border-width: 3; -fx-border-style: dashed; -fx-border-radius: 10; -fx-background-color: #f9f9f9; -fx-background-radius: 10; -fx-padding: 60;");
@@ -131,16 +123,15 @@ public class FileDropStageController {
     }
 
     public void addFiles(List<File> files) {
+        // The table skips listed paths through its own index and fires one change event,
+        // so a large drop neither scans the list per file nor builds an object per file
+        List<String> paths = new ArrayList<>();
         for (File file : files) {
             if (isAudioFile(file.getName())) {
-                AudioFile audioFile = new AudioFile(file.getAbsolutePath());
-                boolean exists = audioFiles.stream()
-                        .anyMatch(af -> af.getFilePath().equals(audioFile.getFilePath()));
-                if (!exists) {
-                    audioFiles.add(audioFile);
-                }
+                paths.add(file.getAbsolutePath());
             }
         }
+        audioFiles.addPaths(paths);
         updateFilePreview();
     }
 
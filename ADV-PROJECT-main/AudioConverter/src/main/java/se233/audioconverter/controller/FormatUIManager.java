@@ -3,6 +3,7 @@ package se233.audioconverter.controller;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import se233.audioconverter.model.ConversionSettings;
 
@@ -20,6 +21,8 @@ public class FormatUIManager {
     private final VBox vbrQualityBox;
     private final ComboBox<ConversionSettings.SampleRate> sampleRateComboBox;
     private final ComboBox<Integer> bitrateComboBox;
+    private final HBox effortBox;
+    private final Label effortInfoLabel;
     private final ConversionSettings settings;
 
     public FormatUIManager(Label formatInfoLabel,
@@ -33,6 +36,8 @@ public class FormatUIManager {
                            VBox vbrQualityBox,
                            ComboBox<ConversionSettings.SampleRate> sampleRateComboBox,
                            ComboBox<Integer> bitrateComboBox,
+                           HBox effortBox,
+                           Label effortInfoLabel,
                            ConversionSettings settings) {
         this.formatInfoLabel = formatInfoLabel;
         this.bitrateSettingsBox = bitrateSettingsBox;
@@ -45,6 +50,8 @@ public class FormatUIManager {
         this.vbrQualityBox = vbrQualityBox;
         this.sampleRateComboBox = sampleRateComboBox;
         this.bitrateComboBox = bitrateComboBox;
+        this.effortBox = effortBox;
+        this.effortInfoLabel = effortInfoLabel;
         this.settings = settings;
     }
 
@@ -54,6 +61,20 @@ public class FormatUIManager {
         updateSampleRateOptions(format);
         updateBitrateOptions(format);
         updateBitrateModeUI();
+        updateEffortUI();
+    }
+
+    // WAV is plain PCM, encoder effort does nothing there
+    public void updateEffortUI() {
+        ConversionSettings.OutputFormat format = settings.getOutputFormat();
+        List<String> args = settings.getEncodeEffort().getEncoderArgs(format);
+        if (effortBox != null) {
+            effortBox.setVisible(!args.isEmpty());
+            effortBox.setManaged(!args.isEmpty());
+        }
+        if (effortInfoLabel != null) {
+            effortInfoLabel.setText(String.join(" ", args));
+        }
     }
 
     private void updateFormatInfo(ConversionSettings.OutputFormat format) {
@@ -127,6 +148,7 @@ public class FormatUIManager {
             ObservableList<ConversionSettings.SampleRate> availableRates =
                     FXCollections.observableArrayList();
 
+            availableRates.add(ConversionSettings.SampleRate.MATCH_SOURCE);
             for (int rate : sampleRateOptions) {
                 availableRates.add(ConversionSettings.SampleRate.fromRate(rate));
             }
@@ -1,14 +1,24 @@
 package se233.audioconverter.controller;
 
 import se233.audioconverter.Launcher;
+import se233.audioconverter.analysis.PcmAnalyzer;
 import se233.audioconverter.exception.AudioConversionException;
 import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.AudioFileTable;
 import se233.audioconverter.model.ConversionSettings;
-import se233.audioconverter.model.ConversionPreset;
+import se233.audioconverter.model.PresetDefinition;
+import se233.audioconverter.service.AppConfig;
+import se233.audioconverter.service.BatchJournal;
+import se233.audioconverter.service.ContentDeduplicator;
 import se233.audioconverter.service.FFmpegService;
+import se233.audioconverter.service.JobEstimator;
+import se233.audioconverter.service.MicroBatchPlanner;
+import se233.audioconverter.service.PresetLibrary;
+import se233.audioconverter.service.ProcessPriority;
+import se233.audioconverter.service.ResourceLedger;
+import se233.audioconverter.service.WaveformService;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -17,14 +27,29 @@ import javafx.scene.layout.VBox;
 import javafx.scene.layout.HBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 public class MainViewController {
+    private static final Logger logger = LoggerFactory.getLogger(MainViewController.class);
+    private static final int WORKER_THREADS = 4;
+
     // Stage 1: File Drop
     @FXML private StackPane mainStackPane;
     @FXML private VBox fileDropStage;
@@ -42,7 +67,7 @@ public class MainViewController {
     @FXML private Label formatInfoLabel;
 
     // Preset Management
-    @FXML private ComboBox<ConversionPreset> presetComboBox;
+    @FXML private ComboBox<PresetDefinition> presetComboBox;
     @FXML private Button loadPresetButton;
     @FXML private Label presetDescriptionLabel;
 
@@ -62,6 +87,10 @@ public class MainViewController {
     @FXML private CheckBox showAdvancedCheckBox;
     @FXML private ComboBox<ConversionSettings.SampleRate> sampleRateComboBox;
     @FXML private ComboBox<ConversionSettings.Channels> channelsComboBox;
+    @FXML private ComboBox<ConversionSettings.LoudnessTarget> loudnessComboBox;
+    @FXML private HBox effortBox;
+    @FXML private ComboBox<ConversionSettings.EncodeEffort> effortComboBox;
+    @FXML private Label effortInfoLabel;
 
     // Bitrate Mode
     @FXML private VBox bitrateModeBox;
@@ -75,16 +104,21 @@ public class MainViewController {
     @FXML private Slider vbrQualitySlider;
     @FXML private Label vbrQualityLabel;
 
+    @FXML private CheckBox backgroundPriorityCheckBox;
     @FXML private Button convertButton;
     @FXML private Button clearButton;
     @FXML private ProgressBar progressBar;
     @FXML private Label statusLabel;
 
     // Controllers and Managers
-    private ObservableList<AudioFile> audioFiles;
+    private AudioFileTable audioFiles;
     private ConversionSettings settings;
     private FFmpegService ffmpegService;
     private ExecutorService executorService;
+    private DeviceAwareScheduler scheduler;
+    private AdaptiveConcurrencyController adaptiveController;
+    private BatchJournal batchJournal;
+    private WaveformService waveformService;
 
     private FileDropStageController fileDropController;
     private QualitySettingsManager qualityManager;
@@ -93,7 +127,7 @@ public class MainViewController {
 
     @FXML
     public void initialize() {
-        audioFiles = FXCollections.observableArrayList();
+        audioFiles = new AudioFileTable();
         settings = new ConversionSettings();
 
         try {
@@ -105,11 +139,103 @@ public class MainViewController {
             return;
         }
 
-        executorService = Executors.newFixedThreadPool(4);
+        int workers = ffmpegService.getTuningProfile().getMaxWorkers(WORKER_THREADS);
+        int maxWorkers = Math.max(workers, AppConfig.get().getInt("adaptive.maxWorkers",
+                Runtime.getRuntime().availableProcessors()));
+        executorService = Executors.newFixedThreadPool(maxWorkers);
+        scheduler = DeviceAwareScheduler.fromConfig(executorService, workers, AppConfig.get());
+        adaptiveController = AdaptiveConcurrencyController.fromConfig(
+                scheduler, ffmpegService::getProcessedAudioSeconds, maxWorkers, AppConfig.get());
+        if (adaptiveController != null) {
+            adaptiveController.start();
+        }
+
+        try {
+            batchJournal = BatchJournal.openDefault();
+        } catch (IOException e) {
+            logger.warn("Batch journal disabled: {}", e.getMessage());
+            Platform.runLater(() -> showError("Batch Journal Disabled",
+                    "Interrupted batches cannot be resumed in this session.\n\n" + e.getMessage()));
+        }
+
+        if (AppConfig.get().getBoolean("waveform.enabled", true)) {
+            try {
+                waveformService = new WaveformService(ffmpegService, AppConfig.get());
+            } catch (IOException e) {
+                logger.warn("Waveforms disabled: {}", e.getMessage());
+                Platform.runLater(() -> showError("Waveforms Disabled",
+                        "The waveform cache directory could not be created, so the file list shows no waveforms.\n\n"
+                                + e.getMessage()));
+            }
+        }
 
         initializeControllers();
         setupStage2Components();
         showStage1();
+
+        Platform.runLater(this::offerResume);
+    }
+
+    // A journal left behind means the last batch was interrupted (crash, reboot, kill)
+    private void offerResume() {
+        if (batchJournal == null) {
+            return;
+        }
+        BatchJournal.RecoveredBatch batch = batchJournal.recover();
+        if (batch == null) {
+            return;
+        }
+
+        ConversionSettings recovered = batch.getSettings();
+        List<String> pending = new ArrayList<>(batch.getPending());
+        // A completed file whose output never reached the output directory is redone
+        for (String path : batch.getCompleted()) {
+            String output = ffmpegService.buildOutputFilename(new AudioFile(path), recovered, batch.getOutputDir());
+            if (!new File(output).exists()) {
+                pending.add(path);
+            }
+        }
+        pending.removeIf(path -> !new File(path).exists());
+        if (pending.isEmpty()) {
+            batchJournal.discard();
+            return;
+        }
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Resume Conversion");
+        alert.setHeaderText(null);
+        alert.setContentText(String.format(
+                "The previous batch was interrupted.\n%d file(s) still need to be converted to:\n%s\n\nResume now?",
+                pending.size(), batch.getOutputDir()));
+        if (alert.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            batchJournal.discard();
+            return;
+        }
+
+        formatComboBox.setValue(recovered.getOutputFormat());
+        channelsComboBox.setValue(recovered.getChannels());
+        sampleRateComboBox.setValue(recovered.getSampleRate());
+        loudnessComboBox.setValue(recovered.getLoudnessTarget());
+        effortComboBox.setValue(recovered.getEncodeEffort());
+        settings.copyFrom(recovered);
+
+        List<File> files = new ArrayList<>();
+        for (String path : pending) {
+            AudioFile audioFile = new AudioFile(path);
+            // Whatever ffmpeg left for an unfinished file is a partial output
+            try {
+                Files.deleteIfExists(Paths.get(
+                        ffmpegService.buildOutputFilename(audioFile, settings, batch.getOutputDir())));
+            } catch (IOException e) {
+                logger.warn("Could not remove partial output: {}", e.getMessage());
+            }
+            files.add(new File(path));
+        }
+        fileDropController.clearFiles();
+        fileDropController.addFiles(files);
+
+        showStage2();
+        startConversion(new File(batch.getOutputDir()));
     }
 
     private void initializeControllers() {
@@ -125,17 +251,22 @@ public class MainViewController {
         );
 
         // Preset Manager
+        PresetLibrary presetLibrary = PresetLibrary.fromConfig(AppConfig.get());
         presetManager = new PresetManager(
-                presetComboBox, presetDescriptionLabel, settings,
+                presetComboBox, presetDescriptionLabel, settings, presetLibrary,
                 this::handlePresetLoaded
         );
+        if (!presetLibrary.getProblems().isEmpty()) {
+            Platform.runLater(() -> showError("Invalid Presets",
+                    "Some presets were not loaded:\n\n" + String.join("\n", presetLibrary.getProblems())));
+        }
 
         // Format UI Manager
         formatUIManager = new FormatUIManager(
                 formatInfoLabel, bitrateSettingsBox, wavQualityBox,
                 bitrateModeBox, bitrateModeLabel, variableBitrateRadio,
                 constantBitrateRadio, cbrBitrateBox, vbrQualityBox,
-                sampleRateComboBox, bitrateComboBox, settings
+                sampleRateComboBox, bitrateComboBox, effortBox, effortInfoLabel, settings
         );
     }
 
@@ -188,6 +319,22 @@ public class MainViewController {
         channelsComboBox.setOnAction(e ->
                 settings.setChannels(channelsComboBox.getValue()));
 
+        // Loudness Normalization
+        loudnessComboBox.setItems(FXCollections.observableArrayList(
+                ConversionSettings.LoudnessTarget.values()));
+        loudnessComboBox.setValue(ConversionSettings.LoudnessTarget.OFF);
+        loudnessComboBox.setOnAction(e ->
+                settings.setLoudnessTarget(loudnessComboBox.getValue()));
+
+        // Encoder Effort ComboBox
+        effortComboBox.setItems(FXCollections.observableArrayList(
+                ConversionSettings.EncodeEffort.values()));
+        effortComboBox.setValue(ConversionSettings.EncodeEffort.BALANCED);
+        effortComboBox.setOnAction(e -> {
+            settings.setEncodeEffort(effortComboBox.getValue());
+            formatUIManager.updateEffortUI();
+        });
+
         // Advanced Settings Toggle
         advancedSettingsBox.setVisible(false);
         advancedSettingsBox.setManaged(false);
@@ -204,6 +351,8 @@ public class MainViewController {
         convertButton.setOnAction(e -> onConvert());
         clearButton.setOnAction(e -> onClear());
 
+        backgroundPriorityCheckBox.setSelected(AppConfig.get().getBoolean("process.background", false));
+
         progressBar.setProgress(0);
         statusLabel.setText("Ready");
 
@@ -214,24 +363,7 @@ public class MainViewController {
 
     private void setupFileListView() {
         fileListView.setItems(audioFiles);
-        fileListView.setCellFactory(param -> new ListCell<>() {
-            @Override
-            protected void updateItem(AudioFile item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    setText(item.toString());
-                    switch (item.getStatus()) {
-                        case PENDING -> setStyle("-fx-text-fill: black;");
-                        case PROCESSING -> setStyle("-fx-text-fill: blue; -fx-font-weight: bold;");
-                        case COMPLETED -> setStyle("-fx-text-fill: green; -fx-font-weight: bold;");
-                        case FAILED -> setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
-                    }
-                }
-            }
-        });
+        fileListView.setCellFactory(param -> new WaveformListCell(waveformService));
     }
 
     private void setupVBRQualitySlider() {
@@ -278,15 +410,17 @@ public class MainViewController {
         }
     }
 
-    private void handlePresetLoaded(ConversionPreset preset) {
-        if (preset == ConversionPreset.NONE) {
+    private void handlePresetLoaded(PresetDefinition preset) {
+        if (preset.isCustom()) {
             statusLabel.setText("Custom settings mode - Configure manually");
             return;
         }
 
         formatComboBox.setValue(preset.getFormat());
         channelsComboBox.setValue(preset.getChannels());
-        sampleRateComboBox.setValue(preset.getSampleRate());
+        sampleRateComboBox.setValue(ConversionSettings.SampleRate.fromRate(preset.getSampleRate()));
+        loudnessComboBox.setValue(preset.getLoudnessTarget());
+        effortComboBox.setValue(preset.getEncodeEffort());
 
         qualityManager.updateForFormat(preset.getFormat());
         formatUIManager.updateForFormat(preset.getFormat());
@@ -308,7 +442,7 @@ public class MainViewController {
             formatUIManager.updateBitrateModeUI();
         }
 
-        statusLabel.setText("Loaded preset: " + preset.getDisplayName());
+        statusLabel.setText("Loaded preset: " + preset.getName());
 
         showInfo("Preset Loaded",
                 "Successfully loaded preset:\n\n" + preset.getDetailedDescription());
@@ -316,7 +450,7 @@ public class MainViewController {
 
     @FXML
     private void onLoadPreset() {
-        ConversionPreset preset = presetManager.getSelectedPreset();
+        PresetDefinition preset = presetManager.getSelectedPreset();
 
         if (preset == null) {
             showError("No Preset Selected", "Please select a preset first.");
@@ -382,9 +516,35 @@ public class MainViewController {
     private void startConversion(File outputDir) {
         setUIDisabled(true);
 
-        audioFiles.forEach(file -> file.setStatus(AudioFile.ConversionStatus.PENDING));
+        audioFiles.forEach(file -> {
+            file.setStatus(AudioFile.ConversionStatus.PENDING);
+            file.setResourceUsage(null);
+        });
         fileListView.refresh();
 
+        if (batchJournal != null) {
+            try {
+                batchJournal.begin(outputDir.getAbsolutePath(), settings, audioFiles);
+            } catch (IOException e) {
+                logger.warn("Batch journal not written, this batch cannot be resumed: {}", e.getMessage());
+            }
+        }
+
+        // The pool is sized for the most parallel format; each batch runs at its own format's best
+        scheduler.setCpuLimit(ffmpegService.getTuningProfile()
+                .workersFor(settings.getOutputFormat(), WORKER_THREADS));
+
+        // Background batches run niced (and optionally pinned) so the desktop stays responsive
+        try {
+            ffmpegService.setProcessPriority(backgroundPriorityCheckBox.isSelected()
+                    ? ProcessPriority.background(AppConfig.get())
+                    : ProcessPriority.fromConfig(AppConfig.get()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Process priority settings ignored: {}", e.getMessage());
+            ffmpegService.setProcessPriority(ProcessPriority.NORMAL);
+        }
+        logger.info("Batch process priority: {}", ffmpegService.getProcessPriority());
+
         List<AudioConversionTask> tasks = createConversionTasks(outputDir);
         Task<Void> masterTask = createMasterTask(tasks, outputDir);
 
@@ -412,6 +572,13 @@ public class MainViewController {
 
                 @Override
                 public void onStatusChange(AudioFile.ConversionStatus status) {
+                    if (batchJournal != null) {
+                        if (status == AudioFile.ConversionStatus.COMPLETED) {
+                            batchJournal.completed(audioFile);
+                        } else if (status == AudioFile.ConversionStatus.FAILED) {
+                            batchJournal.failed(audioFile);
+                        }
+                    }
                     Platform.runLater(() -> fileListView.refresh());
                 }
             });
@@ -425,37 +592,221 @@ public class MainViewController {
         return new Task<>() {
             @Override
             protected Void call() throws Exception {
-                CompletionService<Void> completionService =
-                        new ExecutorCompletionService<>(executorService);
+                scanPcmInputs(tasks, this::updateMessage);
+
+                Map<AudioFile, List<AudioFile>> duplicates = findDuplicateInputs(this::updateMessage);
+                try {
+                    Set<AudioFile> skipped = new HashSet<>();
+                    duplicates.values().forEach(skipped::addAll);
+                    List<AudioConversionTask> toRun = new ArrayList<>();
+                    for (AudioConversionTask task : tasks) {
+                        if (!skipped.contains(task.getAudioFile())) {
+                            toRun.add(task);
+                        }
+                    }
 
-                int totalTasks = tasks.size();
-                int completedTasks = 0;
+                    if (AppConfig.get().getBoolean("estimate.probe", true)) {
+                        updateMessage("Reading durations...");
+                        toRun.parallelStream()
+                                .forEach(task -> ffmpegService.probeSource(task.getAudioFile()));
+                    }
 
-                for (Callable<Void> task : tasks) {
-                    completionService.submit(task);
-                }
+                    Map<AudioConversionTask, JobEstimator.Estimate> estimates = new HashMap<>();
+                    double totalWork = 0;
+                    double totalAudio = 0;
+                    long totalInput = 0;
+                    long totalOutput = 0;
+                    for (AudioConversionTask task : toRun) {
+                        JobEstimator.Estimate estimate = ffmpegService.getJobEstimator()
+                                .estimate(task.getAudioFile(), settings);
+                        estimates.put(task, estimate);
+                        totalWork += estimate.getWallSeconds();
+                        totalAudio += estimate.getAudioSeconds();
+                        totalInput += task.getAudioFile().getFileSize();
+                        totalOutput += estimate.getOutputBytes();
+                    }
+                    for (List<AudioFile> group : duplicates.values()) {
+                        for (AudioFile duplicate : group) {
+                            totalOutput += ffmpegService.getJobEstimator().estimate(duplicate, settings).getOutputBytes();
+                        }
+                    }
+                    BatchProgress batch = new BatchProgress(toRun.size(), scheduler.getCpuLimit(),
+                            totalWork, totalAudio, totalInput, totalOutput);
+
+                    long freeBytes = Files.getFileStore(outputDir.toPath()).getUsableSpace();
+                    String plan = batch.getPlan(freeBytes);
+                    logger.info("Batch plan: {}", plan);
+                    updateMessage(plan);
+                    if (totalOutput > freeBytes) {
+                        Platform.runLater(() -> showError("Low Disk Space", "The output directory may run out of space.\n\n" + plan));
+                    }
 
-                for (int i = 0; i < totalTasks; i++) {
-                    try {
-                        Future<Void> future = completionService.take();
-                        future.get();
-                        completedTasks++;
+                    BlockingQueue<AudioConversionTask> completed = new LinkedBlockingQueue<>();
+                    Map<AudioConversionTask, CompletableFuture<Void>> futures = new HashMap<>();
+                    Path encoderOutputDir = ffmpegService.getEncoderOutputDir(outputDir.getAbsolutePath());
+                    for (List<AudioConversionTask> group : planMicroBatches(toRun)) {
+                        LongSupplier memory = () -> {
+                            long bytes = 0;
+                            for (AudioConversionTask task : group) {
+                                bytes += ffmpegService.getMemoryEstimator().estimate(task.getAudioFile(), settings);
+                            }
+                            return bytes;
+                        };
+                        Path input = Paths.get(group.get(0).getAudioFile().getFilePath());
+                        if (group.size() == 1) {
+                            AudioConversionTask task = group.get(0);
+                            CompletableFuture<Void> future = scheduler.submit(task, input, encoderOutputDir, memory);
+                            futures.put(task, future);
+                            future.whenComplete((result, error) -> completed.add(task));
+                            continue;
+                        }
+                        // One process for the group; each file still completes (or fails) on its own
+                        MicroBatchTask batchTask = new MicroBatchTask(group, settings,
+                                outputDir.getAbsolutePath(), ffmpegService);
+                        CompletableFuture<Void> batchFuture = scheduler.submit(batchTask, input, encoderOutputDir, memory);
+                        for (AudioConversionTask task : group) {
+                            CompletableFuture<Void> future = batchFuture.thenRun(() -> {
+                                AudioConversionException failure = batchTask.getFailure(task);
+                                if (failure != null) {
+                                    throw new CompletionException(failure);
+                                }
+                            });
+                            futures.put(task, future);
+                            future.whenComplete((result, error) -> completed.add(task));
+                        }
+                    }
 
-                        double progress = (double) completedTasks / totalTasks;
-                        updateProgress(progress, 1.0);
-                        updateMessage(String.format("Completed %d of %d files",
-                                completedTasks, totalTasks));
+                    for (int i = 0; i < toRun.size(); i++) {
+                        AudioConversionTask task = completed.take();
+                        batch.complete(estimates.get(task), task.getAudioFile().getFileSize());
+                        updateProgress(batch.getFraction(), 1.0);
+                        updateMessage(batch.getStatus());
+                        try {
+                            futures.get(task).get();
+                        } catch (ExecutionException e) {
+                            handleExecutionException(e);
+                        }
+                    }
 
-                    } catch (ExecutionException e) {
-                        handleExecutionException(e);
+                    updateMessage("Moving outputs to destination...");
+                    for (AudioConversionTask task : toRun) {
+                        try {
+                            task.awaitPublished();
+                        } catch (AudioConversionException e) {
+                            logger.warn("Output not published: {}", e.getMessage());
+                        }
                     }
+                } finally {
+                    // Duplicates stay PENDING until their primary is settled; if anything above
+                    // throws they are failed (and journaled) here instead of staying in limbo
+                    linkDuplicateOutputs(duplicates, outputDir);
                 }
+                ffmpegService.getJobEstimator().save();
+                ffmpegService.getMemoryEstimator().save();
+                ffmpegService.getLoudnessCache().flush();
+                Platform.runLater(() -> fileListView.refresh());
 
                 return null;
             }
         };
     }
 
+    // Short inputs with equal settings share an ffmpeg process; everything else runs alone
+    private List<List<AudioConversionTask>> planMicroBatches(List<AudioConversionTask> tasks) {
+        MicroBatchPlanner planner = MicroBatchPlanner.fromConfig(AppConfig.get());
+        if (planner == null) {
+            return tasks.stream().map(List::of).toList();
+        }
+        Map<AudioFile, AudioConversionTask> byFile = new HashMap<>();
+        List<AudioFile> files = new ArrayList<>();
+        for (AudioConversionTask task : tasks) {
+            byFile.put(task.getAudioFile(), task);
+            files.add(task.getAudioFile());
+        }
+        List<List<AudioConversionTask>> groups = new ArrayList<>();
+        for (List<AudioFile> group : planner.plan(files, settings)) {
+            groups.add(group.stream().map(byFile::get).toList());
+        }
+        if (groups.size() < tasks.size()) {
+            logger.info("Micro-batching {} files into {} ffmpeg processes ({})", tasks.size(), groups.size(), planner);
+        }
+        return groups;
+    }
+
+    // Level scan of uncompressed inputs before the batch, so clipping and silent files show up in the list
+    private void scanPcmInputs(List<AudioConversionTask> tasks, Consumer<String> message) {
+        PcmAnalyzer analyzer = new PcmAnalyzer();
+        for (AudioConversionTask task : tasks) {
+            AudioFile audioFile = task.getAudioFile();
+            if (audioFile.getPcmAnalysis() != null || !PcmAnalyzer.canAnalyze(audioFile)) {
+                continue;
+            }
+            message.accept("Analyzing " + audioFile.getName());
+            try {
+                audioFile.setPcmAnalysis(analyzer.analyze(audioFile));
+            } catch (AudioConversionException | RuntimeException e) {
+                // Not fatal, ffmpeg will report the real problem during conversion
+                logger.info("PCM analysis skipped for {}: {}", audioFile.getName(), e.getMessage());
+            }
+        }
+        Platform.runLater(() -> fileListView.refresh());
+    }
+
+    // Byte-identical inputs are converted once; the rest get a link to (or copy of) that output
+    private Map<AudioFile, List<AudioFile>> findDuplicateInputs(Consumer<String> message) {
+        if (!AppConfig.get().getBoolean("dedup.enabled", true) || audioFiles.size() < 2) {
+            return Map.of();
+        }
+        message.accept("Checking for duplicate files...");
+        return new ContentDeduplicator().findDuplicates(new ArrayList<>(audioFiles));
+    }
+
+    private void linkDuplicateOutputs(Map<AudioFile, List<AudioFile>> duplicates, File outputDir) {
+        List<String> notCreated = new ArrayList<>();
+        List<String> shared = new ArrayList<>();
+        for (Map.Entry<AudioFile, List<AudioFile>> entry : duplicates.entrySet()) {
+            AudioFile primary = entry.getKey();
+            Path primaryOutput = Paths.get(ffmpegService.buildOutputFilename(
+                    primary, settings, outputDir.getAbsolutePath()));
+            for (AudioFile duplicate : entry.getValue()) {
+                AudioFile.ConversionStatus status = AudioFile.ConversionStatus.FAILED;
+                if (primary.getStatus() == AudioFile.ConversionStatus.COMPLETED) {
+                    try {
+                        if (!ContentDeduplicator.materialize(primaryOutput, Paths.get(ffmpegService
+                                .buildOutputFilename(duplicate, settings, outputDir.getAbsolutePath())))) {
+                            logger.warn("{} has the same output name as {}, only one output was written",
+                                    duplicate.getFilePath(), primary.getFilePath());
+                            shared.add(duplicate.getFilePath() + " -> " + primaryOutput.getFileName());
+                        }
+                        status = AudioFile.ConversionStatus.COMPLETED;
+                    } catch (IOException e) {
+                        logger.warn("Duplicate output not created for {}: {}", duplicate.getName(), e.getMessage());
+                        notCreated.add(duplicate.getName() + ": " + e.getMessage());
+                    }
+                }
+                duplicate.setStatus(status);
+                if (batchJournal != null) {
+                    if (status == AudioFile.ConversionStatus.COMPLETED) {
+                        batchJournal.completed(duplicate);
+                    } else {
+                        batchJournal.failed(duplicate);
+                    }
+                }
+            }
+        }
+        if (!notCreated.isEmpty()) {
+            Platform.runLater(() -> showError("Duplicate Outputs Not Created",
+                    "These files have the same content as another input, but their output could not be "
+                            + "linked or copied:\n\n" + String.join("\n", notCreated)));
+        }
+        if (!shared.isEmpty()) {
+            Platform.runLater(() -> showError("Duplicate Outputs Share a Name",
+                    "These files have the same content and the same output name as another input, "
+                            + "so they share its output instead of getting one of their own:\n\n"
+                            + String.join("\n", shared)));
+        }
+    }
+
     private void handleExecutionException(ExecutionException e) {
         Throwable cause = e.getCause();
         if (cause instanceof AudioConversionException) {
@@ -472,6 +823,10 @@ public class MainViewController {
     }
 
     private void handleConversionSuccess(File outputDir) {
+        if (batchJournal != null) {
+            batchJournal.finish();
+        }
+
         long successful = audioFiles.stream()
                 .filter(f -> f.getStatus() == AudioFile.ConversionStatus.COMPLETED)
                 .count();
@@ -479,13 +834,25 @@ public class MainViewController {
                 .filter(f -> f.getStatus() == AudioFile.ConversionStatus.FAILED)
                 .count();
 
+        // Only this batch's children; the service ledger keeps running totals for /metrics
+        ResourceLedger usage = new ResourceLedger();
+        for (AudioFile audioFile : audioFiles) {
+            if (audioFile.getResourceUsage() != null) {
+                usage.record(audioFile, settings, audioFile.getResourceUsage(),
+                        audioFile.getStatus() == AudioFile.ConversionStatus.COMPLETED);
+            }
+        }
+        String usageSummary = usage.summaryLines().isEmpty() ? ""
+                : "\n\nResources used:\n" + String.join("\n", usage.summaryLines());
+        logger.info("Batch resource usage: {}", usage.getTotal());
+
         statusLabel.textProperty().unbind();
         statusLabel.setText(String.format("Conversion complete: %d successful, %d failed",
                 successful, failed));
 
         showInfo("Conversion Complete",
-                String.format("Successfully converted %d file(s).\nFailed: %d\n\nOutput location: %s",
-                        successful, failed, outputDir.getAbsolutePath()));
+                String.format("Successfully converted %d file(s).\nFailed: %d\n\nOutput location: %s%s",
+                        successful, failed, outputDir.getAbsolutePath(), usageSummary));
 
         setUIDisabled(false);
     }
@@ -507,7 +874,10 @@ public class MainViewController {
         variableBitrateRadio.setDisable(disabled);
         sampleRateComboBox.setDisable(disabled);
         channelsComboBox.setDisable(disabled);
+        loudnessComboBox.setDisable(disabled);
+        effortComboBox.setDisable(disabled);
         showAdvancedCheckBox.setDisable(disabled);
+        backgroundPriorityCheckBox.setDisable(disabled);
         presetComboBox.setDisable(disabled);
         loadPresetButton.setDisable(disabled);
 
@@ -528,12 +898,47 @@ public class MainViewController {
 
     @FXML
     private void onClose() {
+        if (adaptiveController != null) {
+            adaptiveController.close();
+        }
         if (executorService != null) {
             executorService.shutdown();
         }
+        if (ffmpegService != null) {
+            ffmpegService.shutdown();
+        }
+        if (batchJournal != null) {
+            batchJournal.close();
+        }
+        if (waveformService != null) {
+            waveformService.shutdown();
+        }
         Platform.exit();
     }
 
+    // Entry points for the headless soak harness (OrchestrationSoak under src/test); the GUI
+    // reaches the same code through the file and directory dialogs. Call on the FX thread.
+    public void addFiles(List<File> files) {
+        fileDropController.addFiles(files);
+    }
+
+    public void clearFiles() {
+        fileDropController.clearFiles();
+    }
+
+    public void startConversionTo(File outputDir) {
+        showStage2();
+        startConversion(outputDir);
+    }
+
+    public boolean isConverting() {
+        return convertButton.isDisabled();
+    }
+
+    public List<AudioFile> getAudioFiles() {
+        return Collections.unmodifiableList(audioFiles);
+    }
+
     private void showStage1() {
         fileDropStage.setVisible(true);
         fileDropStage.setManaged(true);
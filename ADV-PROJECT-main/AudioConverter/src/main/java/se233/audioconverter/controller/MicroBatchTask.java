@@ -0,0 +1,57 @@
+package se233.audioconverter.controller;
+
+import se233.audioconverter.exception.AudioConversionException;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.service.FFmpegService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Runs the tasks of one micro-batch (MicroBatchPlanner) as a single ffmpeg process. Each task
+// still goes through its own status changes; failures are kept per task for getFailure
+// instead of failing the batch.
+public class MicroBatchTask implements Callable<Void> {
+    private final List<AudioConversionTask> tasks;
+    private final ConversionSettings settings;
+    private final String outputPath;
+    private final FFmpegService ffmpegService;
+    private volatile Map<AudioFile, AudioConversionException> failures = Map.of();
+
+    public MicroBatchTask(List<AudioConversionTask> tasks, ConversionSettings settings,
+                          String outputPath, FFmpegService ffmpegService) {
+        this.tasks = tasks;
+        this.settings = settings;
+        this.outputPath = outputPath;
+        this.ffmpegService = ffmpegService;
+    }
+
+    @Override
+    public Void call() {
+        List<AudioFile> files = new ArrayList<>();
+        for (AudioConversionTask task : tasks) {
+            task.updateStatus(AudioFile.ConversionStatus.PROCESSING);
+            files.add(task.getAudioFile());
+        }
+
+        failures = ffmpegService.convertBatch(files, settings, outputPath);
+
+        for (AudioConversionTask task : tasks) {
+            task.updateStatus(failures.containsKey(task.getAudioFile())
+                    ? AudioFile.ConversionStatus.FAILED
+                    : AudioFile.ConversionStatus.COMPLETED);
+        }
+        return null;
+    }
+
+    // Null when the task's file was converted
+    public AudioConversionException getFailure(AudioConversionTask task) {
+        return failures.get(task.getAudioFile());
+    }
+
+    public List<AudioConversionTask> getTasks() {
+        return tasks;
+    }
+}
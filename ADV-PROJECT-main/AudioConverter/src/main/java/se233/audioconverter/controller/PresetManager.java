@@ -2,22 +2,26 @@ package se233.audioconverter.controller;
 
 import javafx.collections.FXCollections;
 import javafx.scene.control.*;
-import se233.audioconverter.model.ConversionPreset;
 import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.PresetDefinition;
+import se233.audioconverter.service.PresetLibrary;
 
 import java.util.function.Consumer;
 
 public class PresetManager {
-    private final ComboBox<ConversionPreset> presetComboBox;
+    private final ComboBox<PresetDefinition> presetComboBox;
     private final Label presetDescriptionLabel;
     private final ConversionSettings settings;
-    private final Consumer<ConversionPreset> onPresetLoaded;
+    private final Consumer<PresetDefinition> onPresetLoaded;
+    private final PresetLibrary library;
 
-    public PresetManager(ComboBox<ConversionPreset> presetComboBox,
+    public PresetManager(ComboBox<PresetDefinition> presetComboBox,
                          Label presetDescriptionLabel,
                          ConversionSettings settings,
-                         Consumer<ConversionPreset> onPresetLoaded) {
+                         PresetLibrary library,
+                         Consumer<PresetDefinition> onPresetLoaded) {
         this.presetComboBox = presetComboBox;
+        this.library = library;
         this.presetDescriptionLabel = presetDescriptionLabel;
         this.settings = settings;
         this.onPresetLoaded = onPresetLoaded;
@@ -26,14 +30,14 @@ public class PresetManager {
     }
 
     private void setupPresets() {
-        presetComboBox.setItems(FXCollections.observableArrayList(
-                ConversionPreset.values()));
+        presetComboBox.setItems(FXCollections.observableArrayList(library.getPresets()));
 
-        presetComboBox.setValue(ConversionPreset.NONE);
-        presetDescriptionLabel.setText(ConversionPreset.NONE.getDescription());
+        PresetDefinition none = library.getPresets().get(0);
+        presetComboBox.setValue(none);
+        presetDescriptionLabel.setText(none.getDescription());
 
         presetComboBox.setOnAction(e -> {
-            ConversionPreset selected = presetComboBox.getValue();
+            PresetDefinition selected = presetComboBox.getValue();
             if (selected != null) {
                 presetDescriptionLabel.setText(selected.getDescription());
             } else {
@@ -43,13 +47,13 @@ public class PresetManager {
     }
 
     public void loadSelectedPreset() {
-        ConversionPreset preset = presetComboBox.getValue();
+        PresetDefinition preset = presetComboBox.getValue();
 
         if (preset == null) {
             return;
         }
 
-        if (preset == ConversionPreset.NONE) {
+        if (preset.isCustom()) {
             return;
         }
 
@@ -60,7 +64,7 @@ public class PresetManager {
         }
     }
 
-    public ConversionPreset getSelectedPreset() {
+    public PresetDefinition getSelectedPreset() {
         return presetComboBox.getValue();
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package se233.audioconverter.controller;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ListCell;
+import javafx.scene.paint.Color;
+import se233.audioconverter.analysis.WaveformPeaks;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.service.WaveformService;
+
+// File list row with a small waveform overview. ListView only creates cells for visible rows,
+// so a 10k-file list still draws a handful of canvases; peaks are requested lazily per row.
+public class WaveformListCell extends ListCell<AudioFile> {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 24;
+
+    private final WaveformService waveformService;
+    private final Canvas canvas = new Canvas(WIDTH, HEIGHT);
+    private final byte[] mins = new byte[WIDTH];
+    private final byte[] maxs = new byte[WIDTH];
+
+    public WaveformListCell(WaveformService waveformService) {
+        this.waveformService = waveformService;
+    }
+
+    @Override
+    protected void updateItem(AudioFile item, boolean empty) {
+        super.updateItem(item, empty);
+        if (empty || item == null) {
+            setText(null);
+            setGraphic(null);
+            setStyle("");
+            return;
+        }
+
+        setText(item.toString());
+        switch (item.getStatus()) {
+            case PENDING -> setStyle("-fx-text-fill: black;");
+            case PROCESSING -> setStyle("-fx-text-fill: blue; -fx-font-weight: bold;");
+            case COMPLETED -> setStyle("-fx-text-fill: green; -fx-font-weight: bold;");
+            case FAILED -> setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+        }
+
+        if (waveformService == null) {
+            setGraphic(null);
+            return;
+        }
+        setGraphic(canvas);
+
+        WaveformPeaks peaks = waveformService.getIfLoaded(item);
+        draw(peaks);
+        if (peaks == null) {
+            waveformService.request(item, loaded -> Platform.runLater(() -> {
+                // The cell may have been reused for another row meanwhile; table rows come back
+                // as new view objects, so compare by row rather than identity
+                if (item.equals(getItem())) {
+                    draw(loaded);
+                }
+            }));
+        }
+    }
+
+    private void draw(WaveformPeaks peaks) {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, WIDTH, HEIGHT);
+        double mid = HEIGHT / 2.0;
+        if (peaks == null) {
+            g.setStroke(Color.LIGHTGRAY);
+            g.strokeLine(0, mid, WIDTH, mid);
+            return;
+        }
+
+        peaks.render(WIDTH, mins, maxs);
+        g.setStroke(Color.STEELBLUE);
+        double scale = mid / 127.0;
+        for (int x = 0; x < WIDTH; x++) {
+            g.strokeLine(x + 0.5, mid - maxs[x] * scale, x + 0.5, mid - mins[x] * scale);
+        }
+    }
+}
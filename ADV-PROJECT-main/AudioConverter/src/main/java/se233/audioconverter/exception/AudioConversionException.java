@@ -3,13 +3,15 @@ package se233.audioconverter.exception;
 public class AudioConversionException extends Exception {
     private final String fileName;
     private final ErrorType errorType;
+    private final boolean retryable;
 
     public enum ErrorType {
         UNSUPPORTED_FORMAT("Unsupported audio format"),
         FILE_NOT_FOUND("File not found"),
         FFMPEG_ERROR("FFmpeg conversion error"),
         INVALID_SETTINGS("Invalid conversion settings"),
-        IO_ERROR("Input/Output error");
+        IO_ERROR("Input/Output error"),
+        STALLED("FFmpeg stopped making progress");
 
         private final String message;
 
@@ -23,15 +25,22 @@ public class AudioConversionException extends Exception {
     }
 
     public AudioConversionException(String fileName, ErrorType errorType, String details) {
+        this(fileName, errorType, details, false);
+    }
+
+    // retryable marks failures a second attempt may get past, e.g. a transient I/O stall
+    public AudioConversionException(String fileName, ErrorType errorType, String details, boolean retryable) {
         super(String.format("%s: %s - %s", errorType.getMessage(), fileName, details));
         this.fileName = fileName;
         this.errorType = errorType;
+        this.retryable = retryable;
     }
 
     public AudioConversionException(String fileName, ErrorType errorType, Throwable cause) {
         super(String.format("%s: %s", errorType.getMessage(), fileName), cause);
         this.fileName = fileName;
         this.errorType = errorType;
+        this.retryable = false;
     }
 
     public String getFileName() {
@@ -42,6 +51,10 @@ public class AudioConversionException extends Exception {
         return errorType;
     }
 
+    public boolean isRetryable() {
+        return retryable;
+    }
+
     public String getUserFriendlyMessage() {
         return String.format("Failed to convert '%s': %s", fileName, errorType.getMessage());
     }
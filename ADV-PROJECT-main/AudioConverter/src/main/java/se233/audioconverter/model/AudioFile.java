@@ -1,15 +1,14 @@
 package se233.audioconverter.model;
 
 import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
+// A file in the list: a row of an AudioFileTable's columns. A file built from a path (for the
+// watch folder, the HTTP API or a queue worker) owns a one-row store of its own, so every
+// AudioFile reads and writes its values the same way and is equal to another exactly when
+// both point at the same row.
 public class AudioFile {
-    private String name;
-    private String filePath;
-    private String format;
-    private long fileSize;
-    private ConversionStatus status;
+    private final AudioFileTable.Columns columns;
+    private final int row;
 
     public enum ConversionStatus {
         PENDING("Pending"),
@@ -29,16 +28,16 @@ public class AudioFile {
     }
 
     public AudioFile(String filePath) {
-        this.filePath = filePath;
-        Path path = Paths.get(filePath);
-        this.name = path.getFileName().toString();
-        this.format = getFileExtension(name);
-        File file = new File(filePath);
-        this.fileSize = file.length();
-        this.status = ConversionStatus.PENDING;
+        this.columns = new AudioFileTable.Columns(1);
+        this.row = columns.copyOfPath(filePath);
     }
 
-    private String getFileExtension(String filename) {
+    AudioFile(AudioFileTable.Columns columns, int row) {
+        this.columns = columns;
+        this.row = row;
+    }
+
+    static String extensionOf(String filename) {
         int lastDot = filename.lastIndexOf('.');
         if (lastDot > 0) {
             return filename.substring(lastDot + 1).toLowerCase();
@@ -48,47 +47,119 @@ public class AudioFile {
 
     // Getters and Setters
     public String getName() {
-        return name;
+        return columns.getName(row);
     }
 
     public void setName(String name) {
-        this.name = name;
+        columns.setName(row, name);
     }
 
     public String getFilePath() {
-        return filePath;
+        return columns.getFilePath(row);
     }
 
     public void setFilePath(String filePath) {
-        this.filePath = filePath;
+        columns.setFilePath(row, filePath);
     }
 
     public String getFormat() {
-        return format;
+        return columns.getFormat(row);
     }
 
     public void setFormat(String format) {
-        this.format = format;
+        columns.setFormat(row, format);
     }
 
     public long getFileSize() {
-        return fileSize;
+        return columns.getFileSize(row);
     }
 
     public void setFileSize(long fileSize) {
-        this.fileSize = fileSize;
+        columns.setFileSize(row, fileSize);
     }
 
     public ConversionStatus getStatus() {
-        return status;
+        return columns.getStatus(row);
     }
 
     public void setStatus(ConversionStatus status) {
-        this.status = status;
+        columns.setStatus(row, status);
+    }
+
+    public PcmAnalysis getPcmAnalysis() {
+        return columns.getPcmAnalysis(row);
+    }
+
+    public void setPcmAnalysis(PcmAnalysis pcmAnalysis) {
+        columns.setPcmAnalysis(row, pcmAnalysis);
+    }
+
+    // Probed duration in seconds, 0 when not probed yet
+    public double getDurationSeconds() {
+        return columns.getDurationSeconds(row);
+    }
+
+    public void setDurationSeconds(double durationSeconds) {
+        columns.setDurationSeconds(row, durationSeconds);
+    }
+
+    // Probed stream parameters, 0 when not probed yet
+    public int getSourceSampleRate() {
+        return columns.getSourceSampleRate(row);
+    }
+
+    public void setSourceSampleRate(int sourceSampleRate) {
+        columns.setSourceSampleRate(row, sourceSampleRate);
+    }
+
+    public int getSourceChannels() {
+        return columns.getSourceChannels(row);
+    }
+
+    public void setSourceChannels(int sourceChannels) {
+        columns.setSourceChannels(row, sourceChannels);
+    }
+
+    public ResourceUsage getResourceUsage() {
+        return columns.getResourceUsage(row);
+    }
+
+    public void setResourceUsage(ResourceUsage resourceUsage) {
+        columns.setResourceUsage(row, resourceUsage);
+    }
+
+    // Identifies the input content for on-disk caches: same path, size and
+    // modification time means the cached analysis is still valid.
+    public String getIdentityKey() {
+        File file = new File(getFilePath());
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
     }
 
     @Override
     public String toString() {
-        return String.format("%s [%s] - %s", name, format.toUpperCase(), status.getDisplayName());
+        PcmAnalysis analysis = getPcmAnalysis();
+        String text = String.format("%s [%s] - %s", getName(), getFormat().toUpperCase(), getStatus().getDisplayName());
+        if (analysis != null && analysis.getWarning() != null) {
+            text += " (" + analysis.getWarning() + ")";
+        }
+        return text;
+    }
+
+    boolean isRowOf(AudioFileTable.Columns table) {
+        return columns == table;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AudioFile other && other.columns == columns && other.row == row;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(columns) * 31 + row;
     }
 }
\ No newline at end of file
@@ -0,0 +1,711 @@
+package se233.audioconverter.model;
+
+import javafx.collections.ObservableListBase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+// Column store behind the file list, for libraries of a million entries. A list of AudioFile
+// objects costs over 200 bytes per file (the object, its name, path and format Strings); here
+// a file is a row across primitive columns, under 80 bytes with the path index and growth room:
+//   directory   id of the interned directory prefix
+//   name        UTF-8 bytes in one shared array, offset and length per row
+//   format      dictionary encoded, one byte
+//   size, duration, status, sample rate, channels as primitives
+// PCM analyses and resource usage are rare and large, they live in maps by row.
+//
+// get(i) returns an AudioFile view of the row: a small object that reads and writes the
+// columns, so list cells, tasks and services keep the AudioFile API and only rows in use are
+// materialized. Views of the same row are equal. Adding or setting an AudioFile that is not
+// listed here copies it into a new row; later changes to that object are not seen.
+//
+// Rows are found by path through a hash index and by view through a row -> position index, so
+// contains, indexOf and remove(Object) do not scan the list. Removed and replaced rows keep
+// their column space until they outnumber the listed ones, then the columns are compacted in
+// place. Row ids of listed rows stay valid across compaction, so their views keep working; a
+// view of a removed row can be read until then (a row still PROCESSING is kept for its worker).
+// Compaction frees the ids of dropped rows for reuse, so the id-indexed arrays stay bounded by
+// the peak row count; a tag in each id tells a stale view from the row that reused its id.
+// Structural changes belong on the FX thread like any list behind a ListView; views may be
+// read and written from any thread.
+public class AudioFileTable extends ObservableListBase<AudioFile> {
+    private static final int INITIAL_ROWS = 1024;
+
+    private Columns columns = new Columns(INITIAL_ROWS);
+    // List position -> row
+    private int[] order = new int[INITIAL_ROWS];
+    private int size;
+    // Row id entry -> list position + 1, 0 when the row is not listed
+    private int[] positions = new int[INITIAL_ROWS];
+    // Rows no longer listed that still hold column space
+    private int removedRows;
+    // Open-addressing index of the listed rows by path, row + 1 per slot, rebuilt after removals
+    private int[] slots = new int[0];
+    private int indexed;
+    private boolean indexStale;
+    private int indexedPathVersion;
+
+    @Override
+    public AudioFile get(int index) {
+        Objects.checkIndex(index, size);
+        return new AudioFile(columns, order[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Appends a row per path not listed yet, with a single change event. Returns the number added.
+    public int addPaths(Collection<String> paths) {
+        int from = size;
+        for (String path : paths) {
+            int split = Columns.splitIndex(path);
+            String prefix = path.substring(0, split);
+            byte[] name = path.substring(split).getBytes(StandardCharsets.UTF_8);
+            if (find(prefix, name) >= 0) {
+                continue;
+            }
+            int row = columns.append(prefix, name, AudioFile.extensionOf(path.substring(split)),
+                    new File(path).length());
+            append(row);
+        }
+        if (size > from) {
+            beginChange();
+            nextAdd(from, size);
+            endChange();
+        }
+        return size - from;
+    }
+
+    public boolean containsPath(String path) {
+        int split = Columns.splitIndex(path);
+        return find(path.substring(0, split), path.substring(split).getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    @Override
+    public void add(int index, AudioFile audioFile) {
+        Objects.checkIndex(index, size + 1);
+        int row = columns.copyOf(audioFile);
+        append(row);
+        if (index < size - 1) {
+            System.arraycopy(order, index, order, index + 1, size - 1 - index);
+            order[index] = row;
+            renumber(index, size);
+        }
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends AudioFile> files) {
+        int from = size;
+        for (AudioFile audioFile : files) {
+            append(columns.copyOf(audioFile));
+        }
+        if (size == from) {
+            return false;
+        }
+        beginChange();
+        nextAdd(from, size);
+        endChange();
+        return true;
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends AudioFile> files) {
+        if (size == 0 && files.isEmpty()) {
+            return false;
+        }
+        // Copied first, the argument may be a view of this list
+        List<AudioFile> incoming = new ArrayList<>(files);
+        List<AudioFile> removed = new RowList(columns, Arrays.copyOf(order, size), size);
+        for (int i = 0; i < size; i++) {
+            positions[Columns.entry(order[i])] = 0;
+        }
+        removedRows += size;
+        size = 0;
+        indexStale = true;
+        for (AudioFile audioFile : incoming) {
+            append(columns.copyOf(audioFile));
+        }
+        beginChange();
+        nextReplace(0, size, removed);
+        endChange();
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public AudioFile set(int index, AudioFile audioFile) {
+        Objects.checkIndex(index, size);
+        int old = order[index];
+        if (audioFile.isRowOf(columns) && audioFile.getRow() == old) {
+            return audioFile;
+        }
+        AudioFile replaced = new AudioFile(columns, old);
+        int row = columns.copyOf(audioFile);
+        ensurePositions(row);
+        order[index] = row;
+        positions[Columns.entry(old)] = 0;
+        positions[Columns.entry(row)] = index + 1;
+        removedRows++;
+        indexStale = true;
+        beginChange();
+        nextSet(index, replaced);
+        endChange();
+        compactIfNeeded();
+        return replaced;
+    }
+
+    @Override
+    public AudioFile remove(int index) {
+        Objects.checkIndex(index, size);
+        int row = order[index];
+        AudioFile removed = new AudioFile(columns, row);
+        System.arraycopy(order, index + 1, order, index, size - 1 - index);
+        size--;
+        positions[Columns.entry(row)] = 0;
+        renumber(index, size);
+        removedRows++;
+        indexStale = true;
+        beginChange();
+        nextRemove(index, removed);
+        endChange();
+        compactIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (o instanceof AudioFile audioFile && audioFile.isRowOf(columns)) {
+            int row = audioFile.getRow();
+            int entry = Columns.entry(row);
+            int index = entry < positions.length ? positions[entry] - 1 : -1;
+            // A stale view shares its entry with the row that reused the id, not the id itself
+            return index >= 0 && order[index] == row ? index : -1;
+        }
+        return -1;
+    }
+
+    // A row is listed at most once
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    // Drops every row and the column space; views handed out before keep reading the old columns
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        List<AudioFile> removed = new RowList(columns, order, size);
+        columns = new Columns(INITIAL_ROWS);
+        order = new int[INITIAL_ROWS];
+        positions = new int[INITIAL_ROWS];
+        size = 0;
+        removedRows = 0;
+        slots = new int[0];
+        indexed = 0;
+        indexStale = false;
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+
+    private void append(int row) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        ensurePositions(row);
+        order[size++] = row;
+        positions[Columns.entry(row)] = size;
+        if (!indexStale) {
+            index(row);
+        }
+    }
+
+    private void ensurePositions(int row) {
+        int entry = Columns.entry(row);
+        if (entry >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positions.length * 2, entry + 1));
+        }
+    }
+
+    private void renumber(int from, int to) {
+        for (int i = from; i < to; i++) {
+            positions[Columns.entry(order[i])] = i + 1;
+        }
+    }
+
+    // Runs after the change event, so listeners have read the removed rows by then
+    private void compactIfNeeded() {
+        if (removedRows > Math.max(INITIAL_ROWS, size)) {
+            // Entries are only reused after a compaction, so a set position is this row's
+            IntPredicate listed = row -> Columns.entry(row) < positions.length && positions[Columns.entry(row)] != 0;
+            removedRows = columns.compact(listed) - size;
+        }
+    }
+
+    private int find(String prefix, byte[] name) {
+        int directory = columns.findDirectory(prefix);
+        if (directory < 0 || size == 0) {
+            return -1;
+        }
+        if (indexStale || indexedPathVersion != columns.getPathVersion()) {
+            rebuildIndex();
+        }
+        int mask = slots.length - 1;
+        for (int slot = Columns.hash(directory, name, 0, name.length) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (columns.matches(row, directory, name)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private void index(int row) {
+        // Kept at most half full so probe runs stay short
+        if ((indexed + 1) * 2 > slots.length) {
+            rebuildIndex();
+            return;
+        }
+        insert(row);
+    }
+
+    private void rebuildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(16, size * 2)) << 1;
+        slots = new int[capacity];
+        indexed = 0;
+        for (int i = 0; i < size; i++) {
+            insert(order[i]);
+        }
+        indexStale = false;
+        indexedPathVersion = columns.getPathVersion();
+    }
+
+    private void insert(int row) {
+        int mask = slots.length - 1;
+        int slot = columns.hash(row) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+        indexed++;
+    }
+
+    // Views over a fixed set of rows, e.g. the removed rows of a change event
+    private static final class RowList extends AbstractList<AudioFile> {
+        private final Columns columns;
+        private final int[] rows;
+        private final int size;
+
+        RowList(Columns columns, int[] rows, int size) {
+            this.columns = columns;
+            this.rows = rows;
+            this.size = size;
+        }
+
+        @Override
+        public AudioFile get(int index) {
+            Objects.checkIndex(index, size);
+            return new AudioFile(columns, rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // The column arrays and dictionaries. Rows are appended and addressed by id; an id maps to
+    // a slot in the arrays, which compact() reassigns. An id is an entry in the id table (low
+    // 24 bits) and the entry's generation when it was handed out (high 8 bits); compact() bumps
+    // the generation of the entries it frees, and append() reuses them. Everything is guarded by
+    // the instance lock so workers can update statuses while the FX thread reads.
+    static final class Columns {
+        private static final AudioFile.ConversionStatus[] STATUSES = AudioFile.ConversionStatus.values();
+        private static final int ENTRY_BITS = 24;
+        private static final int ENTRY_MASK = (1 << ENTRY_BITS) - 1;
+
+        private final List<String> directories = new ArrayList<>();
+        private final Map<String, Integer> directoryIds = new HashMap<>();
+        private final List<String> formats = new ArrayList<>();
+        private final Map<String, Integer> formatIds = new HashMap<>();
+        private final Map<Integer, PcmAnalysis> pcmAnalyses = new HashMap<>();
+        private final Map<Integer, ResourceUsage> resourceUsages = new HashMap<>();
+        private byte[] names;
+        private int namesUsed;
+        // Bumped by renames, which move rows in the path index
+        private int pathVersion;
+        // Entry -> slot, -1 while free; entry -> generation of the id that holds it
+        private int[] slotOf;
+        private byte[] generations;
+        private int entries;
+        // Entries freed by compact(), handed out again before new ones
+        private int[] freeEntries = new int[0];
+        private int freeCount;
+        private int rows;
+        private int[] directory;
+        private int[] nameOffset;
+        private short[] nameLength;
+        private byte[] format;
+        private long[] fileSize;
+        private float[] duration;
+        private byte[] status;
+        private int[] sampleRate;
+        private byte[] channels;
+
+        Columns(int capacity) {
+            names = new byte[capacity * 16];
+            slotOf = new int[capacity];
+            generations = new byte[capacity];
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            directory = new int[capacity];
+            nameOffset = new int[capacity];
+            nameLength = new short[capacity];
+            format = new byte[capacity];
+            fileSize = new long[capacity];
+            duration = new float[capacity];
+            status = new byte[capacity];
+            sampleRate = new int[capacity];
+            channels = new byte[capacity];
+        }
+
+        static int entry(int row) {
+            return row & ENTRY_MASK;
+        }
+
+        private int id(int entry) {
+            return (generations[entry] & 0xFF) << ENTRY_BITS | entry;
+        }
+
+        private int slot(int row) {
+            int entry = entry(row);
+            int slot = slotOf[entry];
+            if (slot < 0 || id(entry) != row) {
+                throw new IllegalStateException("Row " + entry + " was removed from its table");
+            }
+            return slot;
+        }
+
+        // Directory prefix ends after the last separator, so prefix + name is the path as given
+        static int splitIndex(String path) {
+            return Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar)) + 1;
+        }
+
+        static int hash(int directory, byte[] bytes, int from, int to) {
+            int hash = directory;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            // Spread the low bits, the table is indexed by a mask
+            return hash ^ (hash >>> 16);
+        }
+
+        synchronized int hash(int row) {
+            int slot = slot(row);
+            return hash(directory[slot], names, nameOffset[slot], nameOffset[slot] + (nameLength[slot] & 0xFFFF));
+        }
+
+        synchronized int findDirectory(String prefix) {
+            return directoryIds.getOrDefault(prefix, -1);
+        }
+
+        synchronized boolean matches(int row, int directoryId, byte[] name) {
+            int slot = slot(row);
+            int offset = nameOffset[slot];
+            return directory[slot] == directoryId && Arrays.equals(names, offset,
+                    offset + (nameLength[slot] & 0xFFFF), name, 0, name.length);
+        }
+
+        synchronized int append(String prefix, byte[] name, String formatName, long size) {
+            if (rows == directory.length) {
+                grow(Math.max(rows * 2, 1));
+            }
+            int entry;
+            if (freeCount > 0) {
+                entry = freeEntries[--freeCount];
+            } else {
+                // The last entry is left out: at generation 255 its id would be -1, the empty index slot
+                if (entries == ENTRY_MASK) {
+                    throw new IllegalStateException("More than " + ENTRY_MASK + " rows in one table");
+                }
+                if (entries == slotOf.length) {
+                    slotOf = Arrays.copyOf(slotOf, Math.max(entries * 2, 1));
+                    generations = Arrays.copyOf(generations, slotOf.length);
+                }
+                entry = entries++;
+            }
+            int row = id(entry);
+            int slot = rows++;
+            slotOf[entry] = slot;
+            directory[slot] = directoryIds.computeIfAbsent(prefix, key -> {
+                directories.add(key);
+                return directories.size() - 1;
+            });
+            writeName(slot, name);
+            format[slot] = formatId(formatName);
+            fileSize[slot] = size;
+            status[slot] = (byte) AudioFile.ConversionStatus.PENDING.ordinal();
+            return row;
+        }
+
+        int copyOfPath(String path) {
+            int split = splitIndex(path);
+            return append(path.substring(0, split), path.substring(split).getBytes(StandardCharsets.UTF_8),
+                    AudioFile.extensionOf(path.substring(split)), new File(path).length());
+        }
+
+        // Moves the rows that are kept to the front of fresh arrays, in entry order, and drops
+        // the rest with their name bytes, freeing their ids. A row still PROCESSING is kept even
+        // when unlisted, its worker writes the result through a view. Returns the number kept.
+        synchronized int compact(IntPredicate listed) {
+            byte processing = (byte) AudioFile.ConversionStatus.PROCESSING.ordinal();
+            int kept = 0;
+            int keptNames = 0;
+            for (int entry = 0; entry < entries; entry++) {
+                int slot = slotOf[entry];
+                if (slot >= 0 && (listed.test(id(entry)) || status[slot] == processing)) {
+                    kept++;
+                    keptNames += nameLength[slot] & 0xFFFF;
+                }
+            }
+            int[] oldDirectory = directory;
+            int[] oldNameOffset = nameOffset;
+            short[] oldNameLength = nameLength;
+            byte[] oldFormat = format;
+            long[] oldFileSize = fileSize;
+            float[] oldDuration = duration;
+            byte[] oldStatus = status;
+            int[] oldSampleRate = sampleRate;
+            byte[] oldChannels = channels;
+            byte[] oldNames = names;
+            allocate(Math.max(INITIAL_ROWS, kept + kept / 2));
+            names = new byte[Math.max(INITIAL_ROWS * 16, keptNames + keptNames / 2)];
+            namesUsed = 0;
+            rows = 0;
+            freeEntries = new int[entries - kept];
+            freeCount = 0;
+            for (int entry = entries - 1; entry >= 0; entry--) {
+                if (slotOf[entry] < 0) {
+                    freeEntries[freeCount++] = entry;
+                }
+            }
+            for (int entry = 0; entry < entries; entry++) {
+                int from = slotOf[entry];
+                if (from < 0) {
+                    continue;
+                }
+                int row = id(entry);
+                if (!listed.test(row) && oldStatus[from] != processing) {
+                    slotOf[entry] = -1;
+                    generations[entry]++;
+                    freeEntries[freeCount++] = entry;
+                    pcmAnalyses.remove(row);
+                    resourceUsages.remove(row);
+                    continue;
+                }
+                int slot = rows++;
+                slotOf[entry] = slot;
+                directory[slot] = oldDirectory[from];
+                int length = oldNameLength[from] & 0xFFFF;
+                System.arraycopy(oldNames, oldNameOffset[from], names, namesUsed, length);
+                nameOffset[slot] = namesUsed;
+                nameLength[slot] = oldNameLength[from];
+                namesUsed += length;
+                format[slot] = oldFormat[from];
+                fileSize[slot] = oldFileSize[from];
+                duration[slot] = oldDuration[from];
+                status[slot] = oldStatus[from];
+                sampleRate[slot] = oldSampleRate[from];
+                channels[slot] = oldChannels[from];
+            }
+            return kept;
+        }
+
+        int copyOf(AudioFile audioFile) {
+            String path = audioFile.getFilePath();
+            int split = splitIndex(path);
+            int row = append(path.substring(0, split), path.substring(split).getBytes(StandardCharsets.UTF_8),
+                    audioFile.getFormat(), audioFile.getFileSize());
+            setStatus(row, audioFile.getStatus());
+            setDurationSeconds(row, audioFile.getDurationSeconds());
+            setSourceSampleRate(row, audioFile.getSourceSampleRate());
+            setSourceChannels(row, audioFile.getSourceChannels());
+            setPcmAnalysis(row, audioFile.getPcmAnalysis());
+            setResourceUsage(row, audioFile.getResourceUsage());
+            return row;
+        }
+
+        private void grow(int capacity) {
+            directory = Arrays.copyOf(directory, capacity);
+            nameOffset = Arrays.copyOf(nameOffset, capacity);
+            nameLength = Arrays.copyOf(nameLength, capacity);
+            format = Arrays.copyOf(format, capacity);
+            fileSize = Arrays.copyOf(fileSize, capacity);
+            duration = Arrays.copyOf(duration, capacity);
+            status = Arrays.copyOf(status, capacity);
+            sampleRate = Arrays.copyOf(sampleRate, capacity);
+            channels = Arrays.copyOf(channels, capacity);
+        }
+
+        // Renames append the new bytes; the old ones stay until the next compact()
+        private void writeName(int slot, byte[] name) {
+            if (name.length > 0xFFFF) {
+                throw new IllegalArgumentException("File name longer than 65535 bytes");
+            }
+            if (namesUsed + name.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesUsed + name.length));
+            }
+            System.arraycopy(name, 0, names, namesUsed, name.length);
+            nameOffset[slot] = namesUsed;
+            nameLength[slot] = (short) name.length;
+            namesUsed += name.length;
+        }
+
+        private byte formatId(String formatName) {
+            int id = formatIds.computeIfAbsent(formatName, key -> {
+                formats.add(key);
+                return formats.size() - 1;
+            });
+            if (id > 0xFF) {
+                throw new IllegalStateException("More than 256 distinct formats in one table");
+            }
+            return (byte) id;
+        }
+
+        synchronized String getName(int row) {
+            int slot = slot(row);
+            return new String(names, nameOffset[slot], nameLength[slot] & 0xFFFF, StandardCharsets.UTF_8);
+        }
+
+        synchronized void setName(int row, String name) {
+            writeName(slot(row), name.getBytes(StandardCharsets.UTF_8));
+            pathVersion++;
+        }
+
+        synchronized String getFilePath(int row) {
+            return directories.get(directory[slot(row)]) + getName(row);
+        }
+
+        synchronized void setFilePath(int row, String path) {
+            int slot = slot(row);
+            int split = splitIndex(path);
+            directory[slot] = directoryIds.computeIfAbsent(path.substring(0, split), key -> {
+                directories.add(key);
+                return directories.size() - 1;
+            });
+            writeName(slot, path.substring(split).getBytes(StandardCharsets.UTF_8));
+            pathVersion++;
+        }
+
+        synchronized int getPathVersion() {
+            return pathVersion;
+        }
+
+        synchronized String getFormat(int row) {
+            return formats.get(format[slot(row)] & 0xFF);
+        }
+
+        synchronized void setFormat(int row, String formatName) {
+            format[slot(row)] = formatId(formatName);
+        }
+
+        synchronized long getFileSize(int row) {
+            return fileSize[slot(row)];
+        }
+
+        synchronized void setFileSize(int row, long size) {
+            fileSize[slot(row)] = size;
+        }
+
+        synchronized AudioFile.ConversionStatus getStatus(int row) {
+            return STATUSES[status[slot(row)]];
+        }
+
+        synchronized void setStatus(int row, AudioFile.ConversionStatus value) {
+            status[slot(row)] = (byte) value.ordinal();
+        }
+
+        synchronized double getDurationSeconds(int row) {
+            return duration[slot(row)];
+        }
+
+        synchronized void setDurationSeconds(int row, double seconds) {
+            duration[slot(row)] = (float) seconds;
+        }
+
+        synchronized int getSourceSampleRate(int row) {
+            return sampleRate[slot(row)];
+        }
+
+        synchronized void setSourceSampleRate(int row, int rate) {
+            sampleRate[slot(row)] = rate;
+        }
+
+        synchronized int getSourceChannels(int row) {
+            return channels[slot(row)] & 0xFF;
+        }
+
+        synchronized void setSourceChannels(int row, int count) {
+            channels[slot(row)] = (byte) count;
+        }
+
+        synchronized PcmAnalysis getPcmAnalysis(int row) {
+            return pcmAnalyses.get(row);
+        }
+
+        synchronized void setPcmAnalysis(int row, PcmAnalysis analysis) {
+            slot(row);
+            if (analysis != null) {
+                pcmAnalyses.put(row, analysis);
+            } else {
+                pcmAnalyses.remove(row);
+            }
+        }
+
+        synchronized ResourceUsage getResourceUsage(int row) {
+            return resourceUsages.get(row);
+        }
+
+        synchronized void setResourceUsage(int row, ResourceUsage usage) {
+            slot(row);
+            if (usage != null) {
+                resourceUsages.put(row, usage);
+            } else {
+                resourceUsages.remove(row);
+            }
+        }
+    }
+}
@@ -8,7 +8,9 @@ public enum ConversionPreset {
             192,
             ConversionSettings.SampleRate.SR_44100,
             ConversionSettings.Channels.STEREO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
     PODCAST_STANDARD(
             "Podcast Standard",
@@ -17,7 +19,21 @@ public enum ConversionPreset {
             128,
             ConversionSettings.SampleRate.SR_44100,
             ConversionSettings.Channels.MONO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
+    ),
+
+    PODCAST_NORMALIZED(
+            "Podcast Normalized",
+            "Podcast Standard leveled to -16 LUFS (extra analysis pass)",
+            ConversionSettings.OutputFormat.MP3,
+            128,
+            ConversionSettings.SampleRate.SR_44100,
+            ConversionSettings.Channels.MONO,
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.PODCAST,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
 
     MUSIC_HIGH_QUALITY(
@@ -27,7 +43,9 @@ public enum ConversionPreset {
             320,
             ConversionSettings.SampleRate.SR_48000,
             ConversionSettings.Channels.STEREO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
 
     MUSIC_VBR_QUALITY(
@@ -37,7 +55,9 @@ public enum ConversionPreset {
             0, // VBR mode - bitrate not used
             ConversionSettings.SampleRate.SR_48000,
             ConversionSettings.Channels.STEREO,
-            ConversionSettings.BitrateMode.VARIABLE
+            ConversionSettings.BitrateMode.VARIABLE,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
 
     VOICE_RECORDING(
@@ -47,7 +67,21 @@ public enum ConversionPreset {
             64,
             ConversionSettings.SampleRate.SR_32000,
             ConversionSettings.Channels.MONO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
+    ),
+
+    VOICE_NORMALIZED(
+            "Voice Normalized",
+            "Voice Recording leveled to -16 LUFS (extra analysis pass)",
+            ConversionSettings.OutputFormat.M4A,
+            64,
+            ConversionSettings.SampleRate.SR_32000,
+            ConversionSettings.Channels.MONO,
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.PODCAST,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
 
     ARCHIVE_LOSSLESS(
@@ -57,7 +91,9 @@ public enum ConversionPreset {
             0, // Lossless - no bitrate
             ConversionSettings.SampleRate.SR_48000,
             ConversionSettings.Channels.STEREO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
     ),
 
     SMALL_FILE_SIZE(
@@ -67,7 +103,9 @@ public enum ConversionPreset {
             64,
             ConversionSettings.SampleRate.SR_32000,
             ConversionSettings.Channels.MONO,
-            ConversionSettings.BitrateMode.CONSTANT
+            ConversionSettings.BitrateMode.CONSTANT,
+            ConversionSettings.LoudnessTarget.OFF,
+            ConversionSettings.EncodeEffort.BALANCED
     );
 
     private final String displayName;
@@ -77,13 +115,17 @@ public enum ConversionPreset {
     private final ConversionSettings.SampleRate sampleRate;
     private final ConversionSettings.Channels channels;
     private final ConversionSettings.BitrateMode bitrateMode;
+    private final ConversionSettings.LoudnessTarget loudnessTarget;
+    private final ConversionSettings.EncodeEffort encodeEffort;
 
     ConversionPreset(String displayName, String description,
                      ConversionSettings.OutputFormat format,
                      int bitrate,
                      ConversionSettings.SampleRate sampleRate,
                      ConversionSettings.Channels channels,
-                     ConversionSettings.BitrateMode bitrateMode) {
+                     ConversionSettings.BitrateMode bitrateMode,
+                     ConversionSettings.LoudnessTarget loudnessTarget,
+                     ConversionSettings.EncodeEffort encodeEffort) {
         this.displayName = displayName;
         this.description = description;
         this.format = format;
@@ -91,6 +133,8 @@ public enum ConversionPreset {
         this.sampleRate = sampleRate;
         this.channels = channels;
         this.bitrateMode = bitrateMode;
+        this.loudnessTarget = loudnessTarget;
+        this.encodeEffort = encodeEffort;
     }
 
     public String getDisplayName() {
@@ -121,6 +165,14 @@ public enum ConversionPreset {
         return bitrateMode;
     }
 
+    public ConversionSettings.LoudnessTarget getLoudnessTarget() {
+        return loudnessTarget;
+    }
+
+    public ConversionSettings.EncodeEffort getEncodeEffort() {
+        return encodeEffort;
+    }
+
     public int getVbrQuality() {
         // Only for Music VBR preset
         if (this == MUSIC_VBR_QUALITY) {
@@ -149,6 +201,14 @@ public enum ConversionPreset {
         sb.append("Sample Rate: ").append(sampleRate.getLabel()).append("\n");
         sb.append("Channels: ").append(channels.getLabel());
 
+        if (encodeEffort != ConversionSettings.EncodeEffort.BALANCED) {
+            sb.append("\nEncoder effort: ").append(encodeEffort.getLabel());
+        }
+
+        if (loudnessTarget.isEnabled()) {
+            sb.append("\nLoudness: ").append(loudnessTarget.getLabel());
+        }
+
         return sb.toString();
     }
 }
\ No newline at end of file
@@ -154,7 +154,9 @@ public class ConversionSettings {
         SR_48000("48000 Hz", 48000),
         SR_64000("64000 Hz", 64000),
         SR_88200("88200 Hz", 88200),
-        SR_96000("96000 Hz", 96000);
+        SR_96000("96000 Hz", 96000),
+        // Resolved per file from the probed source, see resolvedFor()
+        MATCH_SOURCE("Match source", 0);
 
         private final String label;
         private final int rate;
@@ -189,7 +191,8 @@ public class ConversionSettings {
 
     public enum Channels {
         MONO("Mono", 1),
-        STEREO("Stereo", 2);
+        STEREO("Stereo", 2),
+        MATCH_SOURCE("Match source", 0);
 
         private final String label;
         private final int count;
@@ -234,6 +237,91 @@ public class ConversionSettings {
         }
     }
 
+    // Loudness normalization target (EBU R128 / loudnorm)
+    public enum LoudnessTarget {
+        OFF("Off", 0.0, 0.0, 0.0),
+        STREAMING("Streaming (-14 LUFS)", -14.0, -1.0, 11.0),
+        PODCAST("Podcast (-16 LUFS)", -16.0, -1.5, 11.0),
+        BROADCAST("Broadcast EBU R128 (-23 LUFS)", -23.0, -1.0, 7.0);
+
+        private final String label;
+        private final double integratedLufs;
+        private final double truePeak;
+        private final double loudnessRange;
+
+        LoudnessTarget(String label, double integratedLufs, double truePeak, double loudnessRange) {
+            this.label = label;
+            this.integratedLufs = integratedLufs;
+            this.truePeak = truePeak;
+            this.loudnessRange = loudnessRange;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getIntegratedLufs() {
+            return integratedLufs;
+        }
+
+        public double getTruePeak() {
+            return truePeak;
+        }
+
+        public double getLoudnessRange() {
+            return loudnessRange;
+        }
+
+        public boolean isEnabled() {
+            return this != OFF;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Encoder effort: trades encode speed against output size (or quality at a given bitrate)
+    public enum EncodeEffort {
+        FAST("Fast"),
+        BALANCED("Balanced"),
+        MAX("Max compression");
+
+        private final String label;
+
+        EncodeEffort(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // Codec options for this effort; empty means the encoder default
+        public List<String> getEncoderArgs(OutputFormat format) {
+            switch (format) {
+                case FLAC:
+                    // compression_level 0..12, 5 is the libFLAC default
+                    return Arrays.asList("-compression_level", this == FAST ? "0" : this == MAX ? "8" : "5");
+                case MP3:
+                    // LAME algorithm quality (-q), 0 = slowest/best, 9 = fastest; 3 is the LAME default
+                    return Arrays.asList("-compression_level", this == FAST ? "7" : this == MAX ? "0" : "3");
+                case M4A:
+                    // Native AAC coders: fast, twoloop (default). anmr is experimental, so MAX stays on twoloop
+                    return Arrays.asList("-aac_coder", this == FAST ? "fast" : "twoloop");
+                case WAV:
+                default:
+                    return Arrays.asList();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
     private OutputFormat outputFormat;
     private Quality quality;
     private Integer customBitrate; // Custom bitrate in kbps
@@ -241,6 +329,9 @@ public class ConversionSettings {
     private Channels channels;
     private BitrateMode bitrateMode;
     private int vbrQuality; // VBR quality (0-5, MP3 only)
+    private LoudnessTarget loudnessTarget;
+    private EncodeEffort encodeEffort;
+    private String presetId; // preset last loaded, resource accounting groups by it
 
     public ConversionSettings() {
         // Default settings
@@ -251,6 +342,8 @@ public class ConversionSettings {
         this.channels = Channels.STEREO;
         this.bitrateMode = BitrateMode.CONSTANT;
         this.vbrQuality = 2; // Default VBR quality (Normal)
+        this.loudnessTarget = LoudnessTarget.OFF;
+        this.encodeEffort = EncodeEffort.BALANCED;
     }
 
     // Getters and Setters
@@ -320,12 +413,85 @@ public class ConversionSettings {
         this.vbrQuality = vbrQuality;
     }
 
+    public LoudnessTarget getLoudnessTarget() {
+        return loudnessTarget;
+    }
+
+    public void setLoudnessTarget(LoudnessTarget loudnessTarget) {
+        this.loudnessTarget = loudnessTarget;
+    }
+
+    // Concrete settings for one input: "match source" becomes the source value when the output
+    // format allows it, otherwise the nearest supported one. Unprobed sources count as 44.1 kHz stereo.
+    public ConversionSettings resolvedFor(AudioFile audioFile) {
+        if (sampleRate != SampleRate.MATCH_SOURCE && channels != Channels.MATCH_SOURCE) {
+            return this;
+        }
+        ConversionSettings resolved = new ConversionSettings();
+        resolved.copyFrom(this);
+        if (sampleRate == SampleRate.MATCH_SOURCE) {
+            int source = audioFile.getSourceSampleRate() > 0 ? audioFile.getSourceSampleRate() : 44100;
+            resolved.sampleRate = SampleRate.fromRate(nearestSampleRate(outputFormat, source));
+        }
+        if (channels == Channels.MATCH_SOURCE) {
+            // Only mono and stereo are offered, anything wider is downmixed to stereo
+            resolved.channels = audioFile.getSourceChannels() == 1 ? Channels.MONO : Channels.STEREO;
+        }
+        return resolved;
+    }
+
+    // Nearest rate the format supports; on a tie the higher rate, so nothing is lost
+    public static int nearestSampleRate(OutputFormat format, int sourceRate) {
+        int best = format.getDefaultSampleRate();
+        long bestDistance = Long.MAX_VALUE;
+        for (int rate : format.getSampleRateOptions()) {
+            long distance = Math.abs((long) rate - sourceRate);
+            if (distance < bestDistance || (distance == bestDistance && rate > best)) {
+                best = rate;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    public EncodeEffort getEncodeEffort() {
+        return encodeEffort != null ? encodeEffort : EncodeEffort.BALANCED;
+    }
+
+    public void setEncodeEffort(EncodeEffort encodeEffort) {
+        this.encodeEffort = encodeEffort;
+    }
+
+    public String getPresetId() {
+        return presetId;
+    }
+
+    public void setPresetId(String presetId) {
+        this.presetId = presetId;
+    }
+
+    public void copyFrom(ConversionSettings other) {
+        this.outputFormat = other.outputFormat;
+        this.quality = other.quality;
+        this.customBitrate = other.customBitrate;
+        this.sampleRate = other.sampleRate;
+        this.channels = other.channels;
+        this.bitrateMode = other.bitrateMode;
+        this.vbrQuality = other.vbrQuality;
+        this.loudnessTarget = other.loudnessTarget;
+        this.encodeEffort = other.encodeEffort;
+        this.presetId = other.presetId;
+    }
+
     // Load settings from preset
     public void loadFromPreset(ConversionPreset preset) {
         this.outputFormat = preset.getFormat();
         this.sampleRate = preset.getSampleRate();
         this.channels = preset.getChannels();
         this.bitrateMode = preset.getBitrateMode();
+        this.loudnessTarget = preset.getLoudnessTarget();
+        this.encodeEffort = preset.getEncodeEffort();
+        this.presetId = preset.name();
 
         if (preset.getFormat().supportsBitrate()) {
             if (preset.getBitrateMode() == BitrateMode.CONSTANT) {
@@ -339,5 +505,25 @@ public class ConversionSettings {
             this.customBitrate = null;
         }
     }
-}
 
+    public void loadFromPreset(PresetDefinition preset) {
+        this.outputFormat = preset.getFormat();
+        this.sampleRate = SampleRate.fromRate(preset.getSampleRate());
+        this.channels = preset.getChannels();
+        this.bitrateMode = preset.getBitrateMode();
+        this.loudnessTarget = preset.getLoudnessTarget();
+        this.encodeEffort = preset.getEncodeEffort();
+        this.presetId = preset.getId();
+
+        if (preset.getFormat().supportsBitrate()) {
+            if (preset.getBitrateMode() == BitrateMode.CONSTANT) {
+                this.customBitrate = preset.getBitrate();
+            } else {
+                this.vbrQuality = preset.getVbrQuality();
+                this.customBitrate = null;
+            }
+        } else {
+            this.customBitrate = null;
+        }
+    }
+}
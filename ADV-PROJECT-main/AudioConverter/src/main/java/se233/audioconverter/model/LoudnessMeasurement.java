@@ -0,0 +1,43 @@
+package se233.audioconverter.model;
+
+// Result of the loudnorm analysis pass. Values describe the input only,
+// so one measurement can be reused for any target loudness or output format.
+public class LoudnessMeasurement {
+    private double integratedLufs;
+    private double truePeak;
+    private double loudnessRange;
+    private double threshold;
+
+    public LoudnessMeasurement() {
+    }
+
+    public LoudnessMeasurement(double integratedLufs, double truePeak,
+                               double loudnessRange, double threshold) {
+        this.integratedLufs = integratedLufs;
+        this.truePeak = truePeak;
+        this.loudnessRange = loudnessRange;
+        this.threshold = threshold;
+    }
+
+    public double getIntegratedLufs() {
+        return integratedLufs;
+    }
+
+    public double getTruePeak() {
+        return truePeak;
+    }
+
+    public double getLoudnessRange() {
+        return loudnessRange;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("I: %.1f LUFS, TP: %.1f dBTP, LRA: %.1f LU",
+                integratedLufs, truePeak, loudnessRange);
+    }
+}
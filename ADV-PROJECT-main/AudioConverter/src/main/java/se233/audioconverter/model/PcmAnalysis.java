@@ -0,0 +1,76 @@
+package se233.audioconverter.model;
+
+// Level statistics of an uncompressed input, produced by PcmAnalyzer before a batch.
+public class PcmAnalysis {
+    private final double peakDbfs;
+    private final double rmsDbfs;
+    private final double dcOffset;
+    private final long clippedSamples;
+    private final double leadingSilenceSeconds;
+    private final double trailingSilenceSeconds;
+    private final double durationSeconds;
+
+    public PcmAnalysis(double peakDbfs, double rmsDbfs, double dcOffset, long clippedSamples,
+                       double leadingSilenceSeconds, double trailingSilenceSeconds,
+                       double durationSeconds) {
+        this.peakDbfs = peakDbfs;
+        this.rmsDbfs = rmsDbfs;
+        this.dcOffset = dcOffset;
+        this.clippedSamples = clippedSamples;
+        this.leadingSilenceSeconds = leadingSilenceSeconds;
+        this.trailingSilenceSeconds = trailingSilenceSeconds;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public double getPeakDbfs() {
+        return peakDbfs;
+    }
+
+    public double getRmsDbfs() {
+        return rmsDbfs;
+    }
+
+    public double getDcOffset() {
+        return dcOffset;
+    }
+
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    public double getLeadingSilenceSeconds() {
+        return leadingSilenceSeconds;
+    }
+
+    public double getTrailingSilenceSeconds() {
+        return trailingSilenceSeconds;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public boolean isClipping() {
+        return clippedSamples > 0;
+    }
+
+    public boolean isSilent() {
+        return Double.isInfinite(peakDbfs) || leadingSilenceSeconds >= durationSeconds;
+    }
+
+    public String getWarning() {
+        if (isSilent()) {
+            return "silent";
+        }
+        if (isClipping()) {
+            return clippedSamples + " clipped samples";
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Peak: %.1f dBFS, RMS: %.1f dBFS, DC: %.4f, Clipped: %d",
+                peakDbfs, rmsDbfs, dcOffset, clippedSamples);
+    }
+}
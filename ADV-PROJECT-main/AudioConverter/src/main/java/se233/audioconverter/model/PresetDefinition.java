@@ -0,0 +1,119 @@
+package se233.audioconverter.model;
+
+// A named set of conversion settings. Built-in presets are converted from ConversionPreset;
+// house presets are loaded from JSON files, e.g.
+// { "id": "radio-promo", "name": "Radio Promo", "format": "MP3", "bitrate": 256,
+//   "sampleRate": 48000, "channels": "STEREO", "loudnessTarget": "BROADCAST", "encodeEffort": "MAX" }
+public class PresetDefinition {
+    private String id;
+    private String name;
+    private String description;
+    private ConversionSettings.OutputFormat format;
+    private ConversionSettings.BitrateMode bitrateMode = ConversionSettings.BitrateMode.CONSTANT;
+    private int bitrate;
+    private int vbrQuality = 2;
+    // 0 = match source
+    private int sampleRate = 44100;
+    private ConversionSettings.Channels channels = ConversionSettings.Channels.STEREO;
+    private ConversionSettings.LoudnessTarget loudnessTarget = ConversionSettings.LoudnessTarget.OFF;
+    private ConversionSettings.EncodeEffort encodeEffort = ConversionSettings.EncodeEffort.BALANCED;
+
+    public PresetDefinition() {
+    }
+
+    public static PresetDefinition fromBuiltIn(ConversionPreset preset) {
+        PresetDefinition definition = new PresetDefinition();
+        definition.id = preset.name();
+        definition.name = preset.getDisplayName();
+        definition.description = preset.getDescription();
+        definition.format = preset.getFormat();
+        definition.bitrateMode = preset.getBitrateMode();
+        definition.bitrate = preset.getBitrate();
+        definition.vbrQuality = preset.getVbrQuality();
+        definition.sampleRate = preset.getSampleRate().getRate();
+        definition.channels = preset.getChannels();
+        definition.loudnessTarget = preset.getLoudnessTarget();
+        definition.encodeEffort = preset.getEncodeEffort();
+        return definition;
+    }
+
+    // The "None" entry keeps whatever the user configured
+    public boolean isCustom() {
+        return ConversionPreset.NONE.name().equals(id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description != null ? description : "";
+    }
+
+    public ConversionSettings.OutputFormat getFormat() {
+        return format;
+    }
+
+    public ConversionSettings.BitrateMode getBitrateMode() {
+        return bitrateMode;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public int getVbrQuality() {
+        return vbrQuality;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public ConversionSettings.Channels getChannels() {
+        return channels;
+    }
+
+    public ConversionSettings.LoudnessTarget getLoudnessTarget() {
+        return loudnessTarget;
+    }
+
+    public ConversionSettings.EncodeEffort getEncodeEffort() {
+        return encodeEffort;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public String getDetailedDescription() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append("\n");
+        sb.append(getDescription()).append("\n");
+        sb.append("Format: ").append(format.toString()).append("\n");
+
+        if (format.supportsBitrate() && bitrateMode == ConversionSettings.BitrateMode.CONSTANT) {
+            sb.append("Bitrate: ").append(bitrate).append(" kbps\n");
+        } else if (bitrateMode == ConversionSettings.BitrateMode.VARIABLE) {
+            sb.append("Mode: Variable Bitrate (VBR)\n");
+        }
+
+        sb.append("Sample Rate: ").append(sampleRate > 0 ? sampleRate + " Hz" : "Match source").append("\n");
+        sb.append("Channels: ").append(channels.getLabel());
+
+        if (encodeEffort != ConversionSettings.EncodeEffort.BALANCED) {
+            sb.append("\nEncoder effort: ").append(encodeEffort.getLabel());
+        }
+
+        if (loudnessTarget.isEnabled()) {
+            sb.append("\nLoudness: ").append(loudnessTarget.getLabel());
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package se233.audioconverter.model;
+
+// A conversion job in the shared queue directory (serialized as <id>.job).
+public class QueueJob {
+    private String id;
+    private String inputPath;
+    private String outputDir;
+    private ConversionSettings settings;
+    private long submittedAt;
+
+    public QueueJob() {
+    }
+
+    public QueueJob(String id, String inputPath, String outputDir,
+                    ConversionSettings settings, long submittedAt) {
+        this.id = id;
+        this.inputPath = inputPath;
+        this.outputDir = outputDir;
+        this.settings = settings;
+        this.submittedAt = submittedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    public ConversionSettings getSettings() {
+        return settings;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+}
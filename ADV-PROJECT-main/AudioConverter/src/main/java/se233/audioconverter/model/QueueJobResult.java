@@ -0,0 +1,48 @@
+package se233.audioconverter.model;
+
+// Outcome of a queue job, written next to the job as <id>.result.
+public class QueueJobResult {
+    private String jobId;
+    private AudioFile.ConversionStatus status;
+    private String node;
+    private String message;
+    private long startedAt;
+    private long finishedAt;
+
+    public QueueJobResult() {
+    }
+
+    public QueueJobResult(String jobId, AudioFile.ConversionStatus status, String node,
+                          String message, long startedAt, long finishedAt) {
+        this.jobId = jobId;
+        this.status = status;
+        this.node = node;
+        this.message = message;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public AudioFile.ConversionStatus getStatus() {
+        return status;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
@@ -0,0 +1,80 @@
+package se233.audioconverter.model;
+
+// CPU, memory and disk I/O used by ffmpeg children, read from /proc. A single job's
+// usage has jobs = 1; aggregates add times and bytes and keep the largest peak RSS.
+public class ResourceUsage {
+    private int jobs;
+    private double userCpuSeconds;
+    private double systemCpuSeconds;
+    private long peakRssBytes;
+    private long readBytes;
+    private long writeBytes;
+
+    public ResourceUsage() {
+    }
+
+    public ResourceUsage(double userCpuSeconds, double systemCpuSeconds, long peakRssBytes,
+                         long readBytes, long writeBytes) {
+        this.jobs = 1;
+        this.userCpuSeconds = userCpuSeconds;
+        this.systemCpuSeconds = systemCpuSeconds;
+        this.peakRssBytes = peakRssBytes;
+        this.readBytes = readBytes;
+        this.writeBytes = writeBytes;
+    }
+
+    public synchronized void add(ResourceUsage other) {
+        jobs += other.jobs;
+        userCpuSeconds += other.userCpuSeconds;
+        systemCpuSeconds += other.systemCpuSeconds;
+        peakRssBytes = Math.max(peakRssBytes, other.peakRssBytes);
+        readBytes += other.readBytes;
+        writeBytes += other.writeBytes;
+    }
+
+    public synchronized ResourceUsage copy() {
+        ResourceUsage copy = new ResourceUsage();
+        copy.add(this);
+        return copy;
+    }
+
+    // One job's part of a child that converted several files, e.g. by its share of the audio
+    public synchronized ResourceUsage share(double fraction) {
+        return new ResourceUsage(userCpuSeconds * fraction, systemCpuSeconds * fraction, peakRssBytes,
+                Math.round(readBytes * fraction), Math.round(writeBytes * fraction));
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    public double getUserCpuSeconds() {
+        return userCpuSeconds;
+    }
+
+    public double getSystemCpuSeconds() {
+        return systemCpuSeconds;
+    }
+
+    public double getCpuSeconds() {
+        return userCpuSeconds + systemCpuSeconds;
+    }
+
+    public long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getWriteBytes() {
+        return writeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d job(s), CPU %.1fs user + %.1fs sys, peak RSS %d MB, read %d MB, written %d MB",
+                jobs, userCpuSeconds, systemCpuSeconds, peakRssBytes >> 20, readBytes >> 20, writeBytes >> 20);
+    }
+}
@@ -0,0 +1,31 @@
+package se233.audioconverter.model;
+
+// Learned encode behaviour for one output format on this host, persisted between runs.
+// realtimeFactor is audio seconds encoded per wall-clock second of one job;
+// sizeRatio corrects the bitrate-based output size model.
+public class ThroughputHistory {
+    private double realtimeFactor;
+    private double sizeRatio;
+    private int samples;
+
+    public ThroughputHistory() {
+    }
+
+    public ThroughputHistory(double realtimeFactor, double sizeRatio, int samples) {
+        this.realtimeFactor = realtimeFactor;
+        this.sizeRatio = sizeRatio;
+        this.samples = samples;
+    }
+
+    public double getRealtimeFactor() {
+        return realtimeFactor;
+    }
+
+    public double getSizeRatio() {
+        return sizeRatio;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,85 @@
+package se233.audioconverter.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Best worker count and ffmpeg -threads per output format, measured by the autotune command
+// on one host. Only valid for a host with the same number of cores.
+public class TuningProfile {
+    public static class FormatTuning {
+        private int workers;
+        private int threads;
+        private double realtimeFactor;
+
+        public FormatTuning() {
+        }
+
+        public FormatTuning(int workers, int threads, double realtimeFactor) {
+            this.workers = workers;
+            this.threads = threads;
+            this.realtimeFactor = realtimeFactor;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        // Audio seconds encoded per wall-clock second by the whole host at this setting
+        public double getRealtimeFactor() {
+            return realtimeFactor;
+        }
+    }
+
+    private int cores;
+    private String createdAt;
+    private Map<ConversionSettings.OutputFormat, FormatTuning> formats = new LinkedHashMap<>();
+
+    public TuningProfile() {
+    }
+
+    public TuningProfile(int cores, String createdAt) {
+        this.cores = cores;
+        this.createdAt = createdAt;
+    }
+
+    public void put(ConversionSettings.OutputFormat format, FormatTuning tuning) {
+        formats.put(format, tuning);
+    }
+
+    public FormatTuning get(ConversionSettings.OutputFormat format) {
+        return formats == null ? null : formats.get(format);
+    }
+
+    public int workersFor(ConversionSettings.OutputFormat format, int defaultWorkers) {
+        FormatTuning tuning = get(format);
+        return tuning != null && tuning.getWorkers() > 0 ? tuning.getWorkers() : defaultWorkers;
+    }
+
+    // 0 means leave -threads to ffmpeg
+    public int threadsFor(ConversionSettings.OutputFormat format) {
+        FormatTuning tuning = get(format);
+        return tuning != null ? Math.max(0, tuning.getThreads()) : 0;
+    }
+
+    public int getMaxWorkers(int defaultWorkers) {
+        int max = 0;
+        if (formats != null) {
+            for (FormatTuning tuning : formats.values()) {
+                max = Math.max(max, tuning.getWorkers());
+            }
+        }
+        return max > 0 ? max : defaultWorkers;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+}
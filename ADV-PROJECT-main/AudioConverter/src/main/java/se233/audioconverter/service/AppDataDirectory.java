@@ -0,0 +1,29 @@
+package se233.audioconverter.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Location for caches and state that should survive between runs.
+// Can be overridden with -Daudioconverter.data.dir=/some/path
+public final class AppDataDirectory {
+    private static final String PROPERTY = "audioconverter.data.dir";
+
+    private AppDataDirectory() {
+    }
+
+    public static Path get() {
+        String override = System.getProperty(PROPERTY);
+        if (override != null && !override.isBlank()) {
+            return Paths.get(override);
+        }
+        return Paths.get(System.getProperty("user.home"), ".audioconverter");
+    }
+
+    public static Path resolve(String name) throws IOException {
+        Path dir = get();
+        Files.createDirectories(dir);
+        return dir.resolve(name);
+    }
+}
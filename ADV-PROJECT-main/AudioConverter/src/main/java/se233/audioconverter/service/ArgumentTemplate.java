@@ -0,0 +1,107 @@
+package se233.audioconverter.service;
+
+import com.google.common.collect.ImmutableList;
+import se233.audioconverter.model.ConversionSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// An ffmpeg command line compiled once per distinct set of settings. All format, bitrate mode
+// and capability branching happens in compile(); per file only the input, the optional
+// per-file filter (loudnorm with measured values) and the output path are filled in.
+public final class ArgumentTemplate {
+    private final ImmutableList<String> head;
+    private final ImmutableList<String> options;
+    private final ConversionSettings.LoudnessTarget loudnessTarget;
+
+    private ArgumentTemplate(ImmutableList<String> head, ImmutableList<String> options,
+                             ConversionSettings.LoudnessTarget loudnessTarget) {
+        this.head = head;
+        this.options = options;
+        this.loudnessTarget = loudnessTarget;
+    }
+
+    public static ArgumentTemplate compile(String ffmpegPath, ConversionSettings settings) {
+        return compile(ffmpegPath, settings, 0);
+    }
+
+    // threads > 0 adds -threads, as chosen per format by the autotune profile
+    public static ArgumentTemplate compile(String ffmpegPath, ConversionSettings settings, int threads) {
+        // -progress reports out_time and total_size as key=value lines, the stall watchdog reads them
+        ImmutableList<String> head = ImmutableList.of(ffmpegPath, "-y", "-v", "error",
+                "-progress", "pipe:1", "-nostats", "-i");
+
+        ImmutableList.Builder<String> options = ImmutableList.builder();
+        options.add("-c:a", settings.getOutputFormat().getCodec());
+        options.add("-ac", String.valueOf(settings.getChannels().getCount()));
+        options.add("-ar", String.valueOf(settings.getSampleRate().getRate()));
+        options.addAll(settings.getEncodeEffort().getEncoderArgs(settings.getOutputFormat()));
+        if (threads > 0) {
+            options.add("-threads", String.valueOf(threads));
+        }
+
+        if (settings.getOutputFormat().supportsBitrate()) {
+            if (settings.getOutputFormat() == ConversionSettings.OutputFormat.MP3 &&
+                    settings.getBitrateMode() == ConversionSettings.BitrateMode.VARIABLE) {
+                // MP3 VBR mode - use -q:a (quality) instead of bitrate
+                options.add("-q:a", String.valueOf(settings.getVbrQuality()));
+            } else {
+                options.add("-b:a", settings.getEffectiveBitrate() + "k");
+            }
+        }
+
+        ConversionSettings.LoudnessTarget target = settings.getLoudnessTarget();
+        return new ArgumentTemplate(head, options.build(),
+                target != null && target.isEnabled() ? target : null);
+    }
+
+    // Everything compile() looks at; equal keys produce identical templates
+    public static String keyOf(ConversionSettings settings) {
+        return settings.getOutputFormat() + "|" + settings.getChannels() + "|"
+                + settings.getSampleRate() + "|" + settings.getBitrateMode() + "|"
+                + settings.getVbrQuality() + "|" + settings.getEffectiveBitrate() + "|"
+                + settings.getLoudnessTarget() + "|" + settings.getEncodeEffort();
+    }
+
+    // Loudness target the per-file filter must be built for, null when normalization is off
+    public ConversionSettings.LoudnessTarget getLoudnessTarget() {
+        return loudnessTarget;
+    }
+
+    public List<String> render(String input, String filter, String output) {
+        List<String> command = new ArrayList<>(head.size() + options.size() + 4);
+        command.addAll(head);
+        command.add(input);
+        command.addAll(options);
+        if (filter != null) {
+            command.add("-af");
+            command.add(filter);
+        }
+        // Output file (MUST be last)
+        command.add(output);
+        return command;
+    }
+
+    // Several inputs in one process: every output maps the audio of its own input and repeats
+    // the options, which ffmpeg applies per output. filters may be null or hold nulls.
+    public List<String> renderBatch(List<String> inputs, List<String> filters, List<String> outputs) {
+        List<String> command = new ArrayList<>(head.size() + inputs.size() * (options.size() + 8));
+        command.addAll(head.subList(0, head.size() - 1));
+        for (String input : inputs) {
+            command.add("-i");
+            command.add(input);
+        }
+        for (int i = 0; i < outputs.size(); i++) {
+            command.add("-map");
+            command.add(i + ":a:0");
+            command.addAll(options);
+            String filter = filters != null ? filters.get(i) : null;
+            if (filter != null) {
+                command.add("-af");
+                command.add(filter);
+            }
+            command.add(outputs.get(i));
+        }
+        return command;
+    }
+}
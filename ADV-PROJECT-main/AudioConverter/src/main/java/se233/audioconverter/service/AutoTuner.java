@@ -0,0 +1,222 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.TuningProfile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Sweeps worker count x ffmpeg -threads per output format with short synthetic encodes and
+// keeps the fastest combination. The result is written to tuning-profile.json (or
+// tuning.profile) and read at startup by the executor sizing and the argument templates.
+public class AutoTuner {
+    private static final Logger logger = LoggerFactory.getLogger(AutoTuner.class);
+    private static final String FILE_NAME = "tuning-profile.json";
+    private static final int SAMPLE_RATE = 44100;
+    // A bigger setting must beat the current best by this much, otherwise the smaller one wins
+    private static final double MIN_GAIN = 1.03;
+
+    private final String ffmpegPath;
+    private final int cores;
+    private final int sampleSeconds;
+
+    public AutoTuner(String ffmpegPath, int sampleSeconds) {
+        this.ffmpegPath = ffmpegPath;
+        this.cores = Runtime.getRuntime().availableProcessors();
+        this.sampleSeconds = sampleSeconds;
+    }
+
+    public TuningProfile run(List<ConversionSettings.OutputFormat> formats) throws IOException, InterruptedException {
+        Path workDir = Files.createTempDirectory("autotune");
+        try {
+            Path input = workDir.resolve("sample.wav");
+            writeSyntheticWav(input, sampleSeconds);
+
+            TuningProfile profile = new TuningProfile(cores, Instant.now().toString());
+            for (ConversionSettings.OutputFormat format : formats) {
+                profile.put(format, tune(format, input, workDir));
+            }
+            return profile;
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private TuningProfile.FormatTuning tune(ConversionSettings.OutputFormat format, Path input, Path workDir)
+            throws IOException, InterruptedException {
+        ConversionSettings settings = new ConversionSettings();
+        settings.setOutputFormat(format);
+
+        TuningProfile.FormatTuning best = null;
+        for (int threads : candidates()) {
+            for (int workers : candidates()) {
+                // Heavily oversubscribed combinations only measure scheduler thrashing
+                if (workers * threads > cores * 2) {
+                    continue;
+                }
+                ArgumentTemplate template = ArgumentTemplate.compile(ffmpegPath, settings, threads);
+                double factor = measure(template, format, input, workDir, workers);
+                logger.info("{} workers={} threads={} -> {}x realtime", format, workers, threads,
+                        String.format("%.1f", factor));
+                if (best == null || factor > best.getRealtimeFactor() * MIN_GAIN) {
+                    best = new TuningProfile.FormatTuning(workers, threads, factor);
+                }
+            }
+        }
+        logger.info("{} best: workers={} threads={}", format, best.getWorkers(), best.getThreads());
+        return best;
+    }
+
+    // Powers of two up to the core count, plus the core count itself
+    private List<Integer> candidates() {
+        TreeSet<Integer> values = new TreeSet<>();
+        for (int n = 1; n <= cores; n *= 2) {
+            values.add(n);
+        }
+        values.add(cores);
+        return new ArrayList<>(values);
+    }
+
+    // Runs two encodes per worker so every worker stays busy for the whole measurement
+    private double measure(ArgumentTemplate template, ConversionSettings.OutputFormat format,
+                           Path input, Path workDir, int workers) throws IOException, InterruptedException {
+        int jobs = workers * 2;
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            long start = System.nanoTime();
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                futures.add(pool.submit(() -> {
+                    Path output = workDir.resolve("out-" + counter.incrementAndGet() + "." + format.getExtension());
+                    encode(template, input, output);
+                    Files.deleteIfExists(output);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Benchmark encode failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            double wall = (System.nanoTime() - start) / 1e9;
+            return jobs * (double) sampleSeconds / wall;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void encode(ArgumentTemplate template, Path input, Path output)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(template.render(input.toString(), null, output.toString()))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IOException("ffmpeg exit code " + exitCode);
+        }
+    }
+
+    // Stereo 16-bit tone with noise, so encoders cannot shortcut silence
+    public static void writeSyntheticWav(Path path, int seconds) throws IOException {
+        int frames = SAMPLE_RATE * seconds;
+        int dataBytes = frames * 4;
+        Random random = new Random(42);
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeBytes("RIFF");
+            out.writeInt(Integer.reverseBytes(36 + dataBytes));
+            out.writeBytes("WAVEfmt ");
+            out.writeInt(Integer.reverseBytes(16));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeShort(Short.reverseBytes((short) 2));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE * 4));
+            out.writeShort(Short.reverseBytes((short) 4));
+            out.writeShort(Short.reverseBytes((short) 16));
+            out.writeBytes("data");
+            out.writeInt(Integer.reverseBytes(dataBytes));
+            for (int i = 0; i < frames; i++) {
+                double t = i / (double) SAMPLE_RATE;
+                double tone = Math.sin(2 * Math.PI * 440 * t) * 0.4 + Math.sin(2 * Math.PI * 1320 * t) * 0.1;
+                short left = (short) ((tone + random.nextGaussian() * 0.05) * 32767 * 0.8);
+                short right = (short) ((tone * 0.7 + random.nextGaussian() * 0.05) * 32767 * 0.8);
+                out.writeShort(Short.reverseBytes(left));
+                out.writeShort(Short.reverseBytes(right));
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("Could not clean up {}: {}", dir, e.getMessage());
+        }
+    }
+
+    public static Path profilePath(AppConfig config) throws IOException {
+        Path configured = config.getPath("tuning.profile");
+        return configured != null ? configured : AppDataDirectory.resolve(FILE_NAME);
+    }
+
+    public static void save(TuningProfile profile, Path path) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            gson.toJson(profile, writer);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns an empty profile (all defaults) when there is none or it was made on a different host shape
+    public static TuningProfile loadDefault() {
+        try {
+            Path path = profilePath(AppConfig.get());
+            if (!Files.exists(path)) {
+                return new TuningProfile();
+            }
+            TuningProfile profile;
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                profile = new Gson().fromJson(reader, TuningProfile.class);
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            if (profile == null || profile.getCores() != cores) {
+                logger.warn("Ignoring tuning profile {}: made for {} cores, this host has {}",
+                        path, profile != null ? profile.getCores() : 0, cores);
+                return new TuningProfile();
+            }
+            return profile;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable tuning profile: {}", e.getMessage());
+            return new TuningProfile();
+        }
+    }
+}
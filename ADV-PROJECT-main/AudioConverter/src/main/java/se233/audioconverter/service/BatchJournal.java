@@ -0,0 +1,263 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Append-only write-ahead log of the running batch, so a batch interrupted by a crash
+// or reboot can be resumed. Records are one line each:
+//   B <outputDir>\t<settings json>   batch header
+//   S <input path>                   file submitted
+//   C <input path> / F <input path>  file completed / failed
+// Writes are buffered and forced to disk together (group commit) every FLUSH_INTERVAL_MS.
+// When enough files have completed the log is rewritten with only the unfinished ones.
+// A batch that finishes normally deletes its journal.
+public class BatchJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BatchJournal.class);
+    private static final String FILE_NAME = "batch.journal";
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final int COMPACT_AFTER = 5000;
+
+    public static class RecoveredBatch {
+        private final String outputDir;
+        private final ConversionSettings settings;
+        private final List<String> pending;
+        private final List<String> completed;
+
+        RecoveredBatch(String outputDir, ConversionSettings settings, List<String> pending, List<String> completed) {
+            this.outputDir = outputDir;
+            this.settings = settings;
+            this.pending = pending;
+            this.completed = completed;
+        }
+
+        public String getOutputDir() {
+            return outputDir;
+        }
+
+        public ConversionSettings getSettings() {
+            return settings;
+        }
+
+        public List<String> getPending() {
+            return pending;
+        }
+
+        public List<String> getCompleted() {
+            return completed;
+        }
+    }
+
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final StringBuilder buffer = new StringBuilder();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "batch-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel channel;
+    private String header;
+    private final Set<String> unfinished = new LinkedHashSet<>();
+    private int finishedSinceCompact;
+
+    public BatchJournal(Path file) {
+        this.file = file;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public static BatchJournal openDefault() throws IOException {
+        return new BatchJournal(AppDataDirectory.resolve(FILE_NAME));
+    }
+
+    public synchronized void begin(String outputDir, ConversionSettings settings, List<AudioFile> files)
+            throws IOException {
+        closeChannel();
+        unfinished.clear();
+        finishedSinceCompact = 0;
+        buffer.setLength(0);
+        header = "B " + outputDir + "\t" + gson.toJson(settings);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        append(header);
+        for (AudioFile audioFile : files) {
+            unfinished.add(audioFile.getFilePath());
+            append("S " + audioFile.getFilePath());
+        }
+        // The submission list must be durable before any encode starts
+        flush();
+    }
+
+    public synchronized void completed(AudioFile audioFile) {
+        finished("C ", audioFile);
+    }
+
+    public synchronized void failed(AudioFile audioFile) {
+        finished("F ", audioFile);
+    }
+
+    private void finished(String type, AudioFile audioFile) {
+        if (channel == null) {
+            return;
+        }
+        append(type + audioFile.getFilePath());
+        if (type.startsWith("C")) {
+            unfinished.remove(audioFile.getFilePath());
+        }
+        if (++finishedSinceCompact >= COMPACT_AFTER) {
+            compact();
+        }
+    }
+
+    // Normal end of batch: nothing left to resume
+    public synchronized void finish() {
+        closeChannel();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not remove batch journal: {}", e.getMessage());
+        }
+    }
+
+    public RecoveredBatch recover() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            String outputDir = null;
+            ConversionSettings settings = null;
+            Map<String, Boolean> files = new LinkedHashMap<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.length() < 3) {
+                    continue; // torn last write
+                }
+                String value = line.substring(2);
+                switch (line.charAt(0)) {
+                    case 'B' -> {
+                        int tab = value.indexOf('\t');
+                        outputDir = value.substring(0, tab);
+                        settings = gson.fromJson(value.substring(tab + 1), ConversionSettings.class);
+                    }
+                    case 'S' -> files.putIfAbsent(value, Boolean.FALSE);
+                    case 'C' -> files.put(value, Boolean.TRUE);
+                    default -> { }
+                }
+            }
+            if (outputDir == null || settings == null) {
+                return null;
+            }
+
+            List<String> pending = new ArrayList<>();
+            List<String> completed = new ArrayList<>();
+            files.forEach((path, done) -> (done ? completed : pending).add(path));
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return new RecoveredBatch(outputDir, settings, pending, completed);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable batch journal: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public void discard() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not remove batch journal: {}", e.getMessage());
+        }
+    }
+
+    private void append(String record) {
+        buffer.append(record).append('\n');
+    }
+
+    private synchronized void flush() throws IOException {
+        if (channel == null || buffer.length() == 0) {
+            return;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(buffer.toString());
+        buffer.setLength(0);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.warn("Could not write batch journal: {}", e.getMessage());
+        }
+    }
+
+    // Rewrites the journal with the header and the still unfinished files only
+    private void compact() {
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            flush();
+            StringBuilder content = new StringBuilder(header).append('\n');
+            for (String path : unfinished) {
+                content.append("S ").append(path).append('\n');
+            }
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(content.toString());
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(false);
+            }
+            closeChannel();
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            finishedSinceCompact = 0;
+        } catch (IOException e) {
+            logger.warn("Could not compact batch journal: {}", e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close batch journal: {}", e.getMessage());
+        }
+        channel = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeChannel();
+        flusher.shutdown();
+    }
+}
@@ -0,0 +1,110 @@
+package se233.audioconverter.service;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Finds inputs with byte-identical content so each distinct content is encoded once.
+// Files are first grouped by size; only sizes shared by several files are hashed,
+// in parallel, by streaming memory-mapped windows through murmur3_128.
+public class ContentDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(ContentDeduplicator.class);
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    // Primary file -> its duplicates, only for content that occurs more than once
+    public Map<AudioFile, List<AudioFile>> findDuplicates(List<AudioFile> files) {
+        Map<Long, List<AudioFile>> bySize = files.stream()
+                .collect(Collectors.groupingBy(AudioFile::getFileSize, LinkedHashMap::new, Collectors.toList()));
+
+        List<AudioFile> candidates = new ArrayList<>();
+        for (List<AudioFile> sameSize : bySize.values()) {
+            if (sameSize.size() > 1) {
+                candidates.addAll(sameSize);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<AudioFile, HashCode> hashes = candidates.parallelStream()
+                .collect(Collectors.toConcurrentMap(f -> f, this::tryHash))
+                .entrySet().stream()
+                .filter(e -> e.getValue().isPresent())
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()));
+
+        // Keep the original list order so the first occurrence becomes the primary
+        Map<String, List<AudioFile>> byContent = new LinkedHashMap<>();
+        for (AudioFile file : candidates) {
+            HashCode hash = hashes.get(file);
+            if (hash != null) {
+                byContent.computeIfAbsent(file.getFileSize() + ":" + hash, k -> new ArrayList<>()).add(file);
+            }
+        }
+
+        Map<AudioFile, List<AudioFile>> result = new LinkedHashMap<>();
+        for (List<AudioFile> group : byContent.values()) {
+            if (group.size() > 1) {
+                result.put(group.get(0), new ArrayList<>(group.subList(1, group.size())));
+            }
+        }
+        return result;
+    }
+
+    // Unreadable files are simply not deduplicated, the conversion will report the error
+    private Optional<HashCode> tryHash(AudioFile file) {
+        try {
+            return Optional.of(hash(Paths.get(file.getFilePath())));
+        } catch (IOException e) {
+            logger.warn("Could not fingerprint {}: {}", file.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public HashCode hash(Path path) throws IOException {
+        Hasher hasher = HASH.newHasher();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long offset = 0; offset < size; offset += WINDOW_BYTES) {
+                long length = Math.min(WINDOW_BYTES, size - offset);
+                hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+        }
+        return hasher.hash();
+    }
+
+    // Gives a duplicate its own output: a hard link when the filesystem allows it, a copy otherwise.
+    // Returns false when both names resolve to the same file (same base name in different
+    // source folders), so the duplicate has no output of its own and the caller should say so.
+    public static boolean materialize(Path primaryOutput, Path duplicateOutput) throws IOException {
+        if (Objects.equals(primaryOutput.toAbsolutePath(), duplicateOutput.toAbsolutePath())) {
+            return false;
+        }
+        Files.deleteIfExists(duplicateOutput);
+        try {
+            Files.createLink(duplicateOutput, primaryOutput);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(primaryOutput, duplicateOutput, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,427 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.controller.AudioConversionTask;
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.PresetDefinition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Local HTTP API for submitting conversions from other services.
+//   POST   /jobs?path=/abs/input.wav[&preset=NAME]   body: optional ConversionSettings JSON
+//   POST   /jobs/upload?name=input.wav[&preset=NAME] body: the audio file
+//   GET    /jobs/{id}          status JSON
+//   GET    /jobs/{id}/output   converted file (streamed)
+//   DELETE /jobs/{id}          cancel a queued job or forget a finished one, removing its files
+// Jobs run through the same DeviceAwareScheduler as the GUI; when more than
+// server.maxQueued jobs are waiting new submissions get 429 Too Many Requests.
+// Settings are validated before anything is queued, bad values get 400. Finished jobs
+// and their files are dropped server.jobTtlMinutes (default 60) after they ended.
+public class ConversionHttpServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConversionHttpServer.class);
+
+    private static class ServerJob {
+        final String id;
+        final AudioFile audioFile;
+        final Path outputFile;
+        final Path uploadDir;
+        volatile String error;
+        volatile CompletableFuture<Void> scheduled;
+        // 0 while queued or running
+        volatile long finishedAt;
+
+        ServerJob(String id, AudioFile audioFile, Path outputFile, Path uploadDir) {
+            this.id = id;
+            this.audioFile = audioFile;
+            this.outputFile = outputFile;
+            this.uploadDir = uploadDir;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService httpThreads;
+    private final DeviceAwareScheduler scheduler;
+    private final FFmpegService ffmpegService;
+    private final Path outputDir;
+    private final Path uploadDir;
+    private final int maxQueued;
+    private final Map<String, ServerJob> jobs = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+    private volatile Supplier<Map<String, Object>> metricsSource;
+    private final PresetLibrary presets = PresetLibrary.fromConfig(AppConfig.get());
+    private final long jobTtlMillis = TimeUnit.MINUTES.toMillis(AppConfig.get().getLong("server.jobTtlMinutes", 60));
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "server-job-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConversionHttpServer(InetSocketAddress address, DeviceAwareScheduler scheduler,
+                                FFmpegService ffmpegService, Path workDir, int maxQueued) throws IOException {
+        this.scheduler = scheduler;
+        this.ffmpegService = ffmpegService;
+        this.outputDir = Files.createDirectories(workDir.resolve("output"));
+        this.uploadDir = Files.createDirectories(workDir.resolve("uploads"));
+        this.maxQueued = maxQueued;
+
+        this.server = HttpServer.create(address, 0);
+        this.httpThreads = Executors.newFixedThreadPool(8);
+        server.setExecutor(httpThreads);
+        server.createContext("/jobs", this::handle);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    // Extra metrics (e.g. the adaptive concurrency controller) merged into GET /metrics
+    public void setMetricsSource(Supplier<Map<String, Object>> metricsSource) {
+        this.metricsSource = metricsSource;
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("jobs", jobs.size());
+            metrics.put("running", scheduler.getRunningCount());
+            metrics.put("queued", scheduler.getQueuedCount());
+            metrics.put("completedAudioSeconds", ffmpegService.getCompletedAudioSeconds());
+            metrics.putAll(ffmpegService.getProcessPriority().getMetrics());
+            metrics.putAll(ffmpegService.getResourceLedger().getMetrics());
+            if (ffmpegService.getStallWatchdog() != null) {
+                metrics.putAll(ffmpegService.getStallWatchdog().getMetrics());
+            }
+            Supplier<Map<String, Object>> source = metricsSource;
+            if (source != null) {
+                metrics.putAll(source.get());
+            }
+            sendJson(exchange, 200, metrics);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public void start() {
+        long sweepMillis = Math.max(1000, Math.min(jobTtlMillis, TimeUnit.MINUTES.toMillis(1)));
+        expiry.scheduleWithFixedDelay(this::expireJobs, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        server.start();
+        logger.info("Conversion service listening on {}", server.getAddress());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.replaceAll("^/+|/+$", "").split("/");
+            String method = exchange.getRequestMethod();
+
+            if (parts.length == 1 && method.equals("POST")) {
+                submitPath(exchange);
+            } else if (parts.length == 2 && parts[1].equals("upload") && method.equals("POST")) {
+                submitUpload(exchange);
+            } else if (parts.length == 2 && method.equals("GET")) {
+                status(exchange, parts[1]);
+            } else if (parts.length == 3 && parts[2].equals("output") && method.equals("GET")) {
+                download(exchange, parts[1]);
+            } else if (parts.length == 2 && method.equals("DELETE")) {
+                delete(exchange, parts[1]);
+            } else {
+                sendJson(exchange, 404, Map.of("error", "Not found"));
+            }
+        } catch (IllegalArgumentException | JsonSyntaxException e) {
+            sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+        } catch (Exception e) {
+            logger.error("Request failed: {}", e.getMessage());
+            sendJson(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void submitPath(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange);
+        String input = query.get("path");
+        if (input == null || !Files.isRegularFile(Paths.get(input))) {
+            throw new IllegalArgumentException("path must point to an existing file");
+        }
+        if (isQueueFull()) {
+            sendJson(exchange, 429, Map.of("error", "Queue is full, retry later"));
+            return;
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        ConversionSettings settings = settingsFrom(query, body);
+        ServerJob job = enqueue(UUID.randomUUID().toString(), new AudioFile(input), settings, null);
+        sendJson(exchange, 202, describe(job));
+    }
+
+    // The body is streamed to disk, never held in memory. It is not piped into ffmpeg
+    // directly because the job may wait in the queue and M4A input needs a seekable file.
+    private void submitUpload(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange);
+        String name = query.get("name");
+        if (name == null || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("name must be a plain file name");
+        }
+        if (isQueueFull()) {
+            sendJson(exchange, 429, Map.of("error", "Queue is full, retry later"));
+            return;
+        }
+        ConversionSettings settings = settingsFrom(query, "");
+
+        String id = UUID.randomUUID().toString();
+        Path jobUploadDir = Files.createDirectories(uploadDir.resolve(id));
+        Path target = jobUploadDir.resolve(name);
+        try (InputStream body = exchange.getRequestBody()) {
+            Files.copy(body, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        ServerJob job = enqueue(id, new AudioFile(target.toString()), settings, jobUploadDir);
+        sendJson(exchange, 202, describe(job));
+    }
+
+    private ServerJob enqueue(String id, AudioFile audioFile, ConversionSettings settings, Path jobUploadDir)
+            throws IOException {
+        Path jobOutputDir = Files.createDirectories(outputDir.resolve(id));
+        Path outputFile = Paths.get(ffmpegService.buildOutputFilename(audioFile, settings, jobOutputDir.toString()));
+        ServerJob job = new ServerJob(id, audioFile, outputFile, jobUploadDir);
+        jobs.put(id, job);
+
+        AudioConversionTask task = new AudioConversionTask(audioFile, settings, jobOutputDir.toString(), ffmpegService);
+        job.scheduled = scheduler.submit(task, Paths.get(audioFile.getFilePath()),
+                ffmpegService.getEncoderOutputDir(jobOutputDir.toString()),
+                () -> ffmpegService.getMemoryEstimator().estimate(audioFile, settings));
+        job.scheduled
+                .thenCompose(ignored -> task.getPublished())
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        job.error = cause.getMessage();
+                    }
+                    job.finishedAt = System.currentTimeMillis();
+                });
+        return job;
+    }
+
+    private void status(HttpExchange exchange, String id) throws IOException {
+        ServerJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, Map.of("error", "Unknown job"));
+            return;
+        }
+        sendJson(exchange, 200, describe(job));
+    }
+
+    private void download(HttpExchange exchange, String id) throws IOException {
+        ServerJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, Map.of("error", "Unknown job"));
+            return;
+        }
+        // With a staging area the output appears only after the publisher has moved it
+        if (job.audioFile.getStatus() != AudioFile.ConversionStatus.COMPLETED || !Files.exists(job.outputFile)) {
+            sendJson(exchange, 409, describe(job));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Content-Disposition",
+                "attachment; filename=\"" + job.outputFile.getFileName() + "\"");
+        exchange.sendResponseHeaders(200, Files.size(job.outputFile));
+        try (OutputStream body = exchange.getResponseBody()) {
+            Files.copy(job.outputFile, body);
+        }
+    }
+
+    private void delete(HttpExchange exchange, String id) throws IOException {
+        ServerJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, Map.of("error", "Unknown job"));
+            return;
+        }
+        // A queued job leaves the scheduler first, otherwise it would run against deleted paths
+        boolean cancelled = job.finishedAt == 0 && scheduler.cancel(job.scheduled);
+        if (!cancelled && job.finishedAt == 0) {
+            sendJson(exchange, 409, describe(job));
+            return;
+        }
+        jobs.remove(id);
+        removeFiles(job);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void expireJobs() {
+        long cutoff = System.currentTimeMillis() - jobTtlMillis;
+        for (ServerJob job : jobs.values()) {
+            if (job.finishedAt != 0 && job.finishedAt < cutoff && jobs.remove(job.id, job)) {
+                try {
+                    removeFiles(job);
+                } catch (IOException e) {
+                    logger.warn("Could not remove files of expired job {}: {}", job.id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void removeFiles(ServerJob job) throws IOException {
+        deleteTree(job.outputFile.getParent());
+        if (job.uploadDir != null) {
+            deleteTree(job.uploadDir);
+        }
+    }
+
+    private boolean isQueueFull() {
+        return scheduler.getQueuedCount() >= maxQueued;
+    }
+
+    private ConversionSettings settingsFrom(Map<String, String> query, String body) {
+        ConversionSettings settings;
+        if (body != null && !body.isBlank()) {
+            settings = gson.fromJson(body, ConversionSettings.class);
+        } else if (query.containsKey("settings")) {
+            settings = gson.fromJson(query.get("settings"), ConversionSettings.class);
+        } else {
+            settings = new ConversionSettings();
+        }
+        if (settings == null) {
+            throw new IllegalArgumentException("settings must be a JSON object");
+        }
+        String presetId = query.get("preset");
+        if (presetId != null) {
+            PresetDefinition preset = presets.find(presetId);
+            if (preset == null) {
+                throw new IllegalArgumentException("unknown preset " + presetId);
+            }
+            settings.loadFromPreset(preset);
+        }
+        List<String> errors = validate(settings);
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+        return settings;
+    }
+
+    // Gson leaves unknown enum names as null, which would only fail later inside a worker
+    static List<String> validate(ConversionSettings settings) {
+        List<String> errors = new ArrayList<>();
+        ConversionSettings.OutputFormat format = settings.getOutputFormat();
+        if (format == null) {
+            errors.add("outputFormat must be one of MP3, WAV, M4A, FLAC");
+            return errors;
+        }
+        if (settings.getQuality() == null) {
+            errors.add("quality must be one of " + List.of(ConversionSettings.Quality.values()));
+        }
+        if (settings.getChannels() == null) {
+            errors.add("channels must be MONO, STEREO or MATCH_SOURCE");
+        }
+        if (settings.getLoudnessTarget() == null) {
+            errors.add("unknown loudnessTarget");
+        }
+        if (settings.getEncodeEffort() == null) {
+            errors.add("encodeEffort must be FAST, BALANCED or MAX");
+        }
+        ConversionSettings.SampleRate sampleRate = settings.getSampleRate();
+        if (sampleRate == null || (sampleRate != ConversionSettings.SampleRate.MATCH_SOURCE
+                && !format.getSampleRateOptions().contains(sampleRate.getRate()))) {
+            errors.add(format + " sampleRate must be MATCH_SOURCE or one of " + format.getSampleRateOptions() + " Hz");
+        }
+        if (settings.getBitrateMode() == null) {
+            errors.add("bitrateMode must be CONSTANT or VARIABLE");
+        } else if (settings.getBitrateMode() == ConversionSettings.BitrateMode.VARIABLE) {
+            if (!format.supportsVBR()) {
+                errors.add(format + " does not support variable bitrate");
+            }
+            if (settings.getVbrQuality() < 0 || settings.getVbrQuality() > 9) {
+                errors.add("vbrQuality must be between 0 and 9");
+            }
+        }
+        Integer bitrate = settings.getCustomBitrate();
+        if (bitrate != null && format.supportsBitrate() && !format.getBitrateOptions().contains(bitrate)) {
+            errors.add(format + " customBitrate must be one of " + format.getBitrateOptions());
+        }
+        return errors;
+    }
+
+    private Map<String, Object> describe(ServerJob job) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", job.id);
+        result.put("input", job.audioFile.getName());
+        result.put("status", job.audioFile.getStatus());
+        if (job.audioFile.getStatus() == AudioFile.ConversionStatus.COMPLETED) {
+            result.put("output", "/jobs/" + job.id + "/output");
+        }
+        if (job.error != null) {
+            result.put("error", job.error);
+        }
+        return result;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> result = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return result;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                result.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (var stream = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        expiry.shutdownNow();
+        server.stop(1);
+        httpThreads.shutdown();
+    }
+}
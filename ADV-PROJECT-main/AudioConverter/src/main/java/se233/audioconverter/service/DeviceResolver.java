@@ -0,0 +1,154 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps a path to the physical device that backs it. On Linux this uses
+// /proc/self/mountinfo and /sys/dev/block so that partitions of one disk share a key;
+// elsewhere the FileStore name is used.
+public class DeviceResolver {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceResolver.class);
+    private static final Path MOUNTINFO = Paths.get("/proc/self/mountinfo");
+    private static final Path SYS_DEV_BLOCK = Paths.get("/sys/dev/block");
+
+    public static class Device {
+        private final String key;
+        private final boolean rotational;
+
+        Device(String key, boolean rotational) {
+            this.key = key;
+            this.rotational = rotational;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isRotational() {
+            return rotational;
+        }
+
+        @Override
+        public String toString() {
+            return key + (rotational ? " (hdd)" : "");
+        }
+    }
+
+    private static class Mount {
+        final String mountPoint;
+        final String majorMinor;
+        final String source;
+
+        Mount(String mountPoint, String majorMinor, String source) {
+            this.mountPoint = mountPoint;
+            this.majorMinor = majorMinor;
+            this.source = source;
+        }
+    }
+
+    private final List<Mount> mounts;
+    private final Map<Path, Device> cache = new ConcurrentHashMap<>();
+
+    public DeviceResolver() {
+        this.mounts = readMounts();
+    }
+
+    public Device resolve(Path path) {
+        Path dir = Files.isDirectory(path) ? path : path.toAbsolutePath().getParent();
+        if (dir == null) {
+            dir = path.toAbsolutePath();
+        }
+        return cache.computeIfAbsent(dir, this::lookup);
+    }
+
+    private Device lookup(Path dir) {
+        String real;
+        try {
+            real = dir.toRealPath().toString();
+        } catch (IOException e) {
+            real = dir.toAbsolutePath().normalize().toString();
+        }
+
+        Mount best = null;
+        for (Mount mount : mounts) {
+            if (isUnder(real, mount.mountPoint)
+                    && (best == null || mount.mountPoint.length() > best.mountPoint.length())) {
+                best = mount;
+            }
+        }
+
+        if (best != null) {
+            Path sysEntry = SYS_DEV_BLOCK.resolve(best.majorMinor);
+            if (Files.exists(sysEntry)) {
+                return physicalDevice(sysEntry, best.majorMinor);
+            }
+            // Network and virtual filesystems: one "device" per server/export
+            return new Device(best.source, false);
+        }
+
+        try {
+            return new Device(Files.getFileStore(dir).name(), false);
+        } catch (IOException e) {
+            return new Device(real, false);
+        }
+    }
+
+    // A partition's sysfs entry sits inside its parent disk, so walk up to the whole disk
+    private Device physicalDevice(Path sysEntry, String majorMinor) {
+        try {
+            Path real = sysEntry.toRealPath();
+            Path disk = Files.exists(real.resolve("partition")) ? real.getParent() : real;
+            Path rotationalFile = disk.resolve("queue").resolve("rotational");
+            boolean rotational = Files.exists(rotationalFile)
+                    && Files.readString(rotationalFile).trim().equals("1");
+            return new Device(disk.getFileName().toString(), rotational);
+        } catch (IOException e) {
+            return new Device(majorMinor, false);
+        }
+    }
+
+    private static boolean isUnder(String path, String mountPoint) {
+        if (mountPoint.equals("/")) {
+            return true;
+        }
+        return path.equals(mountPoint) || path.startsWith(mountPoint + "/");
+    }
+
+    private static List<Mount> readMounts() {
+        List<Mount> result = new ArrayList<>();
+        if (!Files.isReadable(MOUNTINFO)) {
+            return result;
+        }
+        try {
+            for (String line : Files.readAllLines(MOUNTINFO, StandardCharsets.UTF_8)) {
+                // id parent major:minor root mountpoint options ... - fstype source superoptions
+                String[] fields = line.split(" ");
+                int separator = line.indexOf(" - ");
+                if (fields.length < 5 || separator < 0) {
+                    continue;
+                }
+                String[] tail = line.substring(separator + 3).split(" ");
+                String source = tail.length > 1 ? tail[1] : fields[2];
+                result.add(new Mount(unescape(fields[4]), fields[2], source));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read {}: {}", MOUNTINFO, e.getMessage());
+        }
+        return result;
+    }
+
+    // mountinfo escapes spaces and tabs as octal sequences
+    private static String unescape(String value) {
+        return value.replace("\\040", " ").replace("\\011", "\t").replace("\\134", "\\");
+    }
+}
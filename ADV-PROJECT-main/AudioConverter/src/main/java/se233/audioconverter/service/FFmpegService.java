@@ -1,8 +1,16 @@
 package se233.audioconverter.service;
 
+import se233.audioconverter.analysis.PcmAnalyzer;
+import se233.audioconverter.analysis.PeakPyramidBuilder;
+import se233.audioconverter.analysis.WavFormat;
 import se233.audioconverter.exception.AudioConversionException;
 import se233.audioconverter.model.AudioFile;
 import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.LoudnessMeasurement;
+import se233.audioconverter.model.ResourceUsage;
+import se233.audioconverter.model.TuningProfile;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
@@ -12,34 +20,79 @@ import net.bramp.ffmpeg.probe.FFmpegFormat;
 import net.bramp.ffmpeg.probe.FFmpegStream;
 import net.bramp.ffmpeg.progress.ProgressListener;
 import net.bramp.ffmpeg.progress.Progress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class FFmpegService {
+    private static final Logger logger = LoggerFactory.getLogger(FFmpegService.class);
     private static final List<String> SUPPORTED_FORMATS = Arrays.asList("mp3", "wav", "m4a", "flac");
+    private static final int WAVEFORM_DECODE_RATE = 22050;
 
     private FFmpeg ffmpeg;
     private FFprobe ffprobe;
     private FFmpegExecutor executor;
+    private LoudnessAnalysisCache loudnessCache;
+    private OutputPublisher outputPublisher;
+    private final MemoryEstimator memoryEstimator;
+    private final JobEstimator jobEstimator;
+    private final Map<String, ArgumentTemplate> templates = new ConcurrentHashMap<>();
+    private final LongAdder completedAudioMillis = new LongAdder();
+    // Advances with out_time of running encoders, so long files count while they encode
+    private final LongAdder processedAudioMicros = new LongAdder();
+    private final String ffmpegPath;
+    private final TuningProfile tuningProfile = AutoTuner.loadDefault();
+    private volatile ProcessPriority processPriority = ProcessPriority.NORMAL;
+    private final ResourceLedger resourceLedger = ResourceLedger.fromConfig(AppConfig.get());
+    private final StallWatchdog stallWatchdog = StallWatchdog.fromConfig(AppConfig.get());
+    private final int stallRetries = AppConfig.get().getInt("watchdog.retries", 1);
 
     public FFmpegService() throws IOException {
-        String ffmpegPath = getFfmpegPath();
+        this.ffmpegPath = getFfmpegPath();
         String ffprobePath = getFfprobePath();
 
         this.ffmpeg = new FFmpeg(ffmpegPath);
         this.ffprobe = new FFprobe(ffprobePath);
         this.executor = new FFmpegExecutor(ffmpeg, ffprobe);
+        this.loudnessCache = LoudnessAnalysisCache.openDefault();
+        this.outputPublisher = OutputPublisher.fromConfig(AppConfig.get());
+        this.jobEstimator = JobEstimator.openDefault();
+        this.memoryEstimator = MemoryEstimator.openDefault();
+        try {
+            this.processPriority = ProcessPriority.fromConfig(AppConfig.get());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Process priority settings ignored: {}", e.getMessage());
+        }
     }
 
     private String getFfmpegPath() {
+        // An explicit ffmpeg.path wins over the PATH search, e.g. the fake encoder the benchmarks use
+        String configured = AppConfig.get().getString("ffmpeg.path", null);
+        if (configured != null) {
+            return configured;
+        }
         String os = System.getProperty("os.name").toLowerCase();
 
         String pathEnv = System.getenv("PATH");
@@ -84,6 +137,10 @@ public class FFmpegService {
     }
 
     private String getFfprobePath() {
+        String configured = AppConfig.get().getString("ffprobe.path", null);
+        if (configured != null) {
+            return configured;
+        }
         String os = System.getProperty("os.name").toLowerCase();
 
         String pathEnv = System.getenv("PATH");
@@ -163,93 +220,687 @@ public class FFmpegService {
         }
     }
 
-    public void convertAudio(AudioFile audioFile, ConversionSettings settings,
-                             String outputPath, ProgressListener listener)
+    // A stall the watchdog classed as transient (I/O wait, sleeping) gets another attempt;
+    // a spinning decoder would only hang again. Returns once the encode is done; the future
+    // completes when the output is at its destination, which with a staging directory is
+    // after the publisher moved it, and fails if that move fails.
+    public CompletableFuture<Path> convertAudio(AudioFile audioFile, ConversionSettings settings,
+                                                String outputPath, ProgressListener listener)
+            throws AudioConversionException {
+        return retryStalls(() -> convertOnce(audioFile, settings, outputPath, listener));
+    }
+
+    // One attempt at a watched ffmpeg run
+    private interface Attempt<T> {
+        T run() throws AudioConversionException;
+    }
+
+    // Same retry policy for every watched child: the encoder and the analysis passes
+    private <T> T retryStalls(Attempt<T> attempt) throws AudioConversionException {
+        for (int i = 0; ; i++) {
+            try {
+                return attempt.run();
+            } catch (AudioConversionException e) {
+                if (e.getErrorType() != AudioConversionException.ErrorType.STALLED
+                        || !e.isRetryable() || i >= stallRetries) {
+                    throw e;
+                }
+                logger.warn("Retrying after stall: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static AudioConversionException stalled(AudioFile audioFile, StallWatchdog.Watch watch, String output) {
+        StallWatchdog.StallKind stall = watch.getStall();
+        return new AudioConversionException(
+                audioFile.getName(),
+                AudioConversionException.ErrorType.STALLED,
+                "no progress for " + watch.getWindowMillis() / 1000 + " s, " + stall.getDescription()
+                        + "\n" + output,
+                stall.isRetryable()
+        );
+    }
+
+    // How a batch process ended; a failed one is split, anything else falls back to single files
+    private enum BatchOutcome { CONVERTED, FAILED, SEPARATE }
+
+    // Converts files with the same settings in one ffmpeg process (see MicroBatchPlanner) and
+    // returns the failures by file; an empty map means every file was converted. Nothing from
+    // a failed batch process is kept: it is split in halves until the bad input is on its own,
+    // so one corrupt clip costs a few extra processes, not one per file. Stalled batches go
+    // straight to single files rather than waiting out the watchdog again on each half.
+    // Outputs are published before this returns, so a failed move shows up as a failure.
+    public Map<AudioFile, AudioConversionException> convertBatch(List<AudioFile> files,
+                                                                 ConversionSettings settings, String outputPath) {
+        Map<AudioFile, CompletableFuture<Path>> published = new LinkedHashMap<>();
+        Map<AudioFile, AudioConversionException> failures = convertBatch(files, settings, outputPath, published);
+        for (Map.Entry<AudioFile, CompletableFuture<Path>> entry : published.entrySet()) {
+            try {
+                awaitOutput(entry.getKey(), entry.getValue());
+            } catch (AudioConversionException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return failures;
+    }
+
+    // Waits for an output handed back by convertAudio, with a failed move as an IO_ERROR
+    public static void awaitOutput(AudioFile audioFile, CompletableFuture<Path> published)
+            throws AudioConversionException {
+        try {
+            published.get();
+        } catch (ExecutionException e) {
+            throw new AudioConversionException(audioFile.getName(),
+                    AudioConversionException.ErrorType.IO_ERROR,
+                    "output not published: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AudioConversionException(audioFile.getName(),
+                    AudioConversionException.ErrorType.IO_ERROR, e);
+        }
+    }
+
+    private Map<AudioFile, AudioConversionException> convertBatch(List<AudioFile> files, ConversionSettings settings,
+                                                                  String outputPath,
+                                                                  Map<AudioFile, CompletableFuture<Path>> published) {
+        Map<AudioFile, AudioConversionException> failures = new LinkedHashMap<>();
+        List<AudioFile> batch = new ArrayList<>();
+        List<AudioFile> alone = new ArrayList<>();
+        Set<String> outputs = new HashSet<>();
+        for (AudioFile audioFile : files) {
+            try {
+                validateAudioFile(audioFile);
+            } catch (AudioConversionException e) {
+                failures.put(audioFile, e);
+                continue;
+            }
+            // Inputs with the same base name would write one output twice within the process
+            if (outputs.add(buildOutputFilename(audioFile, settings, outputPath))) {
+                batch.add(audioFile);
+            } else {
+                alone.add(audioFile);
+            }
+        }
+
+        try {
+            BatchOutcome outcome = batch.size() < 2 ? BatchOutcome.SEPARATE
+                    : convertTogether(batch, settings, outputPath, published);
+            if (outcome == BatchOutcome.FAILED) {
+                int half = batch.size() / 2;
+                failures.putAll(convertBatch(batch.subList(0, half), settings, outputPath, published));
+                failures.putAll(convertBatch(batch.subList(half, batch.size()), settings, outputPath, published));
+            } else if (outcome == BatchOutcome.SEPARATE) {
+                alone.addAll(0, batch);
+            }
+            for (AudioFile audioFile : alone) {
+                try {
+                    published.put(audioFile, convertAudio(audioFile, settings, outputPath, null));
+                } catch (AudioConversionException e) {
+                    failures.put(audioFile, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (AudioFile audioFile : batch) {
+                failures.putIfAbsent(audioFile, new AudioConversionException(audioFile.getName(),
+                        AudioConversionException.ErrorType.FFMPEG_ERROR, e));
+            }
+        }
+        return failures;
+    }
+
+    // CONVERTED when every file was encoded and handed to the publisher; otherwise no outputs are left behind
+    private BatchOutcome convertTogether(List<AudioFile> files, ConversionSettings settings, String outputPath,
+                                         Map<AudioFile, CompletableFuture<Path>> published)
+            throws InterruptedException {
+        List<Path> finalOutputs = new ArrayList<>();
+        List<Path> encoderOutputs = new ArrayList<>();
+        boolean started = false;
+        boolean handedOver = false;
+        try {
+            ConversionSettings resolved = settings;
+            if (settings.getSampleRate() == ConversionSettings.SampleRate.MATCH_SOURCE
+                    || settings.getChannels() == ConversionSettings.Channels.MATCH_SOURCE) {
+                String key = null;
+                for (AudioFile audioFile : files) {
+                    probeSource(audioFile);
+                    resolved = settings.resolvedFor(audioFile);
+                    String fileKey = ArgumentTemplate.keyOf(resolved);
+                    if (key != null && !key.equals(fileKey)) {
+                        return BatchOutcome.SEPARATE;
+                    }
+                    key = fileKey;
+                }
+            }
+            ArgumentTemplate template = templateFor(resolved);
+
+            List<String> inputs = new ArrayList<>();
+            List<String> filters = new ArrayList<>();
+            List<String> outputs = new ArrayList<>();
+            double[] seconds = new double[files.size()];
+            double totalSeconds = 0;
+            for (int i = 0; i < files.size(); i++) {
+                AudioFile audioFile = files.get(i);
+                Path finalOutput = Paths.get(buildOutputFilename(audioFile, settings, outputPath));
+                Path encoderOutput = outputPublisher != null ? outputPublisher.stagingPathFor(finalOutput) : finalOutput;
+                finalOutputs.add(finalOutput);
+                encoderOutputs.add(encoderOutput);
+                inputs.add(audioFile.getFilePath());
+                filters.add(template.getLoudnessTarget() != null
+                        ? buildLoudnormFilter(template.getLoudnessTarget(), getLoudnessMeasurement(audioFile))
+                        : null);
+                outputs.add(encoderOutput.toString());
+                seconds[i] = MemoryEstimator.estimateDurationSeconds(audioFile);
+                totalSeconds += seconds[i];
+            }
+
+            long startNanos = System.nanoTime();
+            started = true;
+            EncoderRun run = runEncoder(template.renderBatch(inputs, filters, outputs), totalSeconds);
+            double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+            ResourceUsage usage = run.monitor.getUsage();
+            boolean complete = run.getStall() == null && run.exitCode == 0;
+            for (int i = 0; complete && i < encoderOutputs.size(); i++) {
+                complete = Files.exists(encoderOutputs.get(i)) && Files.size(encoderOutputs.get(i)) > 0;
+            }
+
+            // The child's usage and wall time are split by each file's share of the audio. Peak
+            // RSS is left out of the memory model, it covers every decoder in the batch at once.
+            for (int i = 0; i < files.size(); i++) {
+                double share = totalSeconds > 0 ? seconds[i] / totalSeconds : 1.0 / files.size();
+                ResourceUsage fileUsage = usage.share(share);
+                resourceLedger.record(files.get(i), settings, fileUsage, complete);
+                if (complete) {
+                    files.get(i).setResourceUsage(fileUsage);
+                    jobEstimator.observe(files.get(i), settings, wallSeconds * share, Files.size(encoderOutputs.get(i)));
+                }
+            }
+            if (!complete) {
+                logger.warn("Batch of {} files failed ({})\n{}", files.size(),
+                        run.getStall() != null ? run.getStall().getDescription() : "exit code " + run.exitCode,
+                        run.output);
+                return run.getStall() != null ? BatchOutcome.SEPARATE : BatchOutcome.FAILED;
+            }
+
+            completedAudioMillis.add(Math.round(totalSeconds * 1000));
+            for (int i = 0; i < files.size(); i++) {
+                published.put(files.get(i), outputPublisher != null
+                        ? outputPublisher.publish(files.get(i), encoderOutputs.get(i), finalOutputs.get(i))
+                        : CompletableFuture.completedFuture(finalOutputs.get(i)));
+            }
+            handedOver = true;
+            return BatchOutcome.CONVERTED;
+        } catch (IOException | AudioConversionException e) {
+            logger.info("Batch of {} files not converted together: {}", files.size(), e.getMessage());
+            return BatchOutcome.SEPARATE;
+        } finally {
+            if (!handedOver) {
+                for (Path encoderOutput : encoderOutputs) {
+                    if (outputPublisher != null) {
+                        outputPublisher.discard(encoderOutput);
+                    } else if (started) {
+                        try {
+                            Files.deleteIfExists(encoderOutput);
+                        } catch (IOException e) {
+                            // overwritten by the per-file attempt
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Path> convertOnce(AudioFile audioFile, ConversionSettings settings,
+                                                String outputPath, ProgressListener listener)
             throws AudioConversionException {
 
         validateAudioFile(audioFile);
 
+        Path stagedFile = null;
         try {
             String outputFilename = buildOutputFilename(audioFile, settings, outputPath);
+            Path finalOutput = Paths.get(outputFilename);
 
-            // Build FFmpeg command manually using ProcessBuilder for correct argument order
-            List<String> command = new ArrayList<>();
-
-            // FFmpeg executable path
-            String ffmpegPath = getFfmpegPath();
-            command.add(ffmpegPath);
-
-            // Global options
-            command.add("-y"); // Overwrite output files
-            command.add("-v");
-            command.add("error");
-
-            // Input file
-            command.add("-i");
-            command.add(audioFile.getFilePath());
-
-            // Output options (AFTER input file)
-            command.add("-c:a");
-            command.add(settings.getOutputFormat().getCodec());
-
-            command.add("-ac");
-            command.add(String.valueOf(settings.getChannels().getCount()));
-
-            command.add("-ar");
-            command.add(String.valueOf(settings.getSampleRate().getRate()));
-
-            // Bitrate settings - check mode and format
-            if (settings.getOutputFormat().supportsBitrate()) {
-                if (settings.getOutputFormat() == ConversionSettings.OutputFormat.MP3 &&
-                        settings.getBitrateMode() == ConversionSettings.BitrateMode.VARIABLE) {
-                    // MP3 VBR mode - use -q:a (quality) instead of bitrate
-                    command.add("-q:a");
-                    command.add(String.valueOf(settings.getVbrQuality()));
-                } else {
-                    // CBR mode or other formats - use bitrate
-                    int bitrate = settings.getEffectiveBitrate();
-                    command.add("-b:a");
-                    command.add(bitrate + "k");
-                }
+            // With a staging area configured ffmpeg writes locally and the publisher moves the result
+            if (outputPublisher != null) {
+                stagedFile = outputPublisher.stagingPathFor(finalOutput);
+                outputFilename = stagedFile.toString();
+            }
+
+            // Settings-dependent arguments are compiled once; per file only paths and the filter change
+            ConversionSettings resolved = settings;
+            if (settings.getSampleRate() == ConversionSettings.SampleRate.MATCH_SOURCE
+                    || settings.getChannels() == ConversionSettings.Channels.MATCH_SOURCE) {
+                probeSource(audioFile);
+                resolved = settings.resolvedFor(audioFile);
+            }
+            ArgumentTemplate template = templateFor(resolved);
+            String filter = null;
+            if (template.getLoudnessTarget() != null) {
+                // Loudness normalization - second (encode) pass of loudnorm
+                LoudnessMeasurement measured = getLoudnessMeasurement(audioFile);
+                filter = buildLoudnormFilter(template.getLoudnessTarget(), measured);
+            }
+            List<String> command = template.render(audioFile.getFilePath(), filter, outputFilename);
+
+            long startNanos = System.nanoTime();
+            EncoderRun run = runEncoder(command, MemoryEstimator.estimateDurationSeconds(audioFile));
+            ProcessMonitor monitor = run.monitor;
+            int exitCode = run.exitCode;
+            String output = run.output;
+            if (run.getStall() != null) {
+                resourceLedger.record(audioFile, settings, monitor.getUsage(), false);
+                throw stalled(audioFile, run.watch, output);
+            }
+            memoryEstimator.observe(audioFile, settings, monitor.getPeakRssBytes());
+            ResourceUsage usage = monitor.getUsage();
+            audioFile.setResourceUsage(usage);
+            resourceLedger.record(audioFile, settings, usage, exitCode == 0);
+
+            if (exitCode != 0) {
+                throw new AudioConversionException(
+                        audioFile.getName(),
+                        AudioConversionException.ErrorType.FFMPEG_ERROR,
+                        "FFmpeg exit code: " + exitCode + "\n" + output
+                );
             }
 
-            // Output file (MUST be last)
-            command.add(outputFilename);
+            Path encoded = Paths.get(outputFilename);
+            jobEstimator.observe(audioFile, settings, (System.nanoTime() - startNanos) / 1e9,
+                    Files.exists(encoded) ? Files.size(encoded) : 0);
+            completedAudioMillis.add(Math.round(MemoryEstimator.estimateDurationSeconds(audioFile) * 1000));
 
-            // Execute command
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            CompletableFuture<Path> published = CompletableFuture.completedFuture(finalOutput);
+            if (stagedFile != null) {
+                published = outputPublisher.publish(audioFile, stagedFile, finalOutput);
+                stagedFile = null;
+            }
+
+            // Notify listener of completion (simplified - no progress tracking)
+            if (listener != null) {
+                Progress progress = new Progress();
+                progress.out_time_ns = 1000000000L; // Dummy value
+                listener.progress(progress);
+            }
+            return published;
+
+        } catch (IOException | InterruptedException e) {
+            throw new AudioConversionException(
+                    audioFile.getName(),
+                    AudioConversionException.ErrorType.FFMPEG_ERROR,
+                    e
+            );
+        } finally {
+            if (stagedFile != null) {
+                outputPublisher.discard(stagedFile);
+            }
+        }
+    }
+
+    // One ffmpeg child from start to exit under the current priority, watched for stalls
+    private static final class EncoderRun {
+        private int exitCode;
+        private String output;
+        private ProcessMonitor monitor;
+        private StallWatchdog.Watch watch;
+
+        // Null unless the watchdog killed the child
+        StallWatchdog.StallKind getStall() {
+            return watch != null ? watch.getStall() : null;
+        }
+    }
+
+    private EncoderRun runEncoder(List<String> command, double durationSeconds)
+            throws IOException, InterruptedException {
+        try (ProcessPriority.Lease lease = processPriority.lease()) {
+            ProcessBuilder processBuilder = new ProcessBuilder(ProcessMonitor.wrap(lease.wrap(command)));
             processBuilder.redirectErrorStream(true);
 
+            EncoderRun run = new EncoderRun();
             Process process = processBuilder.start();
+            run.monitor = new ProcessMonitor(process);
+            run.watch = stallWatchdog != null ? stallWatchdog.watch(process, run.monitor, durationSeconds) : null;
 
             // Read output
             BufferedReader reader = new BufferedReader(
                     new InputStreamReader(process.getInputStream()));
             String line;
             StringBuilder output = new StringBuilder();
+            long outTimeMicros = 0;
 
             while ((line = reader.readLine()) != null) {
+                if (run.monitor.onLine(line)) {
+                    continue;
+                }
+                if (line.startsWith("out_time_us=")) {
+                    outTimeMicros = countProgress(line, outTimeMicros);
+                }
+                if (run.watch != null && run.watch.onLine(line)) {
+                    continue;
+                }
                 output.append(line).append("\n");
                 System.out.println(line); // For debugging
             }
 
-            int exitCode = process.waitFor();
+            run.monitor.close();
+            if (run.watch != null) {
+                run.watch.close();
+            }
+            run.exitCode = process.waitFor();
+            run.output = output.toString();
+            if (run.exitCode == 0 && run.getStall() == null) {
+                // The last report can trail the end of the input
+                processedAudioMicros.add(Math.max(0, Math.round(durationSeconds * 1e6) - outTimeMicros));
+            }
+            return run;
+        }
+    }
+
+    private long countProgress(String line, long lastMicros) {
+        try {
+            long micros = Long.parseLong(line.substring("out_time_us=".length()));
+            if (micros > lastMicros) {
+                processedAudioMicros.add(micros - lastMicros);
+                return micros;
+            }
+        } catch (NumberFormatException e) {
+            // N/A before the first packet
+        }
+        return lastMicros;
+    }
+
+    // Applies to children started after the call; running ones keep what they started with
+    public void setProcessPriority(ProcessPriority processPriority) {
+        this.processPriority = processPriority;
+    }
+
+    public ProcessPriority getProcessPriority() {
+        return processPriority;
+    }
 
+    // Null when watchdog.enabled=false
+    public StallWatchdog getStallWatchdog() {
+        return stallWatchdog;
+    }
+
+    // Totals of every child since start, by preset and format
+    public ResourceLedger getResourceLedger() {
+        return resourceLedger;
+    }
+
+    public ArgumentTemplate templateFor(ConversionSettings settings) {
+        return templates.computeIfAbsent(ArgumentTemplate.keyOf(settings),
+                key -> ArgumentTemplate.compile(ffmpegPath, settings,
+                        tuningProfile.threadsFor(settings.getOutputFormat())));
+    }
+
+    // Running total of audio in finished conversions
+    public double getCompletedAudioSeconds() {
+        return completedAudioMillis.sum() / 1000.0;
+    }
+
+    // Audio encoded so far including the part of running jobs, the throughput signal for
+    // adaptive concurrency: unlike completions it moves while a long file is still encoding
+    public double getProcessedAudioSeconds() {
+        return processedAudioMicros.sum() / 1e6;
+    }
+
+    public TuningProfile getTuningProfile() {
+        return tuningProfile;
+    }
+
+    public String getFfmpegExecutable() {
+        return ffmpegPath;
+    }
+
+    public LoudnessAnalysisCache getLoudnessCache() {
+        return loudnessCache;
+    }
+
+    public JobEstimator getJobEstimator() {
+        return jobEstimator;
+    }
+
+    // Fills in duration, sample rate and channels. WAV headers are read directly, everything
+    // else goes through ffprobe; files that cannot be probed keep the size-based guesses.
+    public void probeSource(AudioFile audioFile) {
+        if (audioFile.getDurationSeconds() > 0 && audioFile.getSourceSampleRate() > 0) {
+            return;
+        }
+        if (PcmAnalyzer.canAnalyze(audioFile)) {
+            try (FileChannel channel = FileChannel.open(Paths.get(audioFile.getFilePath()), StandardOpenOption.READ)) {
+                WavFormat wav = WavFormat.read(channel);
+                audioFile.setSourceSampleRate(wav.getSampleRate());
+                audioFile.setSourceChannels(wav.getChannels());
+                if (wav.getSampleRate() > 0 && wav.getChannels() > 0) {
+                    audioFile.setDurationSeconds(wav.getSampleCount() / (double) wav.getChannels() / wav.getSampleRate());
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                // not a plain RIFF file, let ffprobe have a go
+            }
+        }
+        try {
+            FFmpegProbeResult probe = probeFile(audioFile.getFilePath());
+            FFmpegFormat format = probe.getFormat();
+            if (format != null && format.duration > 0) {
+                audioFile.setDurationSeconds(format.duration);
+            }
+            if (probe.getStreams() != null) {
+                for (FFmpegStream stream : probe.getStreams()) {
+                    if (stream.codec_type == FFmpegStream.CodecType.AUDIO) {
+                        audioFile.setSourceSampleRate(stream.sample_rate);
+                        audioFile.setSourceChannels(stream.channels);
+                        break;
+                    }
+                }
+            }
+        } catch (AudioConversionException | RuntimeException e) {
+            // conversion reports the real error
+        }
+    }
+
+    public MemoryEstimator getMemoryEstimator() {
+        return memoryEstimator;
+    }
+
+    // Directory ffmpeg actually writes into: the staging area if configured, otherwise the output dir
+    public Path getEncoderOutputDir(String outputPath) {
+        if (outputPublisher != null) {
+            return outputPublisher.getStagingDir();
+        }
+        return Paths.get(outputPath);
+    }
+
+    public void shutdown() {
+        if (outputPublisher != null) {
+            outputPublisher.shutdown();
+        }
+        jobEstimator.save();
+        memoryEstimator.save();
+        loudnessCache.close();
+        if (stallWatchdog != null) {
+            stallWatchdog.close();
+        }
+    }
+
+    // Returns the cached analysis for this input, running the analysis pass only on a cache miss
+    public LoudnessMeasurement getLoudnessMeasurement(AudioFile audioFile)
+            throws AudioConversionException {
+        LoudnessMeasurement cached = loudnessCache.get(audioFile);
+        if (cached != null) {
+            return cached;
+        }
+        LoudnessMeasurement measured = analyzeLoudness(audioFile);
+        loudnessCache.put(audioFile, measured);
+        return measured;
+    }
+
+    public LoudnessMeasurement analyzeLoudness(AudioFile audioFile) throws AudioConversionException {
+        validateAudioFile(audioFile);
+        return retryStalls(() -> analyzeLoudnessOnce(audioFile));
+    }
+
+    private LoudnessMeasurement analyzeLoudnessOnce(AudioFile audioFile) throws AudioConversionException {
+        // Targets don't affect the measured input values, so a fixed target is used here
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-hide_banner");
+        command.add("-progress");
+        command.add("pipe:1");
+        command.add("-nostats");
+        command.add("-i");
+        command.add(audioFile.getFilePath());
+        command.add("-af");
+        command.add("loudnorm=print_format=json");
+        command.add("-f");
+        command.add("null");
+        command.add("-");
+
+        try (ProcessPriority.Lease lease = processPriority.lease()) {
+            ProcessBuilder processBuilder = new ProcessBuilder(ProcessMonitor.wrap(lease.wrap(command)));
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            ProcessMonitor monitor = new ProcessMonitor(process);
+            StallWatchdog.Watch watch = stallWatchdog != null
+                    ? stallWatchdog.watch(process, monitor, MemoryEstimator.estimateDurationSeconds(audioFile))
+                    : null;
+
+            StringBuilder output = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (monitor.onLine(line) || (watch != null && watch.onLine(line))) {
+                        continue;
+                    }
+                    output.append(line).append("\n");
+                }
+            }
+
+            monitor.close();
+            if (watch != null) {
+                watch.close();
+            }
+            int exitCode = process.waitFor();
+            boolean killed = watch != null && watch.getStall() != null;
+            resourceLedger.record("loudness-analysis", "-", audioFile, monitor.getUsage(), exitCode == 0 && !killed);
+            if (killed) {
+                throw stalled(audioFile, watch, output.toString());
+            }
             if (exitCode != 0) {
                 throw new AudioConversionException(
                         audioFile.getName(),
                         AudioConversionException.ErrorType.FFMPEG_ERROR,
-                        "FFmpeg exit code: " + exitCode + "\n" + output.toString()
+                        "Loudness analysis exit code: " + exitCode + "\n" + output
                 );
             }
 
-            // Notify listener of completion (simplified - no progress tracking)
-            if (listener != null) {
-                Progress progress = new Progress();
-                progress.out_time_ns = 1000000000L; // Dummy value
-                listener.progress(progress);
+            return parseLoudnormOutput(audioFile, output.toString());
+
+        } catch (IOException | InterruptedException e) {
+            throw new AudioConversionException(
+                    audioFile.getName(),
+                    AudioConversionException.ErrorType.FFMPEG_ERROR,
+                    e
+            );
+        }
+    }
+
+    // Decodes to 16-bit mono PCM on a pipe and folds it into peaks as it arrives,
+    // so the decoded audio is never held in memory
+    public PeakPyramidBuilder decodePeaks(AudioFile audioFile) throws AudioConversionException {
+        validateAudioFile(audioFile);
+        return retryStalls(() -> decodePeaksOnce(audioFile));
+    }
+
+    private PeakPyramidBuilder decodePeaksOnce(AudioFile audioFile) throws AudioConversionException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-v");
+        command.add("error");
+        // stdout carries the samples, so progress goes to stderr
+        command.add("-progress");
+        command.add("pipe:2");
+        command.add("-nostats");
+        command.add("-i");
+        command.add(audioFile.getFilePath());
+        command.add("-ac");
+        command.add("1");
+        command.add("-ar");
+        command.add(String.valueOf(WAVEFORM_DECODE_RATE));
+        command.add("-f");
+        command.add("s16le");
+        command.add("-");
+
+        try (ProcessPriority.Lease lease = processPriority.lease()) {
+            ProcessBuilder processBuilder = new ProcessBuilder(ProcessMonitor.wrap(lease.wrap(command)));
+            Process process = processBuilder.start();
+            ProcessMonitor monitor = new ProcessMonitor(process);
+            StallWatchdog.Watch watch = stallWatchdog != null
+                    ? stallWatchdog.watch(process, monitor, MemoryEstimator.estimateDurationSeconds(audioFile))
+                    : null;
+            StringBuffer errors = new StringBuffer();
+            // stderr carries progress, errors and the exit report; drained on the side so
+            // neither pipe can fill while the other is being read
+            Thread stderrReader = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getErrorStream()))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (monitor.onLine(line) || (watch != null && watch.onLine(line))) {
+                            continue;
+                        }
+                        errors.append(line).append("\n");
+                    }
+                } catch (IOException e) {
+                    // process killed, the exit code reports it
+                }
+            }, "waveform-stderr");
+            stderrReader.setDaemon(true);
+            stderrReader.start();
+
+            PeakPyramidBuilder builder = new PeakPyramidBuilder(1, WAVEFORM_DECODE_RATE);
+            byte[] chunk = new byte[64 * 1024];
+            int carry = -1;
+            try (InputStream in = process.getInputStream()) {
+                int read;
+                while ((read = in.read(chunk)) > 0) {
+                    int i = 0;
+                    if (carry >= 0) {
+                        builder.add((short) ((chunk[0] << 8) | carry) / 32768f);
+                        carry = -1;
+                        i = 1;
+                    }
+                    for (; i + 1 < read; i += 2) {
+                        builder.add((short) ((chunk[i + 1] << 8) | (chunk[i] & 0xFF)) / 32768f);
+                    }
+                    if (i < read) {
+                        carry = chunk[i] & 0xFF;
+                    }
+                }
             }
 
+            stderrReader.join();
+            monitor.close();
+            if (watch != null) {
+                watch.close();
+            }
+            int exitCode = process.waitFor();
+            boolean killed = watch != null && watch.getStall() != null;
+            resourceLedger.record("waveform", "-", audioFile, monitor.getUsage(), exitCode == 0 && !killed);
+            if (killed) {
+                throw stalled(audioFile, watch, errors.toString());
+            }
+            if (exitCode != 0) {
+                throw new AudioConversionException(
+                        audioFile.getName(),
+                        AudioConversionException.ErrorType.FFMPEG_ERROR,
+                        "Waveform decode exit code: " + exitCode + "\n" + errors
+                );
+            }
+            return builder;
+
         } catch (IOException | InterruptedException e) {
             throw new AudioConversionException(
                     audioFile.getName(),
@@ -259,8 +910,57 @@ public class FFmpegService {
         }
     }
 
-    private String buildOutputFilename(AudioFile audioFile, ConversionSettings settings,
-                                       String outputPath) {
+    private LoudnessMeasurement parseLoudnormOutput(AudioFile audioFile, String output)
+            throws AudioConversionException {
+        // loudnorm prints its JSON summary as the last block of the log
+        int start = output.lastIndexOf('{');
+        int end = output.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new AudioConversionException(
+                    audioFile.getName(),
+                    AudioConversionException.ErrorType.FFMPEG_ERROR,
+                    "No loudness analysis found in FFmpeg output"
+            );
+        }
+
+        try {
+            JsonObject json = JsonParser.parseString(output.substring(start, end + 1)).getAsJsonObject();
+            return new LoudnessMeasurement(
+                    parseLoudnormValue(json, "input_i"),
+                    parseLoudnormValue(json, "input_tp"),
+                    parseLoudnormValue(json, "input_lra"),
+                    parseLoudnormValue(json, "input_thresh")
+            );
+        } catch (RuntimeException e) {
+            throw new AudioConversionException(
+                    audioFile.getName(),
+                    AudioConversionException.ErrorType.FFMPEG_ERROR,
+                    "Invalid loudness analysis output: " + e.getMessage()
+            );
+        }
+    }
+
+    private double parseLoudnormValue(JsonObject json, String key) {
+        String value = json.get(key).getAsString();
+        // Digital silence is reported as "-inf"
+        if (value.contains("inf")) {
+            return -99.0;
+        }
+        return Double.parseDouble(value);
+    }
+
+    private String buildLoudnormFilter(ConversionSettings.LoudnessTarget target,
+                                       LoudnessMeasurement measured) {
+        return String.format(Locale.ROOT,
+                "loudnorm=I=%.1f:TP=%.1f:LRA=%.1f:measured_I=%.2f:measured_TP=%.2f"
+                        + ":measured_LRA=%.2f:measured_thresh=%.2f:linear=true",
+                target.getIntegratedLufs(), target.getTruePeak(), target.getLoudnessRange(),
+                measured.getIntegratedLufs(), measured.getTruePeak(),
+                measured.getLoudnessRange(), measured.getThreshold());
+    }
+
+    public String buildOutputFilename(AudioFile audioFile, ConversionSettings settings,
+                                      String outputPath) {
         String baseName = audioFile.getName();
         int lastDot = baseName.lastIndexOf('.');
         if (lastDot > 0) {
@@ -0,0 +1,160 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.ThroughputHistory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// Predicts wall time and output size of one conversion. Starts from the audio duration and
+// the requested format, bitrate and sample rate, then learns the realtime factor and size
+// correction per output format from finished jobs (throughput-history.json).
+public class JobEstimator {
+    private static final Logger logger = LoggerFactory.getLogger(JobEstimator.class);
+    private static final String FILE_NAME = "throughput-history.json";
+    private static final double SMOOTHING = 0.2;
+    // Process start, probe and container overhead that does not scale with duration
+    private static final double JOB_OVERHEAD_SECONDS = 0.15;
+
+    public static class Estimate {
+        private final double audioSeconds;
+        private final double wallSeconds;
+        private final long outputBytes;
+
+        public Estimate(double audioSeconds, double wallSeconds, long outputBytes) {
+            this.audioSeconds = audioSeconds;
+            this.wallSeconds = wallSeconds;
+            this.outputBytes = outputBytes;
+        }
+
+        public double getAudioSeconds() {
+            return audioSeconds;
+        }
+
+        public double getWallSeconds() {
+            return wallSeconds;
+        }
+
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+    }
+
+    private final Path historyFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Map<ConversionSettings.OutputFormat, ThroughputHistory> history =
+            new EnumMap<>(ConversionSettings.OutputFormat.class);
+
+    public JobEstimator(Path historyFile) {
+        this.historyFile = historyFile;
+        load();
+    }
+
+    public static JobEstimator openDefault() throws IOException {
+        return new JobEstimator(AppDataDirectory.resolve(FILE_NAME));
+    }
+
+    public synchronized Estimate estimate(AudioFile audioFile, ConversionSettings requested) {
+        ConversionSettings settings = requested.resolvedFor(audioFile);
+        double duration = MemoryEstimator.estimateDurationSeconds(audioFile);
+        ThroughputHistory learned = history.get(settings.getOutputFormat());
+        double realtimeFactor = learned != null ? learned.getRealtimeFactor()
+                : defaultRealtimeFactor(settings.getOutputFormat());
+        double sizeRatio = learned != null ? learned.getSizeRatio() : 1.0;
+
+        double wall = JOB_OVERHEAD_SECONDS + duration / realtimeFactor;
+        long bytes = Math.round(modelOutputBytes(duration, settings) * sizeRatio);
+        return new Estimate(duration, wall, bytes);
+    }
+
+    public synchronized void observe(AudioFile audioFile, ConversionSettings requested,
+                                     double wallSeconds, long outputBytes) {
+        ConversionSettings settings = requested.resolvedFor(audioFile);
+        double duration = MemoryEstimator.estimateDurationSeconds(audioFile);
+        double encodeSeconds = wallSeconds - JOB_OVERHEAD_SECONDS;
+        // Very short jobs are dominated by process start, they say nothing about throughput
+        if (duration < 1.0 || encodeSeconds <= 0.05) {
+            return;
+        }
+        double realtimeFactor = duration / encodeSeconds;
+        long modelBytes = modelOutputBytes(duration, settings);
+        double sizeRatio = outputBytes > 0 && modelBytes > 0 ? outputBytes / (double) modelBytes : 1.0;
+
+        ConversionSettings.OutputFormat format = settings.getOutputFormat();
+        ThroughputHistory previous = history.get(format);
+        if (previous != null) {
+            realtimeFactor = previous.getRealtimeFactor() * (1 - SMOOTHING) + realtimeFactor * SMOOTHING;
+            sizeRatio = previous.getSizeRatio() * (1 - SMOOTHING) + sizeRatio * SMOOTHING;
+        }
+        int samples = previous != null ? previous.getSamples() + 1 : 1;
+        history.put(format, new ThroughputHistory(realtimeFactor, sizeRatio, samples));
+    }
+
+    private static double defaultRealtimeFactor(ConversionSettings.OutputFormat format) {
+        return switch (format) {
+            case MP3 -> 60.0;
+            case M4A -> 40.0;
+            case FLAC -> 120.0;
+            case WAV -> 300.0;
+        };
+    }
+
+    private static long modelOutputBytes(double duration, ConversionSettings settings) {
+        long pcmBytesPerSecond = (long) settings.getSampleRate().getRate()
+                * settings.getChannels().getCount() * 2;
+        return switch (settings.getOutputFormat()) {
+            case WAV -> 44 + Math.round(duration * pcmBytesPerSecond);
+            // Typical lossless ratio for music; the learned size ratio takes it from here
+            case FLAC -> Math.round(duration * pcmBytesPerSecond * 0.6);
+            default -> Math.round(duration * settings.getEffectiveBitrate() * 1000 / 8.0);
+        };
+    }
+
+    private void load() {
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+        Type type = new TypeToken<Map<ConversionSettings.OutputFormat, ThroughputHistory>>() {}.getType();
+        try (Reader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+            Map<ConversionSettings.OutputFormat, ThroughputHistory> loaded = gson.fromJson(reader, type);
+            if (loaded != null) {
+                loaded.forEach((format, entry) -> {
+                    if (format != null && entry != null && entry.getRealtimeFactor() > 0) {
+                        history.put(format, entry);
+                    }
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable throughput history {}: {}", historyFile, e.getMessage());
+        }
+    }
+
+    // Called once per batch rather than per job, the history only needs to survive restarts
+    public synchronized void save() {
+        Path tmp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new HashMap<>(history), writer);
+            }
+            Files.move(tmp, historyFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write throughput history {}: {}", historyFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.LoudnessMeasurement;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Persistent store of loudnorm analysis results keyed by AudioFile identity.
+// Lets repeated runs (and runs with a different output format) skip the analysis pass.
+// New entries only mark the cache dirty; the file is rewritten by flush() at the end of a
+// batch and every FLUSH_INTERVAL_SECONDS for the long-running modes, not once per file.
+public class LoudnessAnalysisCache {
+    private static final Logger logger = LoggerFactory.getLogger(LoudnessAnalysisCache.class);
+    private static final String FILE_NAME = "loudness-cache.json";
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+
+    private final Path cacheFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Map<String, LoudnessMeasurement> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loudness-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LoudnessAnalysisCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    public static LoudnessAnalysisCache openDefault() throws IOException {
+        return new LoudnessAnalysisCache(AppDataDirectory.resolve(FILE_NAME));
+    }
+
+    public LoudnessMeasurement get(AudioFile audioFile) {
+        return entries.get(audioFile.getIdentityKey());
+    }
+
+    public void put(AudioFile audioFile, LoudnessMeasurement measurement) {
+        entries.put(audioFile.getIdentityKey(), measurement);
+        dirty.set(true);
+    }
+
+    // Writes the cache if anything was added since the last write
+    public void flush() {
+        if (dirty.getAndSet(false)) {
+            save();
+        }
+    }
+
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        Type type = new TypeToken<Map<String, LoudnessMeasurement>>() {}.getType();
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            Map<String, LoudnessMeasurement> loaded = gson.fromJson(reader, type);
+            if (loaded != null) {
+                entries.putAll(loaded);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A broken cache only costs a re-analysis, never fail the conversion for it
+            logger.warn("Ignoring unreadable loudness cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private synchronized void save() {
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new HashMap<>(entries), writer);
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write loudness cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package se233.audioconverter.service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Memory available to ffmpeg children. Defaults to a fraction of the container
+// limit (cgroup v2/v1) or of physical memory, minus this JVM's own heap.
+public final class MemoryBudget {
+    private static final long MB = 1024L * 1024L;
+    private static final double DEFAULT_FRACTION = 0.7;
+
+    private MemoryBudget() {
+    }
+
+    public static long fromConfig(AppConfig config) {
+        long configuredMb = config.getLong("memory.budgetMb", 0);
+        if (configuredMb > 0) {
+            return configuredMb * MB;
+        }
+        double fraction = config.getDouble("memory.budgetFraction", DEFAULT_FRACTION);
+        long available = detectLimit() - Runtime.getRuntime().maxMemory();
+        return Math.max(256 * MB, (long) (available * fraction));
+    }
+
+    public static long detectLimit() {
+        long cgroup = readLimit(Paths.get("/sys/fs/cgroup/memory.max"));
+        if (cgroup <= 0) {
+            cgroup = readLimit(Paths.get("/sys/fs/cgroup/memory/memory.limit_in_bytes"));
+        }
+        long physical = physicalMemory();
+        if (cgroup > 0 && (physical <= 0 || cgroup < physical)) {
+            return cgroup;
+        }
+        return physical > 0 ? physical : 4096 * MB;
+    }
+
+    private static long readLimit(Path file) {
+        try {
+            String value = Files.readString(file).trim();
+            return value.equals("max") ? -1 : Long.parseLong(value);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long physicalMemory() {
+        if (ManagementFactory.getOperatingSystemMXBean()
+                instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getTotalMemorySize();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// Predicts the resident memory of one ffmpeg job. Starts from a static model
+// (encoder baseline + buffers scaled by sample rate, channels and duration) and
+// corrects it per output format from peak RSS observed on this host. The corrections
+// are kept in memory-model.json, so a new run starts from what earlier runs measured.
+public class MemoryEstimator {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryEstimator.class);
+    private static final String FILE_NAME = "memory-model.json";
+    private static final long MB = 1024L * 1024L;
+    private static final double SMOOTHING = 0.3;
+
+    private final Path modelFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Map<ConversionSettings.OutputFormat, Double> correction =
+            new EnumMap<>(ConversionSettings.OutputFormat.class);
+
+    // A null file keeps the corrections for this process only
+    public MemoryEstimator(Path modelFile) {
+        this.modelFile = modelFile;
+        load();
+    }
+
+    public static MemoryEstimator openDefault() throws IOException {
+        return new MemoryEstimator(AppDataDirectory.resolve(FILE_NAME));
+    }
+
+    public synchronized long estimate(AudioFile audioFile, ConversionSettings settings) {
+        return Math.round(modelEstimate(audioFile, settings)
+                * correction.getOrDefault(settings.getOutputFormat(), 1.0));
+    }
+
+    public synchronized void observe(AudioFile audioFile, ConversionSettings settings, long peakRssBytes) {
+        if (peakRssBytes <= 0) {
+            return;
+        }
+        double ratio = peakRssBytes / (double) modelEstimate(audioFile, settings);
+        ConversionSettings.OutputFormat format = settings.getOutputFormat();
+        Double previous = correction.get(format);
+        // Never shrink below what we actually saw in one step, memory overshoots are what hurts
+        double next = previous == null ? ratio : Math.max(ratio, previous * (1 - SMOOTHING) + ratio * SMOOTHING);
+        correction.put(format, next);
+    }
+
+    private long modelEstimate(AudioFile audioFile, ConversionSettings requested) {
+        ConversionSettings settings = requested.resolvedFor(audioFile);
+        long baseline = switch (settings.getOutputFormat()) {
+            case MP3 -> 28 * MB;
+            case M4A -> 40 * MB;
+            case FLAC -> 32 * MB;
+            case WAV -> 22 * MB;
+        };
+
+        int rate = Math.max(settings.getSampleRate().getRate(), 44100);
+        int channels = Math.max(settings.getChannels().getCount(), 2);
+        // Decoder, resampler and filter graph keep a few seconds of float samples around
+        long buffers = (long) rate * channels * 4 * 4;
+        if (settings.getLoudnessTarget() != null && settings.getLoudnessTarget().isEnabled()) {
+            // loudnorm works at 192 kHz internally with a 3 s lookahead
+            buffers += 192000L * channels * 8 * 3;
+        }
+
+        double duration = estimateDurationSeconds(audioFile);
+        long durationTerm = (long) (duration * rate * channels * 0.01);
+
+        return baseline + buffers + durationTerm;
+    }
+
+    private void load() {
+        if (modelFile == null || !Files.exists(modelFile)) {
+            return;
+        }
+        Type type = new TypeToken<Map<ConversionSettings.OutputFormat, Double>>() {}.getType();
+        try (Reader reader = Files.newBufferedReader(modelFile, StandardCharsets.UTF_8)) {
+            Map<ConversionSettings.OutputFormat, Double> loaded = gson.fromJson(reader, type);
+            if (loaded != null) {
+                loaded.forEach((format, factor) -> {
+                    if (format != null && factor != null && factor > 0) {
+                        correction.put(format, factor);
+                    }
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable memory model {}: {}", modelFile, e.getMessage());
+        }
+    }
+
+    // Called once per batch rather than per job, like JobEstimator.save
+    public synchronized void save() {
+        if (modelFile == null || correction.isEmpty()) {
+            return;
+        }
+        Path tmp = modelFile.resolveSibling(modelFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(new HashMap<>(correction), writer);
+            }
+            Files.move(tmp, modelFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write memory model {}: {}", modelFile, e.getMessage());
+        }
+    }
+
+    // Probed duration when known, exact for analyzed WAVs, bitrate guess otherwise
+    public static double estimateDurationSeconds(AudioFile audioFile) {
+        if (audioFile.getDurationSeconds() > 0) {
+            return audioFile.getDurationSeconds();
+        }
+        if (audioFile.getPcmAnalysis() != null) {
+            return audioFile.getPcmAnalysis().getDurationSeconds();
+        }
+        long bytesPerSecond = switch (audioFile.getFormat()) {
+            case "wav" -> 176400;
+            case "flac" -> 110000;
+            default -> 24000;
+        };
+        return audioFile.getFileSize() / (double) bytesPerSecond;
+    }
+}
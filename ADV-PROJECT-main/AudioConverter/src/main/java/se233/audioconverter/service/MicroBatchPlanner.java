@@ -0,0 +1,77 @@
+package se233.audioconverter.service;
+
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Groups short inputs that compile to the same ffmpeg arguments so one process converts
+// several of them (FFmpegService.convertBatch). For sub-second clips the process start,
+// probing and codec setup cost more than the encode; a batch pays them once. How many
+// files go into a batch follows from their durations: a batch closes once it holds
+// targetSeconds of audio or maxFiles inputs, so 0.5 s prompts batch by the dozen while
+// 8 s clips go a few at a time.
+//
+// Config keys:
+//   microbatch.enabled        default true
+//   microbatch.maxFileSeconds longer inputs are converted on their own (default 10)
+//   microbatch.targetSeconds  audio per batch (default 60)
+//   microbatch.maxFiles       inputs per process, bounds open decoders and memory (default 32)
+public class MicroBatchPlanner {
+    private final double maxFileSeconds;
+    private final double targetSeconds;
+    private final int maxFiles;
+
+    public MicroBatchPlanner(double maxFileSeconds, double targetSeconds, int maxFiles) {
+        this.maxFileSeconds = maxFileSeconds;
+        this.targetSeconds = targetSeconds;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    // Returns null when microbatch.enabled=false
+    public static MicroBatchPlanner fromConfig(AppConfig config) {
+        if (!config.getBoolean("microbatch.enabled", true)) {
+            return null;
+        }
+        return new MicroBatchPlanner(config.getDouble("microbatch.maxFileSeconds", 10),
+                config.getDouble("microbatch.targetSeconds", 60),
+                config.getInt("microbatch.maxFiles", 32));
+    }
+
+    // Every input ends up in exactly one group, in input order within a group; long inputs
+    // and inputs without a batch partner come back as groups of one. Durations should be
+    // probed first, otherwise the size-based guess is used.
+    public List<List<AudioFile>> plan(List<AudioFile> files, ConversionSettings settings) {
+        List<List<AudioFile>> groups = new ArrayList<>();
+        Map<String, List<AudioFile>> open = new LinkedHashMap<>();
+        Map<String, Double> openSeconds = new LinkedHashMap<>();
+        for (AudioFile audioFile : files) {
+            double seconds = MemoryEstimator.estimateDurationSeconds(audioFile);
+            if (seconds > maxFileSeconds) {
+                groups.add(List.of(audioFile));
+                continue;
+            }
+            // Match-source settings can resolve differently per file; only equal arguments share a process
+            String key = ArgumentTemplate.keyOf(settings.resolvedFor(audioFile));
+            List<AudioFile> group = open.computeIfAbsent(key, k -> new ArrayList<>());
+            group.add(audioFile);
+            double total = openSeconds.merge(key, seconds, Double::sum);
+            if (group.size() >= maxFiles || total >= targetSeconds) {
+                groups.add(group);
+                open.remove(key);
+                openSeconds.remove(key);
+            }
+        }
+        groups.addAll(open.values());
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("up to %d files or %.0f s per process, inputs up to %.0f s",
+                maxFiles, targetSeconds, maxFileSeconds);
+    }
+}
@@ -0,0 +1,250 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Encodes go to a fast local staging directory first; this class moves finished
+// outputs to their final location on a small dedicated pool, so ffmpeg never
+// writes to a slow network share and the target never sees half-written files.
+//
+// Several instances may share one staging.dir (the GUI next to a server, two workers on a
+// host). Each works in its own instance-* subdirectory and holds a lock on its owner.lock
+// file for as long as it runs; the OS drops the lock when the process dies, which is how a
+// later instance tells abandoned staging directories from ones still in use.
+public class OutputPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(OutputPublisher.class);
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final String INSTANCE_PREFIX = "instance-";
+    private static final String LOCK_FILE = "owner.lock";
+
+    private final Path rootDir;
+    private final Path stagingDir;
+    private final FileChannel ownerChannel;
+    private final FileLock ownerLock;
+    private final ExecutorService moveExecutor;
+    private final Map<Path, Boolean> sameStoreCache = new ConcurrentHashMap<>();
+    private final FileStore stagingStore;
+
+    public OutputPublisher(Path rootDir, int maxConcurrentMoves) throws IOException {
+        this.rootDir = rootDir;
+        this.stagingDir = rootDir.resolve(INSTANCE_PREFIX + ProcessHandle.current().pid() + "-"
+                + UUID.randomUUID().toString().substring(0, 8));
+        Files.createDirectories(stagingDir);
+        this.stagingStore = Files.getFileStore(stagingDir);
+        this.ownerChannel = FileChannel.open(stagingDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.ownerLock = ownerChannel.lock();
+        ownerChannel.write(ByteBuffer.wrap((ProcessHandle.current().pid() + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8)));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.moveExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentMoves), r -> {
+            Thread thread = new Thread(r, "output-mover-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        removeLeftovers();
+    }
+
+    // Returns null when no staging directory is configured (outputs are written in place)
+    public static OutputPublisher fromConfig(AppConfig config) throws IOException {
+        Path stagingDir = config.getPath("staging.dir");
+        if (stagingDir == null) {
+            return null;
+        }
+        return new OutputPublisher(stagingDir, config.getInt("staging.moveThreads", 2));
+    }
+
+    // Each job gets its own subdirectory so equal file names from different inputs never collide
+    public Path stagingPathFor(Path finalOutput) throws IOException {
+        Path jobDir = Files.createDirectories(stagingDir.resolve(UUID.randomUUID().toString()));
+        return jobDir.resolve(finalOutput.getFileName());
+    }
+
+    // Completes with the target once the output is in place, or exceptionally with the
+    // IOException of the move. Nothing is kept here after that, the caller owns the outcome.
+    public CompletableFuture<Path> publish(AudioFile audioFile, Path staged, Path target) {
+        CompletableFuture<Path> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                move(staged, target);
+                return target;
+            } catch (IOException e) {
+                throw new PublishException(e);
+            }
+        }, moveExecutor);
+        future.whenComplete((published, error) -> {
+            if (error != null) {
+                logger.error("Could not publish output of {}: {}", audioFile.getName(), error.getMessage());
+            }
+        });
+        return future;
+    }
+
+    public void discard(Path staged) {
+        try {
+            Files.deleteIfExists(staged);
+            deleteJobDir(staged);
+        } catch (IOException e) {
+            logger.warn("Could not remove staged file {}: {}", staged, e.getMessage());
+        }
+    }
+
+    // Lets queued moves finish, then gives up the instance directory
+    public void shutdown() {
+        moveExecutor.shutdown();
+        try {
+            if (!moveExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Output moves still running at shutdown, staged files stay in {}", stagingDir);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            ownerLock.release();
+            ownerChannel.close();
+            try (Stream<Path> entries = Files.list(stagingDir)) {
+                if (entries.anyMatch(entry -> !entry.getFileName().toString().equals(LOCK_FILE))) {
+                    return; // unpublished outputs, the next instance's cleanup removes them
+                }
+            }
+            Files.deleteIfExists(stagingDir.resolve(LOCK_FILE));
+            Files.deleteIfExists(stagingDir);
+        } catch (IOException e) {
+            logger.warn("Could not release staging directory {}: {}", stagingDir, e.getMessage());
+        }
+    }
+
+    private void move(Path staged, Path target) throws IOException {
+        Path targetDir = target.toAbsolutePath().getParent();
+        Files.createDirectories(targetDir);
+
+        if (isSameStore(targetDir)) {
+            try {
+                Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                deleteJobDir(staged);
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                sameStoreCache.put(targetDir, false);
+            }
+        }
+
+        // Different filesystem: stream into a hidden partial file, then rename inside the target dir
+        Path partial = targetDir.resolve("." + target.getFileName() + PARTIAL_SUFFIX);
+        try {
+            Files.copy(staged, partial, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        Files.deleteIfExists(staged);
+        deleteJobDir(staged);
+    }
+
+    private boolean isSameStore(Path targetDir) {
+        return sameStoreCache.computeIfAbsent(targetDir, dir -> {
+            try {
+                return Files.getFileStore(dir).equals(stagingStore);
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    private void deleteJobDir(Path staged) throws IOException {
+        Path jobDir = staged.getParent();
+        if (jobDir != null && !jobDir.equals(stagingDir)) {
+            try {
+                Files.deleteIfExists(jobDir);
+            } catch (DirectoryNotEmptyException e) {
+                // another file still in there, leave it
+            }
+        }
+    }
+
+    // Staging directories whose owner is gone hold outputs of jobs that never got published
+    private void removeLeftovers() {
+        try (DirectoryStream<Path> instances = Files.newDirectoryStream(rootDir, INSTANCE_PREFIX + "*")) {
+            for (Path instanceDir : instances) {
+                if (!instanceDir.equals(stagingDir) && Files.isDirectory(instanceDir)) {
+                    removeIfAbandoned(instanceDir);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean staging directory {}: {}", rootDir, e.getMessage());
+        }
+    }
+
+    private void removeIfAbandoned(Path instanceDir) throws IOException {
+        Path lockFile = instanceDir.resolve(LOCK_FILE);
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return; // another publisher in this JVM
+            }
+            if (lock == null) {
+                return; // owner still running
+            }
+            try (Stream<Path> tree = Files.walk(instanceDir)) {
+                for (Path path : tree.sorted(Comparator.reverseOrder()).toList()) {
+                    if (!path.equals(lockFile) && !path.equals(instanceDir)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+            lock.release();
+        } catch (NoSuchFileException e) {
+            return; // an instance still setting up, or already removed
+        }
+        Files.deleteIfExists(lockFile);
+        Files.deleteIfExists(instanceDir);
+        logger.info("Removed abandoned staging directory {}", instanceDir);
+    }
+
+    public Path getStagingDir() {
+        return stagingDir;
+    }
+
+    private static class PublishException extends RuntimeException {
+        PublishException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.ConversionPreset;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.PresetDefinition;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Built-in presets plus house presets from *.json files in the presets directory
+// (presets/ in the app data directory, or presets.dir). A file holds one preset object or
+// an array of them. Presets that do not fit the encoder's capabilities are rejected with a
+// logged reason instead of failing later during conversion.
+public class PresetLibrary {
+    private static final Logger logger = LoggerFactory.getLogger(PresetLibrary.class);
+
+    private final Map<String, PresetDefinition> presets = new LinkedHashMap<>();
+    private final List<String> problems = new ArrayList<>();
+
+    public PresetLibrary(Path presetsDir) {
+        for (ConversionPreset builtIn : ConversionPreset.values()) {
+            PresetDefinition definition = PresetDefinition.fromBuiltIn(builtIn);
+            presets.put(key(definition.getId()), definition);
+        }
+        if (presetsDir != null && Files.isDirectory(presetsDir)) {
+            loadDirectory(presetsDir);
+        }
+    }
+
+    public static PresetLibrary fromConfig(AppConfig config) {
+        Path dir = config.getPath("presets.dir");
+        if (dir == null) {
+            dir = AppDataDirectory.get().resolve("presets");
+        }
+        return new PresetLibrary(dir);
+    }
+
+    public List<PresetDefinition> getPresets() {
+        return Collections.unmodifiableList(new ArrayList<>(presets.values()));
+    }
+
+    // Looks up by id, case-insensitive, so both "PODCAST_STANDARD" and "podcast_standard" work
+    public PresetDefinition find(String id) {
+        return id == null ? null : presets.get(key(id));
+    }
+
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    private void loadDirectory(Path dir) {
+        Gson gson = new Gson();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    JsonElement root = JsonParser.parseReader(reader);
+                    JsonArray entries = root.isJsonArray() ? root.getAsJsonArray() : new JsonArray();
+                    if (root.isJsonObject()) {
+                        entries.add(root);
+                    }
+                    for (JsonElement entry : entries) {
+                        add(file, gson.fromJson(entry, PresetDefinition.class));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    problem(file, "unreadable: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list presets in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void add(Path file, PresetDefinition preset) {
+        List<String> errors = validate(preset);
+        if (!errors.isEmpty()) {
+            String label = preset != null && preset.getId() != null ? preset.getId() : "<no id>";
+            problem(file, label + ": " + String.join("; ", errors));
+            return;
+        }
+        if (presets.containsKey(key(preset.getId()))) {
+            problem(file, preset.getId() + ": duplicate preset id");
+            return;
+        }
+        presets.put(key(preset.getId()), preset);
+    }
+
+    private void problem(Path file, String message) {
+        String text = file.getFileName() + ": " + message;
+        problems.add(text);
+        logger.warn("Rejected preset {}", text);
+    }
+
+    public static List<String> validate(PresetDefinition preset) {
+        List<String> errors = new ArrayList<>();
+        if (preset == null) {
+            errors.add("empty preset");
+            return errors;
+        }
+        if (preset.getId() == null || preset.getId().isBlank()) {
+            errors.add("id is required");
+        }
+        if (preset.getName() == null || preset.getName().isBlank()) {
+            errors.add("name is required");
+        }
+        ConversionSettings.OutputFormat format = preset.getFormat();
+        if (format == null) {
+            errors.add("format must be one of MP3, WAV, M4A, FLAC");
+            return errors;
+        }
+        if (preset.getChannels() == null) {
+            errors.add("channels must be MONO, STEREO or MATCH_SOURCE");
+        }
+        if (preset.getBitrateMode() == null) {
+            errors.add("bitrateMode must be CONSTANT or VARIABLE");
+        } else if (preset.getBitrateMode() == ConversionSettings.BitrateMode.VARIABLE) {
+            if (!format.supportsVBR()) {
+                errors.add(format + " does not support variable bitrate");
+            }
+            if (preset.getVbrQuality() < 0 || preset.getVbrQuality() > 9) {
+                errors.add("vbrQuality must be between 0 and 9");
+            }
+        } else if (format.supportsBitrate() && !format.getBitrateOptions().contains(preset.getBitrate())) {
+            errors.add(format + " bitrate must be one of " + format.getBitrateOptions());
+        }
+        if (!format.supportsBitrate() && preset.getBitrate() > 0) {
+            errors.add(format + " is lossless, bitrate does not apply");
+        }
+        if (preset.getSampleRate() != 0 && !format.getSampleRateOptions().contains(preset.getSampleRate())) {
+            errors.add(format + " sample rate must be 0 (match source) or one of " + format.getSampleRateOptions());
+        }
+        if (preset.getLoudnessTarget() == null) {
+            errors.add("unknown loudnessTarget");
+        }
+        if (preset.getEncodeEffort() == null) {
+            errors.add("encodeEffort must be FAST, BALANCED or MAX");
+        }
+        return errors;
+    }
+
+    private static String key(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+}
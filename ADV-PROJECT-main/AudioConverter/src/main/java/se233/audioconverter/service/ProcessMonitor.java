@@ -0,0 +1,195 @@
+package se233.audioconverter.service;
+
+import se233.audioconverter.model.ResourceUsage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Samples /proc/<pid> of a running ffmpeg child. The JDK reaps a child as soon as it
+// exits, which drops its /proc entry, so a child that lives less than a sample interval
+// would report next to nothing. Commands therefore go through wrap(): a shell runs ffmpeg
+// as its own child and, after waiting for it, prints its own cutime/cstime and io, which
+// the kernel has by then folded in from the reaped child. Those exit totals replace the
+// samples; peak RSS has no such source and stays sampled.
+public class ProcessMonitor implements AutoCloseable {
+    private static final long SAMPLE_INTERVAL_MS = 200;
+    private static final String STAT_PREFIX = "audioconverter-exit-stat: ";
+    private static final String IO_PREFIX = "audioconverter-exit-io: ";
+    // Exit report goes to stderr, stdout may be carrying audio
+    private static final String EXIT_REPORT = "\"$@\"; s=$?\n"
+            + "read -r st < /proc/$$/stat && printf '" + STAT_PREFIX + "%s\\n' \"$st\" >&2\n"
+            + "while read -r l; do printf '" + IO_PREFIX + "%s\\n' \"$l\" >&2; done < /proc/$$/io\n"
+            + "exit $s";
+    private static final Path SHELL = Paths.get("/bin/sh");
+    private static final boolean WRAPPED = isSupported() && Files.isExecutable(SHELL);
+    // USER_HZ, the unit of utime/stime in /proc/<pid>/stat; fixed at 100 by the kernel ABI
+    private static final double CLOCK_TICKS_PER_SECOND = 100.0;
+    private static final ScheduledExecutorService SAMPLER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "process-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Process process;
+    private volatile Path procDir;
+    private final ScheduledFuture<?> task;
+    private volatile long peakRssBytes;
+    // Counters only grow, so the latest successful reading is the total
+    private volatile long userTicks;
+    private volatile long systemTicks;
+    private volatile long readBytes;
+    private volatile long writeBytes;
+    private volatile char state = '?';
+    private volatile boolean exitReported;
+
+    // The process must have been started from a command passed through wrap()
+    public ProcessMonitor(Process process) {
+        this.process = process;
+        this.procDir = WRAPPED ? null : Paths.get("/proc", String.valueOf(process.pid()));
+        this.task = isSupported()
+                ? SAMPLER.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    public static boolean isSupported() {
+        return Files.isDirectory(Paths.get("/proc/self"));
+    }
+
+    // Runs the command under a shell that reports the exit totals; see onLine()
+    public static List<String> wrap(List<String> command) {
+        if (!WRAPPED) {
+            return command;
+        }
+        List<String> wrapped = new ArrayList<>();
+        wrapped.add(SHELL.toString());
+        wrapped.add("-c");
+        wrapped.add(EXIT_REPORT);
+        wrapped.add("sh");
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    private synchronized void sample() {
+        if (exitReported) {
+            return;
+        }
+        if (procDir == null) {
+            // The shell forks ffmpeg right after it starts; nice/ionice/taskset exec in place
+            long child = childOf(process.pid());
+            if (child <= 0) {
+                return;
+            }
+            procDir = Paths.get("/proc", String.valueOf(child));
+        }
+        try {
+            for (String line : Files.readAllLines(procDir.resolve("status"))) {
+                // VmHWM is the kernel's own peak RSS, so short spikes between samples still count
+                if (line.startsWith("VmHWM:")) {
+                    long kb = Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+                    peakRssBytes = Math.max(peakRssBytes, kb * 1024);
+                }
+            }
+
+            // comm may contain spaces, fields are counted from the closing parenthesis;
+            // utime and stime are fields 14 and 15 of the full line
+            String stat = Files.readString(procDir.resolve("stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            state = fields[0].charAt(0);
+            userTicks = Math.max(userTicks, Long.parseLong(fields[11]));
+            systemTicks = Math.max(systemTicks, Long.parseLong(fields[12]));
+
+            // read_bytes/write_bytes are what reached the block layer, not page cache hits
+            for (String line : Files.readAllLines(procDir.resolve("io"))) {
+                if (line.startsWith("read_bytes:")) {
+                    readBytes = Math.max(readBytes, Long.parseLong(line.substring(11).trim()));
+                } else if (line.startsWith("write_bytes:")) {
+                    writeBytes = Math.max(writeBytes, Long.parseLong(line.substring(12).trim()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // process already gone, or io not readable (needs the same uid or ptrace access)
+        }
+    }
+
+    // The task's children file is one read; ProcessHandle.children() scans every /proc entry
+    private static long childOf(long pid) {
+        Path children = Paths.get("/proc", String.valueOf(pid), "task", String.valueOf(pid), "children");
+        try {
+            String pids = Files.readString(children).trim();
+            return pids.isEmpty() ? 0 : Long.parseLong(pids.split(" ")[0]);
+        } catch (IOException | RuntimeException e) {
+            // kernel without CONFIG_PROC_CHILDREN, or the shell already exited
+            return ProcessHandle.of(pid).flatMap(handle -> handle.children().findFirst())
+                    .map(ProcessHandle::pid).orElse(0L);
+        }
+    }
+
+    public long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    // Scheduler state from the last sample: R running, S sleeping, D uninterruptible (I/O), ? unknown
+    public char getState() {
+        return state;
+    }
+
+    public long getCpuTicks() {
+        return userTicks + systemTicks;
+    }
+
+    public ResourceUsage getUsage() {
+        return new ResourceUsage(userTicks / CLOCK_TICKS_PER_SECOND, systemTicks / CLOCK_TICKS_PER_SECOND,
+                peakRssBytes, readBytes, writeBytes);
+    }
+
+    // Feed every line the process writes to stderr; returns true for exit report lines,
+    // which are not ffmpeg output. The report carries the reaped child's totals (the
+    // shell itself only reads two /proc files), so it overrides whatever was sampled.
+    public synchronized boolean onLine(String line) {
+        try {
+            if (line.startsWith(STAT_PREFIX)) {
+                String stat = line.substring(STAT_PREFIX.length());
+                // cutime and cstime, fields 16 and 17 of the full line
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                userTicks = Math.max(userTicks, Long.parseLong(fields[13]));
+                systemTicks = Math.max(systemTicks, Long.parseLong(fields[14]));
+                exitReported = true;
+                return true;
+            }
+            if (line.startsWith(IO_PREFIX)) {
+                String io = line.substring(IO_PREFIX.length());
+                if (io.startsWith("read_bytes:")) {
+                    readBytes = Math.max(readBytes, Long.parseLong(io.substring(11).trim()));
+                } else if (io.startsWith("write_bytes:")) {
+                    writeBytes = Math.max(writeBytes, Long.parseLong(io.substring(12).trim()));
+                }
+                exitReported = true;
+                return true;
+            }
+        } catch (RuntimeException e) {
+            // malformed report, keep the samples
+            return true;
+        }
+        return false;
+    }
+
+    // Stops sampling; call once the output has been read to EOF. Without an exit report
+    // (no /bin/sh, or the report was lost) this last sample usually finds the child
+    // already reaped, so the totals are the previous one, up to an interval short.
+    @Override
+    public void close() {
+        if (task != null) {
+            task.cancel(false);
+            sample();
+        }
+    }
+}
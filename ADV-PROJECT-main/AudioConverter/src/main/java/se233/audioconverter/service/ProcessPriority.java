@@ -0,0 +1,234 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Scheduling for spawned ffmpeg children: nice level, I/O class and CPU affinity.
+// Applied by prefixing the command with nice/ionice/taskset, which exec into ffmpeg,
+// so the pid seen by ProcessMonitor is still ffmpeg's. Linux only; elsewhere, or when
+// a tool is missing, that part is skipped and the command runs unchanged.
+//
+// Config keys (the CLI options of the same name override them):
+//   process.nice        0..19, higher is nicer
+//   process.ionice      none | idle | best-effort[:0-7] | realtime[:0-7]
+//   process.cpus        e.g. 0-3,8 - the cores children may use
+//   process.cpusPerJob  split process.cpus into disjoint groups of this size, one per running job
+public class ProcessPriority {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessPriority.class);
+    private static final Map<String, String> TOOLS = new ConcurrentHashMap<>();
+
+    public static final ProcessPriority NORMAL = new ProcessPriority(0, "none", -1, Collections.emptyList());
+
+    private final int nice;
+    private final String ioClass;
+    private final int ioLevel;
+    private final List<String> cpuGroups;
+    private final ConcurrentLinkedDeque<String> freeGroups = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger sharedLeases = new AtomicInteger();
+
+    private ProcessPriority(int nice, String ioClass, int ioLevel, List<String> cpuGroups) {
+        this.nice = nice;
+        this.ioClass = ioClass;
+        this.ioLevel = ioLevel;
+        this.cpuGroups = cpuGroups;
+        this.freeGroups.addAll(cpuGroups);
+    }
+
+    // Whatever config.properties says; unset keys leave the children at normal priority
+    public static ProcessPriority fromConfig(AppConfig config) {
+        return parse(config.getString("process.nice", null), config.getString("process.ionice", null),
+                config.getString("process.cpus", null), config.getInt("process.cpusPerJob", 0));
+    }
+
+    // Same keys, but unset ones fall back to a setting that keeps interactive work responsive
+    public static ProcessPriority background(AppConfig config) {
+        return parse(config.getString("process.nice", "10"), config.getString("process.ionice", "idle"),
+                config.getString("process.cpus", null), config.getInt("process.cpusPerJob", 0));
+    }
+
+    public static ProcessPriority parse(String nice, String ionice, String cpus, int cpusPerJob) {
+        int niceLevel = nice != null ? Integer.parseInt(nice.trim()) : 0;
+        if (niceLevel < 0 || niceLevel > 19) {
+            // Raising priority needs root and is never what a background batch wants
+            throw new IllegalArgumentException("nice must be between 0 and 19: " + nice);
+        }
+
+        String ioClass = "none";
+        int ioLevel = -1;
+        if (ionice != null) {
+            String[] parts = ionice.trim().toLowerCase().split(":", 2);
+            ioClass = parts[0];
+            if (!List.of("none", "idle", "best-effort", "realtime").contains(ioClass)) {
+                throw new IllegalArgumentException("Unknown ionice class: " + ionice);
+            }
+            if (parts.length == 2) {
+                ioLevel = Integer.parseInt(parts[1]);
+                if (ioLevel < 0 || ioLevel > 7 || ioClass.equals("idle") || ioClass.equals("none")) {
+                    throw new IllegalArgumentException("Invalid ionice level: " + ionice);
+                }
+            }
+        }
+
+        return new ProcessPriority(niceLevel, ioClass, ioLevel, cpuGroups(cpus, cpusPerJob));
+    }
+
+    // "0-3,8" with 2 per job gives [0,1] [2,3]; leftover cores that don't fill a group are unused
+    private static List<String> cpuGroups(String cpus, int cpusPerJob) {
+        if (cpus == null || cpus.isBlank()) {
+            return Collections.emptyList();
+        }
+        TreeSet<Integer> cores = new TreeSet<>();
+        for (String part : cpus.split(",")) {
+            String[] range = part.trim().split("-", 2);
+            int first = Integer.parseInt(range[0].trim());
+            int last = range.length == 2 ? Integer.parseInt(range[1].trim()) : first;
+            if (first < 0 || last < first) {
+                throw new IllegalArgumentException("Invalid CPU list: " + cpus);
+            }
+            for (int core = first; core <= last; core++) {
+                cores.add(core);
+            }
+        }
+
+        List<Integer> ordered = new ArrayList<>(cores);
+        if (cpusPerJob <= 0 || cpusPerJob >= ordered.size()) {
+            return List.of(join(ordered));
+        }
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i + cpusPerJob <= ordered.size(); i += cpusPerJob) {
+            groups.add(join(ordered.subList(i, i + cpusPerJob)));
+        }
+        return groups;
+    }
+
+    private static String join(List<Integer> cores) {
+        StringBuilder sb = new StringBuilder();
+        for (int core : cores) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(core);
+        }
+        return sb.toString();
+    }
+
+    public boolean isNormal() {
+        return nice == 0 && ioClass.equals("none") && cpuGroups.isEmpty();
+    }
+
+    // Takes a CPU group for one child. With more running jobs than groups the extra jobs
+    // share the first group rather than waiting, the scheduler already bounds concurrency.
+    public Lease lease() {
+        if (cpuGroups.isEmpty()) {
+            return new Lease(null, false);
+        }
+        String group = freeGroups.pollFirst();
+        if (group != null) {
+            return new Lease(group, true);
+        }
+        sharedLeases.incrementAndGet();
+        return new Lease(cpuGroups.get(0), false);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("processNice", nice);
+        metrics.put("processIoClass", ioLevel >= 0 ? ioClass + ":" + ioLevel : ioClass);
+        metrics.put("processCpuGroups", cpuGroups);
+        metrics.put("processCpuGroupsBusy", cpuGroups.size() - freeGroups.size());
+        metrics.put("processSharedCpuLeases", sharedLeases.get());
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "nice " + nice + ", io " + (ioLevel >= 0 ? ioClass + ":" + ioLevel : ioClass)
+                + ", cpus " + (cpuGroups.isEmpty() ? "all" : String.join(" | ", cpuGroups));
+    }
+
+    private static String tool(String name) {
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            return "";
+        }
+        return TOOLS.computeIfAbsent(name, n -> {
+            String pathEnv = System.getenv("PATH");
+            if (pathEnv != null) {
+                for (String dir : pathEnv.split(File.pathSeparator)) {
+                    File file = new File(dir, n);
+                    if (file.canExecute()) {
+                        return file.getAbsolutePath();
+                    }
+                }
+            }
+            logger.warn("{} not found, children run without it", n);
+            return "";
+        });
+    }
+
+    public class Lease implements AutoCloseable {
+        private final String cpus;
+        private final boolean owned;
+
+        private Lease(String cpus, boolean owned) {
+            this.cpus = cpus;
+            this.owned = owned;
+        }
+
+        public String getCpus() {
+            return cpus;
+        }
+
+        // Outermost first: taskset pins nice, nice lowers ionice, ionice execs ffmpeg
+        public List<String> wrap(List<String> command) {
+            if (isNormal()) {
+                return command;
+            }
+            List<String> wrapped = new ArrayList<>();
+            if (cpus != null && !tool("taskset").isEmpty()) {
+                wrapped.add(tool("taskset"));
+                wrapped.add("-c");
+                wrapped.add(cpus);
+            }
+            if (nice > 0 && !tool("nice").isEmpty()) {
+                wrapped.add(tool("nice"));
+                wrapped.add("-n");
+                wrapped.add(String.valueOf(nice));
+            }
+            if (!ioClass.equals("none") && !tool("ionice").isEmpty()) {
+                wrapped.add(tool("ionice"));
+                wrapped.add("-c");
+                wrapped.add(switch (ioClass) {
+                    case "realtime" -> "1";
+                    case "best-effort" -> "2";
+                    default -> "3";
+                });
+                if (ioLevel >= 0) {
+                    wrapped.add("-n");
+                    wrapped.add(String.valueOf(ioLevel));
+                }
+            }
+            wrapped.addAll(command);
+            return wrapped;
+        }
+
+        @Override
+        public void close() {
+            if (owned) {
+                freeGroups.addLast(cpus);
+            } else if (cpus != null) {
+                sharedLeases.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.controller.AudioConversionTask;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.QueueJob;
+import se233.audioconverter.model.QueueJobResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Pulls jobs from a SharedJobQueue and runs them with AudioConversionTask.
+// Several of these, on any number of hosts, can share one queue directory.
+public class QueueWorker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(QueueWorker.class);
+
+    private final SharedJobQueue queue;
+    private final FFmpegService ffmpegService;
+    private final int slots;
+    private final long pollMillis;
+    private final ExecutorService workers;
+    private final Semaphore freeSlots;
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+    // Jobs whose lease another node took; their threads are interrupted and write no result
+    private final Set<String> lost = ConcurrentHashMap.newKeySet();
+    private final Map<String, Thread> runningOn = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "queue-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    public QueueWorker(SharedJobQueue queue, FFmpegService ffmpegService, int slots, long pollMillis) {
+        this.queue = queue;
+        this.ffmpegService = ffmpegService;
+        this.slots = slots;
+        this.pollMillis = pollMillis;
+        this.workers = Executors.newFixedThreadPool(slots);
+        this.freeSlots = new Semaphore(slots);
+    }
+
+    public void run() throws InterruptedException {
+        // Heartbeat well inside the timeout so a slow NFS round trip doesn't lose a lease
+        long interval = Math.max(1000, queue.getLeaseTimeoutMillis() / 4);
+        heartbeats.scheduleAtFixedRate(() -> held.forEach(this::heartbeat),
+                interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Worker {} polling with {} slots", queue.getNodeId(), slots);
+
+        while (running) {
+            boolean claimed = false;
+            try {
+                for (String id : queue.listOpenJobs()) {
+                    if (!running || !freeSlots.tryAcquire()) {
+                        break;
+                    }
+                    QueueJob job = queue.tryClaim(id);
+                    if (job == null) {
+                        freeSlots.release();
+                        continue;
+                    }
+                    claimed = true;
+                    held.add(id);
+                    workers.submit(() -> execute(job));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read queue: {}", e.getMessage());
+            }
+            if (!claimed) {
+                Thread.sleep(pollMillis);
+            }
+        }
+    }
+
+    private void heartbeat(String id) {
+        if (lost.contains(id) || queue.heartbeat(id)) {
+            return;
+        }
+        lost.add(id);
+        // Stops waits for ffmpeg and the publisher; the job is another node's now. Atomic with
+        // the removal in execute(), so the interrupt cannot land on the thread's next job.
+        runningOn.computeIfPresent(id, (key, thread) -> {
+            thread.interrupt();
+            return thread;
+        });
+    }
+
+    private void execute(QueueJob job) {
+        runningOn.put(job.getId(), Thread.currentThread());
+        long startedAt = System.currentTimeMillis();
+        AudioFile audioFile = new AudioFile(job.getInputPath());
+        QueueJobResult result;
+        try {
+            Files.createDirectories(Paths.get(job.getOutputDir()));
+            AudioConversionTask task = new AudioConversionTask(audioFile, job.getSettings(),
+                    job.getOutputDir(), ffmpegService);
+            task.call();
+            // The result is what the submitter trusts, so it is written only once the output landed
+            task.awaitPublished();
+            result = new QueueJobResult(job.getId(), AudioFile.ConversionStatus.COMPLETED,
+                    queue.getNodeId(), null, startedAt, System.currentTimeMillis());
+        } catch (Exception e) {
+            result = new QueueJobResult(job.getId(), AudioFile.ConversionStatus.FAILED,
+                    queue.getNodeId(), e.getMessage(), startedAt, System.currentTimeMillis());
+        }
+
+        try {
+            if (lost.contains(job.getId()) || !queue.complete(job.getId(), result)) {
+                logger.warn("Job {} was taken over by another node, result not recorded ({})",
+                        job.getId(), audioFile.getName());
+            } else {
+                logger.info("Job {} {} ({})", job.getId(), result.getStatus(), audioFile.getName());
+            }
+        } catch (IOException e) {
+            // Lease will expire and another node retries the job
+            logger.error("Could not record result of job {}: {}", job.getId(), e.getMessage());
+        } finally {
+            runningOn.remove(job.getId());
+            held.remove(job.getId());
+            lost.remove(job.getId());
+            // Clears an interrupt that arrived after the job had finished its waits
+            Thread.interrupted();
+            freeSlots.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        heartbeats.shutdownNow();
+        workers.shutdown();
+    }
+}
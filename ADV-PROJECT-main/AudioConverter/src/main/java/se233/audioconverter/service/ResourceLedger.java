@@ -0,0 +1,110 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.ResourceUsage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Resource usage of ffmpeg children grouped by "preset / format". FFmpegService keeps one
+// for its whole lifetime (exposed in GET /metrics); batch summaries build their own from
+// the files of the batch. With a log file every job is also appended as one JSON line,
+// which is what capacity planning and chargeback exports read.
+public class ResourceLedger {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceLedger.class);
+    private static final String FILE_NAME = "resource-usage.jsonl";
+
+    private final Map<String, ResourceUsage> totals = new TreeMap<>();
+    private final Gson gson = new Gson();
+    private Path logFile;
+
+    public ResourceLedger() {
+        this(null);
+    }
+
+    public ResourceLedger(Path logFile) {
+        this.logFile = logFile;
+    }
+
+    // accounting.log=false keeps the totals in memory only
+    public static ResourceLedger fromConfig(AppConfig config) {
+        if (!config.getBoolean("accounting.log", true)) {
+            return new ResourceLedger();
+        }
+        try {
+            return new ResourceLedger(AppDataDirectory.resolve(FILE_NAME));
+        } catch (IOException e) {
+            logger.warn("Resource usage log disabled: {}", e.getMessage());
+            return new ResourceLedger();
+        }
+    }
+
+    public static String presetOf(ConversionSettings settings) {
+        String preset = settings.getPresetId();
+        return preset == null || preset.equals("NONE") ? "custom" : preset;
+    }
+
+    public void record(AudioFile audioFile, ConversionSettings settings, ResourceUsage usage, boolean success) {
+        record(presetOf(settings), settings.getOutputFormat().name(), audioFile, usage, success);
+    }
+
+    // Failed jobs are recorded too, the resources were spent either way. Helper processes
+    // (loudness analysis, waveform decoding) use their task name as the preset.
+    public void record(String preset, String format, AudioFile audioFile, ResourceUsage usage, boolean success) {
+        synchronized (this) {
+            totals.computeIfAbsent(preset + " / " + format, k -> new ResourceUsage()).add(usage);
+            if (logFile != null) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("time", System.currentTimeMillis());
+                line.put("file", audioFile.getFilePath());
+                line.put("preset", preset);
+                line.put("format", format);
+                line.put("success", success);
+                line.put("usage", usage);
+                try {
+                    Files.writeString(logFile, gson.toJson(line) + "\n", StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    logger.warn("Resource usage log disabled: {}", e.getMessage());
+                    logFile = null;
+                }
+            }
+        }
+    }
+
+    public synchronized Map<String, ResourceUsage> getTotals() {
+        Map<String, ResourceUsage> copy = new TreeMap<>();
+        totals.forEach((key, usage) -> copy.put(key, usage.copy()));
+        return copy;
+    }
+
+    public synchronized ResourceUsage getTotal() {
+        ResourceUsage total = new ResourceUsage();
+        totals.values().forEach(total::add);
+        return total;
+    }
+
+    public List<String> summaryLines() {
+        List<String> lines = new ArrayList<>();
+        getTotals().forEach((key, usage) -> lines.add(key + ": " + usage));
+        return lines;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("resourceUsage", getTotals());
+        return metrics;
+    }
+}
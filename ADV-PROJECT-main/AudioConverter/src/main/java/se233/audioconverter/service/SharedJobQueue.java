@@ -0,0 +1,244 @@
+package se233.audioconverter.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.model.QueueJob;
+import se233.audioconverter.model.QueueJobResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Job queue on shared storage, no broker needed. Layout of the queue directory:
+//   jobs/<id>.job      open job description (written once by the submitter)
+//   done/<id>.result   outcome, written by the worker that ran the job
+//   done/<id>.job      the job description, moved here after its result is written
+//   leases/<id>.lease  claim held by a worker; its mtime is the heartbeat
+// Finished jobs leave jobs/, so a poll lists only open work and never stats a result file,
+// however many jobs the queue has run.
+// A lease is claimed with an exclusive create. A lease whose heartbeat is older than
+// the timeout belongs to a dead node: it is renamed away (only one node can win the
+// rename) and the job becomes claimable again. A node that was only slow finds out at its
+// next heartbeat or at complete(), and neither writes a result nor touches the new lease.
+public class SharedJobQueue {
+    private static final Logger logger = LoggerFactory.getLogger(SharedJobQueue.class);
+    private static final String JOB_SUFFIX = ".job";
+    private static final String RESULT_SUFFIX = ".result";
+    private static final String LEASE_SUFFIX = ".lease";
+
+    private final Path jobsDir;
+    private final Path doneDir;
+    private final Path leasesDir;
+    private final String nodeId;
+    private final long leaseTimeoutMillis;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public SharedJobQueue(Path queueDir, String nodeId, long leaseTimeoutMillis) throws IOException {
+        this.jobsDir = Files.createDirectories(queueDir.resolve("jobs"));
+        this.doneDir = Files.createDirectories(queueDir.resolve("done"));
+        this.leasesDir = Files.createDirectories(queueDir.resolve("leases"));
+        this.nodeId = nodeId;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        archiveLegacyResults();
+    }
+
+    public String submit(String inputPath, String outputDir, ConversionSettings settings) throws IOException {
+        String id = System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        QueueJob job = new QueueJob(id, inputPath, outputDir, settings, System.currentTimeMillis());
+        writeAtomically(jobsDir.resolve(id + JOB_SUFFIX), gson.toJson(job));
+        return id;
+    }
+
+    // Open job ids, oldest first (ids start with the submit time)
+    public List<String> listOpenJobs() throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(jobsDir, "*" + JOB_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                ids.add(name.substring(0, name.length() - JOB_SUFFIX.length()));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    // Returns the job if this node now holds its lease, null if someone else does
+    public QueueJob tryClaim(String id) throws IOException {
+        Path lease = leasesDir.resolve(id + LEASE_SUFFIX);
+        if (Files.exists(lease) && !breakIfExpired(lease)) {
+            return null;
+        }
+        try {
+            Files.writeString(lease, nodeId, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        }
+
+        // The job may have finished between listing and claiming, or its worker died
+        // between writing the result and archiving the job
+        if (Files.exists(doneDir.resolve(id + RESULT_SUFFIX))) {
+            archive(id);
+            release(id);
+            return null;
+        }
+        try {
+            return gson.fromJson(Files.readString(jobsDir.resolve(id + JOB_SUFFIX)), QueueJob.class);
+        } catch (NoSuchFileException e) {
+            release(id);
+            return null;
+        }
+    }
+
+    // Returns false once the lease was broken or taken over; the job is someone else's then.
+    // A read error is not proof of that, the lease is kept and the next beat tries again.
+    public boolean heartbeat(String id) {
+        Path lease = leasesDir.resolve(id + LEASE_SUFFIX);
+        try {
+            if (!nodeId.equals(Files.readString(lease).trim())) {
+                logger.warn("Lease for job {} was taken over by another node", id);
+                return false;
+            }
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            logger.warn("Lease for job {} was broken by another node", id);
+            return false;
+        } catch (IOException e) {
+            logger.warn("Could not renew lease for job {}: {}", id, e.getMessage());
+            return true;
+        }
+    }
+
+    public boolean holds(String id) {
+        try {
+            return nodeId.equals(Files.readString(leasesDir.resolve(id + LEASE_SUFFIX)).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Writes the result only while this node holds the lease; returns false, writing nothing,
+    // when the job was taken over and the new holder's result is the one that counts
+    public boolean complete(String id, QueueJobResult result) throws IOException {
+        if (!holds(id)) {
+            return false;
+        }
+        writeAtomically(doneDir.resolve(id + RESULT_SUFFIX), gson.toJson(result));
+        archive(id);
+        release(id);
+        return true;
+    }
+
+    public QueueJobResult getResult(String id) throws IOException {
+        Path file = doneDir.resolve(id + RESULT_SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return gson.fromJson(Files.readString(file), QueueJobResult.class);
+    }
+
+    private void archive(String id) throws IOException {
+        try {
+            Files.move(jobsDir.resolve(id + JOB_SUFFIX), doneDir.resolve(id + JOB_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            // archived by another node
+        }
+    }
+
+    // Queues written before done/ existed kept results next to the jobs; move those out once
+    private void archiveLegacyResults() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(jobsDir, "*" + RESULT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.length() - RESULT_SUFFIX.length());
+                try {
+                    Files.move(file, doneDir.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                archive(id);
+            }
+        }
+    }
+
+    // Only a lease this node holds is deleted, a taken-over one belongs to its new holder
+    public void release(String id) {
+        try {
+            if (holds(id)) {
+                Files.deleteIfExists(leasesDir.resolve(id + LEASE_SUFFIX));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not release lease for job {}: {}", id, e.getMessage());
+        }
+    }
+
+    private boolean breakIfExpired(Path lease) throws IOException {
+        long age;
+        try {
+            age = System.currentTimeMillis() - Files.getLastModifiedTime(lease).toMillis();
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+        if (age < leaseTimeoutMillis) {
+            return false;
+        }
+        Path broken = lease.resolveSibling(lease.getFileName() + ".expired-" + nodeId);
+        try {
+            Files.move(lease, broken, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // another node broke it first; the create in tryClaim decides who gets the job
+            return true;
+        }
+
+        // Between our age check and the rename another node may have broken the old lease
+        // and created a fresh one, which we just moved away. Give it back in that case.
+        long brokenAge = System.currentTimeMillis() - Files.getLastModifiedTime(broken).toMillis();
+        if (brokenAge < leaseTimeoutMillis) {
+            try {
+                Files.move(broken, lease, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(broken);
+            }
+            return false;
+        }
+
+        logger.info("Reclaimed expired lease {} ({} ms without heartbeat)", lease.getFileName(), age);
+        Files.deleteIfExists(broken);
+        return true;
+    }
+
+    private void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = target.resolveSibling("." + target.getFileName() + "." + nodeId + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getLeaseTimeoutMillis() {
+        return leaseTimeoutMillis;
+    }
+}
@@ -0,0 +1,204 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Kills ffmpeg children that stop making progress. Progress is out_time advancing or
+// total_size growing in the -progress output; a job with neither for longer than its
+// window is killed together with its descendants, which closes the output pipe and
+// unblocks the worker reading it. NFS waits are killable, so a dead mount does not
+// keep the process alive.
+//
+// Config keys:
+//   watchdog.enabled         default true
+//   watchdog.minStallSeconds shortest window, also covers startup (default 60)
+//   watchdog.stallFactor     window grows by this fraction of the input duration (default 0.1)
+//   watchdog.maxStallSeconds longest window (default 900)
+//   watchdog.retries         attempts after a retryable stall (default 1)
+public class StallWatchdog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StallWatchdog.class);
+    private static final long CHECK_INTERVAL_MS = 1000;
+
+    // What the child was doing when it was killed decides whether a retry can help
+    public enum StallKind {
+        IO_WAIT("blocked in uninterruptible I/O", true),
+        SLEEPING("waiting without progress", true),
+        SPINNING("busy without progress, likely a pathological input", false);
+
+        private final String description;
+        private final boolean retryable;
+
+        StallKind(String description, boolean retryable) {
+            this.description = description;
+            this.retryable = retryable;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+    }
+
+    private final long minStallMillis;
+    private final double stallFactor;
+    private final long maxStallMillis;
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    private final Map<StallKind, LongAdder> stalls = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    public StallWatchdog(long minStallMillis, double stallFactor, long maxStallMillis) {
+        this.minStallMillis = minStallMillis;
+        this.stallFactor = stallFactor;
+        this.maxStallMillis = Math.max(minStallMillis, maxStallMillis);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stall-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns null when watchdog.enabled=false
+    public static StallWatchdog fromConfig(AppConfig config) {
+        if (!config.getBoolean("watchdog.enabled", true)) {
+            return null;
+        }
+        return new StallWatchdog(config.getLong("watchdog.minStallSeconds", 60) * 1000,
+                config.getDouble("watchdog.stallFactor", 0.1),
+                config.getLong("watchdog.maxStallSeconds", 900) * 1000);
+    }
+
+    public long windowMillis(double durationSeconds) {
+        return Math.min(maxStallMillis, Math.max(minStallMillis, Math.round(durationSeconds * stallFactor * 1000)));
+    }
+
+    public Watch watch(Process process, ProcessMonitor monitor, double durationSeconds) {
+        Watch watch = new Watch(process, monitor, windowMillis(durationSeconds));
+        watches.add(watch);
+        return watch;
+    }
+
+    private void check() {
+        long now = System.currentTimeMillis();
+        for (Watch watch : watches) {
+            if (now - watch.lastProgressMillis > watch.windowMillis) {
+                watch.kill();
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("watchedJobs", watches.size());
+        Map<String, Long> byKind = new LinkedHashMap<>();
+        for (StallKind kind : StallKind.values()) {
+            LongAdder count = stalls.get(kind);
+            byKind.put(kind.name(), count != null ? count.sum() : 0);
+        }
+        metrics.put("stalledJobs", byKind);
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    public class Watch implements AutoCloseable {
+        private final Process process;
+        private final ProcessMonitor monitor;
+        private final long windowMillis;
+        private volatile long lastProgressMillis = System.currentTimeMillis();
+        private volatile long ticksAtProgress;
+        private volatile StallKind stall;
+        private long outTimeMicros = -1;
+        private long totalSize = -1;
+
+        private Watch(Process process, ProcessMonitor monitor, long windowMillis) {
+            this.process = process;
+            this.monitor = monitor;
+            this.windowMillis = windowMillis;
+            this.ticksAtProgress = monitor.getCpuTicks();
+        }
+
+        private void progressed() {
+            lastProgressMillis = System.currentTimeMillis();
+            ticksAtProgress = monitor.getCpuTicks();
+        }
+
+        // Feeds one output line; returns true when it was a -progress key=value line,
+        // which the caller leaves out of the error output
+        public boolean onLine(String line) {
+            int eq = line.indexOf('=');
+            if (eq <= 0 || line.indexOf(' ') >= 0) {
+                return false;
+            }
+            String key = line.substring(0, eq);
+            String value = line.substring(eq + 1);
+            try {
+                if (key.equals("out_time_us")) {
+                    long micros = Long.parseLong(value);
+                    if (micros > outTimeMicros) {
+                        outTimeMicros = micros;
+                        progressed();
+                    }
+                } else if (key.equals("total_size")) {
+                    long size = Long.parseLong(value);
+                    if (size > totalSize) {
+                        totalSize = size;
+                        progressed();
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // N/A before the first packet
+            }
+            return true;
+        }
+
+        private synchronized void kill() {
+            if (stall != null) {
+                return;
+            }
+            // CPU ticks are 1/100 s; burning more than half a core since the last progress is spinning
+            double busy = (monitor.getCpuTicks() - ticksAtProgress) / 100.0
+                    / Math.max(1, (System.currentTimeMillis() - lastProgressMillis) / 1000.0);
+            stall = monitor.getState() == 'D' ? StallKind.IO_WAIT
+                    : busy > 0.5 ? StallKind.SPINNING
+                    : StallKind.SLEEPING;
+            stalls.computeIfAbsent(stall, k -> new LongAdder()).increment();
+            logger.warn("ffmpeg pid {} made no progress for {} s ({}), killing it",
+                    process.pid(), windowMillis / 1000, stall.getDescription());
+
+            // Children first so nothing is reparented and left holding the pipe
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            watches.remove(this);
+        }
+
+        // Null unless the watchdog killed the process
+        public StallKind getStall() {
+            return stall;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        @Override
+        public void close() {
+            watches.remove(this);
+        }
+    }
+}
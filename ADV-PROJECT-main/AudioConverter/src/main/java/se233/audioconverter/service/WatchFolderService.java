@@ -0,0 +1,398 @@
+package se233.audioconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.controller.AudioConversionTask;
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+// Converts audio files dropped into an inbox tree. A file is only picked up after its
+// size and modification time have stopped changing for the settle period. Queued and
+// finished files are journaled, so a restart resumes the queue and only files that were
+// never converted are picked up by the one-time startup scan. A file is journaled as done
+// only once its output is at the destination, not when the encode into staging ends.
+// Conversions go through the DeviceAwareScheduler like the server's, so per-device I/O
+// limits and the memory budget apply to watch mode too.
+public class WatchFolderService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WatchFolderService.class);
+    private static final long TICK_MS = 500;
+    // The journal is rewritten once it holds this many lines and twice the live entries
+    private static final int COMPACT_MIN_LINES = 10_000;
+
+    private static class Candidate {
+        long size;
+        long modified;
+        long stableSince;
+
+        Candidate(long size, long modified, long now) {
+            this.size = size;
+            this.modified = modified;
+            this.stableSince = now;
+        }
+    }
+
+    private final Path inbox;
+    private final Path outputDir;
+    private final ConversionSettings settings;
+    private final FFmpegService ffmpegService;
+    private final DeviceAwareScheduler scheduler;
+    private final Path journalFile;
+    private final long settleMillis;
+
+    private final Map<Path, Candidate> candidates = new ConcurrentHashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "watch-settle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService;
+    private BufferedWriter journal;
+    private int journalLines;
+    private Thread watchThread;
+
+    public WatchFolderService(Path inbox, Path outputDir, ConversionSettings settings,
+                              FFmpegService ffmpegService, DeviceAwareScheduler scheduler,
+                              Path journalFile, long settleMillis) {
+        this.inbox = inbox.toAbsolutePath();
+        this.outputDir = outputDir.toAbsolutePath();
+        this.settings = settings;
+        this.ffmpegService = ffmpegService;
+        this.scheduler = scheduler;
+        this.journalFile = journalFile;
+        this.settleMillis = settleMillis;
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(outputDir);
+        Set<Path> queued = replayJournal();
+
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(inbox);
+
+        // Files queued before a shutdown, then anything that arrived while we were down
+        long now = System.currentTimeMillis();
+        for (Path path : queued) {
+            offer(path, now);
+        }
+        scanTree(inbox);
+
+        watchThread = new Thread(this::watchLoop, "watch-events");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        ticker.scheduleWithFixedDelay(this::settleTick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+        logger.info("Watching {} -> {} ({} queued, {} already converted)",
+                inbox, outputDir, candidates.size(), completed.size());
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir;
+            synchronized (watchedDirs) {
+                dir = watchedDirs.get(key);
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    // Events were dropped, fall back to one rescan
+                    scanTree(inbox);
+                    continue;
+                }
+                if (dir == null) {
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (Files.isDirectory(child)) {
+                    if (event.kind() == ENTRY_CREATE) {
+                        registerTree(child);
+                        scanTree(child);
+                    }
+                } else {
+                    offer(child, System.currentTimeMillis());
+                }
+            }
+
+            if (!key.reset()) {
+                synchronized (watchedDirs) {
+                    watchedDirs.remove(key);
+                }
+            }
+        }
+    }
+
+    private void offer(Path path, long now) {
+        if (!isConvertible(path) || inFlight.contains(path)) {
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            Candidate existing = candidates.get(path);
+            if (existing == null) {
+                if (completed.contains(new AudioFile(path.toString()).getIdentityKey())) {
+                    return;
+                }
+                candidates.put(path, new Candidate(attrs.size(), attrs.lastModifiedTime().toMillis(), now));
+                appendJournal("Q", path.toString());
+            }
+        } catch (IOException e) {
+            // deleted before we looked at it
+        }
+    }
+
+    // Debounce: a file is ready once it has stopped growing for settleMillis
+    private void settleTick() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Candidate> entry : candidates.entrySet()) {
+            Path path = entry.getKey();
+            Candidate candidate = entry.getValue();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                long modified = attrs.lastModifiedTime().toMillis();
+                if (attrs.size() != candidate.size || modified != candidate.modified) {
+                    candidate.size = attrs.size();
+                    candidate.modified = modified;
+                    candidate.stableSince = now;
+                } else if (now - candidate.stableSince >= settleMillis && attrs.size() > 0) {
+                    inFlight.add(path);
+                    candidates.remove(path);
+                    submit(path);
+                }
+            } catch (IOException e) {
+                candidates.remove(path);
+                appendJournal("X", path.toString());
+            }
+        }
+        compactIfNeeded();
+    }
+
+    private void submit(Path path) {
+        AudioFile audioFile = new AudioFile(path.toString());
+        // Mirror the inbox folder structure in the output directory
+        Path relativeDir = inbox.relativize(path.toAbsolutePath()).getParent();
+        Path target = relativeDir == null ? outputDir : outputDir.resolve(relativeDir);
+        try {
+            Files.createDirectories(target);
+        } catch (IOException e) {
+            finished(path, audioFile, e);
+            return;
+        }
+        AudioConversionTask task = new AudioConversionTask(audioFile, settings, target.toString(), ffmpegService);
+        scheduler.submit(task, path, ffmpegService.getEncoderOutputDir(target.toString()),
+                        () -> ffmpegService.getMemoryEstimator().estimate(audioFile, settings))
+                // The scheduler slot is free once the encode ends; the move is waited for here
+                .thenCompose(ignored -> task.getPublished())
+                .whenComplete((output, error) -> finished(path, audioFile, error));
+    }
+
+    private void finished(Path path, AudioFile audioFile, Throwable error) {
+        if (error == null) {
+            completed.add(audioFile.getIdentityKey());
+            appendJournal("D", audioFile.getIdentityKey());
+            logger.info("Converted {}", path);
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            logger.error("Failed to convert {}: {}", path, cause.getMessage());
+            appendJournal("X", path.toString());
+        }
+        inFlight.remove(path);
+    }
+
+    private boolean isConvertible(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".")) {
+            return false;
+        }
+        int lastDot = name.lastIndexOf('.');
+        return lastDot > 0 && ffmpegService.isFormatSupported(name.substring(lastDot + 1));
+    }
+
+    private void registerTree(Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+                    synchronized (watchedDirs) {
+                        watchedDirs.put(key, dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not watch {}: {}", root, e.getMessage());
+        }
+    }
+
+    private void scanTree(Path root) {
+        long now = System.currentTimeMillis();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    offer(file, now);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not scan {}: {}", root, e.getMessage());
+        }
+    }
+
+    // Journal lines: Q <path> (queued), X <path> (dropped/failed), D <identity> (converted)
+    private Set<Path> replayJournal() throws IOException {
+        Set<Path> queued = new LinkedHashSet<>();
+        if (Files.exists(journalFile)) {
+            for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+                if (line.length() < 3) {
+                    continue;
+                }
+                String value = line.substring(2);
+                switch (line.charAt(0)) {
+                    case 'Q' -> queued.add(Paths.get(value));
+                    case 'X' -> queued.remove(Paths.get(value));
+                    case 'D' -> completed.add(value);
+                    default -> { }
+                }
+            }
+        }
+        queued.removeIf(path -> !Files.exists(path));
+        // The queued files are offered again right after, which journals them anew
+        compactJournal(Set.of());
+        return queued;
+    }
+
+    private void compactIfNeeded() {
+        int live;
+        synchronized (this) {
+            live = completed.size() + candidates.size() + inFlight.size();
+            if (journalLines < COMPACT_MIN_LINES || journalLines < 2 * live) {
+                return;
+            }
+        }
+        Set<Path> open = new LinkedHashSet<>(inFlight);
+        open.addAll(candidates.keySet());
+        try {
+            compactJournal(open);
+        } catch (IOException e) {
+            logger.warn("Could not compact watch journal: {}", e.getMessage());
+        }
+    }
+
+    // Rewrites the journal as the open files plus the completions of files that still exist
+    private synchronized void compactJournal(Set<Path> open) throws IOException {
+        Set<String> existingKeys = new HashSet<>();
+        for (String key : completed) {
+            String path = pathOfIdentityKey(key);
+            if (path != null && Files.exists(Paths.get(path))) {
+                existingKeys.add(key);
+            }
+        }
+        completed.retainAll(existingKeys);
+
+        if (journal != null) {
+            journal.close();
+        }
+        Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        int lines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Path path : open) {
+                writer.write("Q " + path);
+                writer.newLine();
+                lines++;
+            }
+            for (String key : completed) {
+                writer.write("D " + key);
+                writer.newLine();
+                lines++;
+            }
+        }
+        Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING);
+
+        journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        journalLines = lines;
+    }
+
+    // Identity keys are path|size|mtime; the path itself may contain '|'
+    private static String pathOfIdentityKey(String key) {
+        int modified = key.lastIndexOf('|');
+        int size = modified > 0 ? key.lastIndexOf('|', modified - 1) : -1;
+        return size > 0 ? key.substring(0, size) : null;
+    }
+
+    private synchronized void appendJournal(String type, String value) {
+        try {
+            journal.write(type + " " + value);
+            journal.newLine();
+            journal.flush();
+            journalLines++;
+        } catch (IOException e) {
+            logger.warn("Could not write watch journal: {}", e.getMessage());
+        }
+    }
+
+    public int getPendingCount() {
+        return candidates.size() + inFlight.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ticker.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    // One journal per inbox, so several watchers can share the app data directory
+    public static String journalFileName(Path inbox) {
+        return "watch-" + Integer.toHexString(inbox.toAbsolutePath().toString().hashCode()) + ".journal";
+    }
+}
@@ -0,0 +1,135 @@
+package se233.audioconverter.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se233.audioconverter.analysis.PeakPyramidBuilder;
+import se233.audioconverter.analysis.PcmAnalyzer;
+import se233.audioconverter.analysis.WavPeakScanner;
+import se233.audioconverter.analysis.WaveformPeaks;
+import se233.audioconverter.exception.AudioConversionException;
+import se233.audioconverter.model.AudioFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Generates waveform peak pyramids in the background and keeps them in an on-disk cache
+// (waveforms/ in the app data directory) keyed by input identity. Only a bounded number of
+// mapped pyramids is kept open; everything else is re-mapped from disk on demand.
+public class WaveformService {
+    private static final Logger logger = LoggerFactory.getLogger(WaveformService.class);
+    private static final String CACHE_DIR = "waveforms";
+
+    private final FFmpegService ffmpegService;
+    private final Path cacheDir;
+    private final Cache<String, WaveformPeaks> loaded;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public WaveformService(FFmpegService ffmpegService, AppConfig config) throws IOException {
+        this.ffmpegService = ffmpegService;
+        this.cacheDir = AppDataDirectory.resolve(CACHE_DIR);
+        Files.createDirectories(cacheDir);
+        this.loaded = CacheBuilder.newBuilder()
+                .maximumSize(config.getInt("waveform.openFiles", 512))
+                .build();
+
+        // Newest request first: rows the user just scrolled to are drawn before ones long gone
+        int threads = Math.max(1, config.getInt("waveform.threads", 2));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingDeque<>() {
+                    @Override
+                    public boolean offer(Runnable runnable) {
+                        return offerFirst(runnable);
+                    }
+                }, r -> {
+                    Thread t = new Thread(r, "waveform");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Returns peaks already in memory, or null
+    public WaveformPeaks getIfLoaded(AudioFile audioFile) {
+        return loaded.getIfPresent(audioFile.getIdentityKey());
+    }
+
+    // Loads from the disk cache or generates; the callback runs on a background thread
+    public void request(AudioFile audioFile, Consumer<WaveformPeaks> onReady) {
+        String key = audioFile.getIdentityKey();
+        if (!pending.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                WaveformPeaks peaks = load(audioFile);
+                loaded.put(key, peaks);
+                onReady.accept(peaks);
+            } catch (IOException | AudioConversionException e) {
+                logger.debug("No waveform for {}: {}", audioFile.getName(), e.getMessage());
+            } finally {
+                pending.remove(key);
+            }
+        });
+    }
+
+    public WaveformPeaks load(AudioFile audioFile) throws IOException, AudioConversionException {
+        Path cacheFile = cacheFileFor(audioFile);
+        if (Files.exists(cacheFile)) {
+            try {
+                return WaveformPeaks.map(cacheFile);
+            } catch (IOException e) {
+                logger.warn("Discarding unreadable waveform cache {}: {}", cacheFile, e.getMessage());
+                Files.deleteIfExists(cacheFile);
+            }
+        }
+
+        PeakPyramidBuilder builder = null;
+        if (PcmAnalyzer.canAnalyze(audioFile)) {
+            try {
+                builder = WavPeakScanner.scan(Paths.get(audioFile.getFilePath()));
+            } catch (IOException e) {
+                // Compressed or unusual WAV encodings go through ffmpeg
+                builder = null;
+            }
+        }
+        if (builder == null) {
+            builder = ffmpegService.decodePeaks(audioFile);
+        }
+
+        Path temp = Files.createTempFile(cacheDir, "peaks", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                builder.writeTo(out);
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return WaveformPeaks.map(cacheFile);
+    }
+
+    private Path cacheFileFor(AudioFile audioFile) {
+        String name = Hashing.murmur3_128()
+                .hashString(audioFile.getIdentityKey(), StandardCharsets.UTF_8).toString();
+        return cacheDir.resolve(name + ".peaks");
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,172 @@
+package se233.audioconverter.benchmark;
+
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.service.DeviceResolver;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// End-to-end I/O benchmark for DeviceAwareScheduler. Each "job" streams an input file
+// and writes an equally sized output, like a WAV->WAV conversion without the codec.
+//
+// Point it at HDD-like storage, e.g. a loop device throttled through cgroup v2:
+//   truncate -s 4G /tmp/disk.img && mkfs.ext4 -q /tmp/disk.img
+//   mount -o loop /tmp/disk.img /mnt/slow
+//   echo "$(lsblk -no MAJ:MIN $(losetup -j /tmp/disk.img | cut -d: -f1)) rbps=60000000 wbps=60000000 riops=150 wiops=150" \
+//       > /sys/fs/cgroup/<group>/io.max
+//   (run the benchmark inside <group>)
+//
+// Inputs are written by a separate prepare step and synced, and every run starts by evicting
+// them from the page cache (dd iflag=nocache, i.e. fadvise DONTNEED, falling back to
+// /proc/sys/vm/drop_caches), so reads hit the device rather than memory. Outputs are fsynced
+// before a job counts as done. If eviction fails the run says so: its numbers are warm-cache.
+//
+// Usage: DeviceSchedulerBenchmark prepare <dir> [files=32] [sizeMiB=32]
+//        DeviceSchedulerBenchmark <dir> [files=32] [sizeMiB=32] [workers=4]
+public class DeviceSchedulerBenchmark {
+    public static void main(String[] args) throws Exception {
+        boolean prepare = args.length > 0 && args[0].equals("prepare");
+        if (prepare) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Path dir = Paths.get(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int sizeMiB = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        Path inputDir = Files.createDirectories(dir.resolve("bench-in"));
+        Path outputDir = Files.createDirectories(dir.resolve("bench-out"));
+        if (prepare) {
+            createInputs(inputDir, files, sizeMiB);
+            System.out.printf("Wrote %d files x %d MiB to %s%n", files, sizeMiB, inputDir);
+            return;
+        }
+        List<Path> inputs = findInputs(inputDir, files, sizeMiB);
+
+        System.out.printf("Device: %s, %d files x %d MiB, %d workers%n",
+                new DeviceResolver().resolve(inputDir), files, sizeMiB, workers);
+        System.out.printf("%-24s %10s %10s%n", "per-device limit", "seconds", "MiB/s");
+
+        for (int limit = 1; limit <= workers; limit++) {
+            dropOutputs(outputDir);
+            if (!evict(inputs)) {
+                System.out.println("Could not evict the inputs from the page cache, the next run is warm-cache");
+            }
+            double seconds = run(inputs, outputDir, workers, limit);
+            double mib = 2.0 * files * sizeMiB; // read + write
+            System.out.printf("%-24d %10.2f %10.1f%n", limit, seconds, mib / seconds);
+        }
+    }
+
+    private static double run(List<Path> inputs, Path outputDir, int workers, int perDevice)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        DeviceAwareScheduler scheduler = new DeviceAwareScheduler(
+                executor, workers, perDevice, perDevice, new DeviceResolver());
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Path input : inputs) {
+            Path output = outputDir.resolve(input.getFileName());
+            futures.add(scheduler.submit(() -> {
+                copy(input, output);
+                return null;
+            }, input, outputDir));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        return seconds;
+    }
+
+    private static void copy(Path input, Path output) throws IOException {
+        byte[] buffer = new byte[1024 * 1024];
+        try (InputStream in = Files.newInputStream(input);
+             FileOutputStream out = new FileOutputStream(output.toFile())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            // Otherwise the writes only reach the page cache
+            out.getFD().sync();
+        }
+    }
+
+    private static void createInputs(Path dir, int files, int sizeMiB) throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(7).nextBytes(block);
+        for (int i = 0; i < files; i++) {
+            Path file = inputPath(dir, i);
+            if (!Files.exists(file) || Files.size(file) != (long) sizeMiB * block.length) {
+                try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+                    for (int j = 0; j < sizeMiB; j++) {
+                        out.write(block);
+                    }
+                    // Dirty pages cannot be evicted, so the runs could not start cold
+                    out.getFD().sync();
+                }
+            }
+        }
+    }
+
+    private static List<Path> findInputs(Path dir, int files, int sizeMiB) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            Path file = inputPath(dir, i);
+            if (!Files.exists(file) || Files.size(file) != sizeMiB * 1024L * 1024L) {
+                throw new IllegalStateException("Missing " + file + ", run: DeviceSchedulerBenchmark prepare "
+                        + dir.getParent() + " " + files + " " + sizeMiB);
+            }
+            inputs.add(file);
+        }
+        return inputs;
+    }
+
+    private static Path inputPath(Path dir, int i) {
+        return dir.resolve(String.format("input-%04d.wav", i));
+    }
+
+    // fadvise(DONTNEED) per file needs no privileges; drop_caches needs root but drops everything
+    private static boolean evict(List<Path> inputs) throws InterruptedException {
+        boolean evicted = true;
+        for (Path input : inputs) {
+            try {
+                Process dd = new ProcessBuilder("dd", "if=" + input, "iflag=nocache", "count=0", "status=none")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                evicted &= dd.waitFor() == 0;
+            } catch (IOException e) {
+                evicted = false;
+            }
+        }
+        if (evicted) {
+            return true;
+        }
+        try {
+            Files.writeString(Paths.get("/proc/sys/vm/drop_caches"), "1");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void dropOutputs(Path dir) throws IOException {
+        try (var stream = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
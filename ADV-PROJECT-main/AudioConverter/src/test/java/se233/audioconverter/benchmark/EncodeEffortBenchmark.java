@@ -0,0 +1,65 @@
+package se233.audioconverter.benchmark;
+
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.service.ArgumentTemplate;
+import se233.audioconverter.service.AutoTuner;
+import se233.audioconverter.service.FFmpegService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Encode time versus output size for every EncodeEffort of each compressing format.
+// Uses a synthetic tone-plus-noise WAV unless a real input is given; real music gives
+// more meaningful FLAC ratios.
+//
+// Usage: EncodeEffortBenchmark [input.wav] [runs=3]
+public class EncodeEffortBenchmark {
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path workDir = Files.createTempDirectory("effort-bench");
+        Path input;
+        if (args.length > 0) {
+            input = Paths.get(args[0]);
+        } else {
+            input = workDir.resolve("sample.wav");
+            AutoTuner.writeSyntheticWav(input, 60);
+        }
+
+        String ffmpeg = new FFmpegService().getFfmpegExecutable();
+        System.out.printf("Input: %s (%d bytes), median of %d runs%n", input, Files.size(input), runs);
+        System.out.printf("%-6s %-16s %10s %12s %8s%n", "format", "effort", "seconds", "bytes", "ratio");
+
+        for (ConversionSettings.OutputFormat format : ConversionSettings.OutputFormat.values()) {
+            if (format == ConversionSettings.OutputFormat.WAV) {
+                continue;
+            }
+            for (ConversionSettings.EncodeEffort effort : ConversionSettings.EncodeEffort.values()) {
+                ConversionSettings settings = new ConversionSettings();
+                settings.setOutputFormat(format);
+                settings.setEncodeEffort(effort);
+                ArgumentTemplate template = ArgumentTemplate.compile(ffmpeg, settings);
+                Path output = workDir.resolve("out." + format.getExtension());
+
+                double[] times = new double[runs];
+                for (int i = 0; i < runs; i++) {
+                    long start = System.nanoTime();
+                    Process process = new ProcessBuilder(template.render(input.toString(), null, output.toString()))
+                            .redirectErrorStream(true)
+                            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                            .start();
+                    if (process.waitFor() != 0) {
+                        throw new IllegalStateException("ffmpeg failed for " + format + " " + effort);
+                    }
+                    times[i] = (System.nanoTime() - start) / 1e9;
+                }
+                Arrays.sort(times);
+                long size = Files.size(output);
+                System.out.printf("%-6s %-16s %10.2f %12d %8.3f%n", format, effort.getLabel(),
+                        times[runs / 2], size, size / (double) Files.size(input));
+                Files.deleteIfExists(output);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package se233.audioconverter.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+// Installs the fake ffmpeg/ffprobe scripts (fake-ffmpeg.sh, fake-ffprobe.sh in the test
+// resources) and points FFmpegService at them through ffmpeg.path/ffprobe.path. Same
+// settings and input always give the same duration, output size, failures and stalls,
+// so benchmarks built on it measure orchestration, not codec speed.
+//
+//   new FakeFfmpeg().realtimeFactor(20).failRate(0.01).install(dir).use();
+public final class FakeFfmpeg {
+    private double durationSeconds;
+    private long inputBytesPerSecond = 176400;
+    private double realtimeFactor;
+    private int bitrateKbps = 128;
+    private double failRate;
+    private double stallRate;
+    private long seed = 1;
+    private Path directory;
+
+    // Fixed input duration; by default it follows the input size as CD-quality PCM
+    public FakeFfmpeg durationSeconds(double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+        return this;
+    }
+
+    public FakeFfmpeg inputBytesPerSecond(long inputBytesPerSecond) {
+        this.inputBytesPerSecond = inputBytesPerSecond;
+        return this;
+    }
+
+    // Audio seconds per wall second; 0 finishes at once and leaves only process overhead
+    public FakeFfmpeg realtimeFactor(double realtimeFactor) {
+        this.realtimeFactor = realtimeFactor;
+        return this;
+    }
+
+    public FakeFfmpeg bitrateKbps(int bitrateKbps) {
+        this.bitrateKbps = bitrateKbps;
+        return this;
+    }
+
+    public FakeFfmpeg failRate(double failRate) {
+        this.failRate = failRate;
+        return this;
+    }
+
+    // Stalled jobs report progress once and then hang until killed
+    public FakeFfmpeg stallRate(double stallRate) {
+        this.stallRate = stallRate;
+        return this;
+    }
+
+    public FakeFfmpeg seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    // Writes the scripts and their config into dir; calling it again only rewrites the config
+    public FakeFfmpeg install(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        copyScript("fake-ffmpeg.sh", dir.resolve("ffmpeg"));
+        copyScript("fake-ffprobe.sh", dir.resolve("ffprobe"));
+        Files.writeString(dir.resolve("fake-ffmpeg.conf"), String.join("\n",
+                "DURATION_US=" + Math.round(durationSeconds * 1e6),
+                "INPUT_BYTES_PER_SECOND=" + inputBytesPerSecond,
+                "SPEED_PERCENT=" + Math.round(realtimeFactor * 100),
+                "BITRATE_KBPS=" + bitrateKbps,
+                "FAIL_PER_10000=" + Math.round(failRate * 10000),
+                "STALL_PER_10000=" + Math.round(stallRate * 10000),
+                "SEED=" + seed,
+                ""));
+        this.directory = dir;
+        return this;
+    }
+
+    // FFmpegServices created after this call use the fake
+    public FakeFfmpeg use() {
+        System.setProperty("audioconverter.ffmpeg.path", getFfmpeg().toString());
+        System.setProperty("audioconverter.ffprobe.path", directory.resolve("ffprobe").toString());
+        return this;
+    }
+
+    public Path getFfmpeg() {
+        if (directory == null) {
+            throw new IllegalStateException("install() first");
+        }
+        return directory.resolve("ffmpeg");
+    }
+
+    private static void copyScript(String resource, Path target) throws IOException {
+        try (InputStream in = FakeFfmpeg.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing test resource " + resource);
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rwxr-xr-x"));
+    }
+}
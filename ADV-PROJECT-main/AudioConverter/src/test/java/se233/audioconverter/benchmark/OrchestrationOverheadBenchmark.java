@@ -0,0 +1,145 @@
+package se233.audioconverter.benchmark;
+
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.service.AppConfig;
+import se233.audioconverter.service.ArgumentTemplate;
+import se233.audioconverter.service.FFmpegService;
+import se233.audioconverter.service.MicroBatchPlanner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Per-job cost of everything around the encoder, measured against the fake ffmpeg so codec
+// time does not drown it out:
+//   spawn      bare ProcessBuilder start + waitFor of the fake with the real command line
+//   service    FFmpegService.convertAudio, one job at a time (templates, monitor, watchdog,
+//              estimators, accounting); its excess over spawn is the service overhead
+//   scheduled  the same through DeviceAwareScheduler with N workers
+//   batched    FFmpegService.convertBatch over MicroBatchPlanner groups, several inputs per process
+// A second pass gives the fake a real duration and reports how close the scheduler gets
+// to the ideal wall time, and how much a failure rate costs.
+//
+// Usage: OrchestrationOverheadBenchmark [dir] [jobs=2000] [workers=cores]
+public class OrchestrationOverheadBenchmark {
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"))
+                .resolve("orchestration-bench");
+        int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        if (System.getProperty("audioconverter.data.dir") == null) {
+            System.setProperty("audioconverter.data.dir", dir.resolve("data").toString());
+        }
+        FakeFfmpeg fake = new FakeFfmpeg().install(dir.resolve("bin")).use();
+        List<File> inputs = OrchestrationSoak.createInputs(dir.resolve("in"), jobs);
+        Path outputDir = Files.createDirectories(dir.resolve("out"));
+        ConversionSettings settings = new ConversionSettings();
+        FFmpegService ffmpegService = new FFmpegService();
+
+        System.out.printf("%d jobs, %d workers, encoder %s%n", jobs, workers, fake.getFfmpeg());
+        System.out.printf("%-28s %10s %12s%n", "stage", "seconds", "us/job");
+
+        // Warm-up so class loading and JIT don't land on the first stage
+        runService(ffmpegService, inputs.subList(0, Math.min(200, jobs)), settings, outputDir);
+
+        ArgumentTemplate template = ffmpegService.templateFor(settings);
+        long start = System.nanoTime();
+        for (File input : inputs) {
+            Process process = new ProcessBuilder(template.render(input.getPath(), null,
+                    outputDir.resolve(input.getName().replace(".wav", ".mp3")).toString()))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.waitFor();
+        }
+        double spawn = report("spawn", start, jobs);
+        double service = report("service", runService(ffmpegService, inputs, settings, outputDir), jobs);
+        System.out.printf("%-28s %10s %12.0f%n", "  service overhead", "", service - spawn);
+        report("scheduled x" + workers, runScheduled(ffmpegService, inputs, settings, outputDir, workers), jobs);
+        report("batched", runBatched(ffmpegService, inputs, settings, outputDir), jobs);
+
+        // 2 s of audio at 20x realtime is 100 ms of wall time per job
+        int timedJobs = Math.min(jobs, workers * 16);
+        List<File> timed = inputs.subList(0, timedJobs);
+        new FakeFfmpeg().durationSeconds(2).realtimeFactor(20).install(dir.resolve("bin"));
+        long begin = System.nanoTime();
+        runScheduled(ffmpegService, timed, settings, outputDir, workers);
+        double actual = (System.nanoTime() - begin) / 1e9;
+        double ideal = Math.ceil(timedJobs / (double) workers) * 0.1;
+        System.out.printf("%-28s %10.2f %11.0f%% of ideal %.2f s%n", "timed x" + workers, actual,
+                100 * ideal / actual, ideal);
+
+        new FakeFfmpeg().failRate(0.1).install(dir.resolve("bin"));
+        AtomicInteger failures = new AtomicInteger();
+        start = System.nanoTime();
+        for (File input : inputs) {
+            try {
+                ffmpegService.convertAudio(new AudioFile(input.getAbsolutePath()), settings,
+                        outputDir.toString(), null);
+            } catch (Exception e) {
+                failures.incrementAndGet();
+            }
+        }
+        report("service, 10% failing", start, jobs);
+        System.out.printf("%-28s %10d%n", "  failed", failures.get());
+
+        ffmpegService.shutdown();
+    }
+
+    static long runService(FFmpegService ffmpegService, List<File> inputs, ConversionSettings settings,
+                           Path outputDir) throws Exception {
+        long start = System.nanoTime();
+        for (File input : inputs) {
+            ffmpegService.convertAudio(new AudioFile(input.getAbsolutePath()), settings, outputDir.toString(), null);
+        }
+        return start;
+    }
+
+    static long runScheduled(FFmpegService ffmpegService, List<File> inputs, ConversionSettings settings,
+                             Path outputDir, int workers) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        DeviceAwareScheduler scheduler = DeviceAwareScheduler.fromConfig(pool, workers, AppConfig.get());
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (File input : inputs) {
+            AudioFile audioFile = new AudioFile(input.getAbsolutePath());
+            futures.add(scheduler.submit(() -> {
+                ffmpegService.convertAudio(audioFile, settings, outputDir.toString(), null);
+                return null;
+            }, input.toPath(), outputDir));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        pool.shutdown();
+        return start;
+    }
+
+    static long runBatched(FFmpegService ffmpegService, List<File> inputs, ConversionSettings settings,
+                           Path outputDir) {
+        List<AudioFile> files = new ArrayList<>();
+        for (File input : inputs) {
+            files.add(new AudioFile(input.getAbsolutePath()));
+        }
+        long start = System.nanoTime();
+        for (List<AudioFile> group : new MicroBatchPlanner(10, 60, 32).plan(files, settings)) {
+            ffmpegService.convertBatch(group, settings, outputDir.toString());
+        }
+        return start;
+    }
+
+    private static double report(String stage, long startNanos, int jobs) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double perJob = seconds * 1e6 / jobs;
+        System.out.printf("%-28s %10.2f %12.0f%n", stage, seconds, perJob);
+        return perJob;
+    }
+}
@@ -0,0 +1,346 @@
+package se233.audioconverter.benchmark;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import se233.audioconverter.Launcher;
+import se233.audioconverter.controller.DeviceAwareScheduler;
+import se233.audioconverter.controller.MainViewController;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.service.AppConfig;
+import se233.audioconverter.service.FFmpegService;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Soak run for the conversion orchestration. Pushes many tiny WAV inputs through the fake
+// encoder (FakeFfmpeg), first straight through DeviceAwareScheduler + FFmpegService, then through the
+// FileDropStageController/MainViewController flow on a headless JavaFX stage (Monocle).
+// After every round it records heap after GC, live threads, open file descriptors and FX
+// pulse gaps; it exits with status 1 when they grow past the limits or a job fails.
+// Round 0 is warm-up, growth is measured from round 1 to the last round.
+//
+//   mvn -Psoak verify
+//
+// or by hand:
+//   java -cp <test classpath> -Dglass.platform=Monocle -Dmonocle.platform=Headless \
+//       -Dprism.order=sw se233.audioconverter.benchmark.OrchestrationSoak
+//
+// System properties (defaults in brackets): soak.dir [target/soak], soak.jobs [100000],
+// soak.rounds [10], soak.workers [4], soak.gui [true], soak.maxHeapGrowthMiB [64],
+// soak.maxThreadGrowth [4], soak.maxFdGrowth [16], soak.maxPulseGapMillis [250],
+// soak.roundTimeoutMinutes [30]
+public class OrchestrationSoak {
+    private static final List<Long> pulseGaps = new ArrayList<>();
+
+    private static class Sample {
+        final String phase;
+        final int round;
+        final int jobs;
+        final int failed;
+        final double seconds;
+        final long heapBytes;
+        final int threads;
+        final long fds;
+        final long pulseP99Millis;
+        final long pulseMaxMillis;
+
+        Sample(String phase, int round, int jobs, int failed, double seconds, long heapBytes, int threads,
+               long fds, long pulseP99Millis, long pulseMaxMillis) {
+            this.phase = phase;
+            this.round = round;
+            this.jobs = jobs;
+            this.failed = failed;
+            this.seconds = seconds;
+            this.heapBytes = heapBytes;
+            this.threads = threads;
+            this.fds = fds;
+            this.pulseP99Millis = pulseP99Millis;
+            this.pulseMaxMillis = pulseMaxMillis;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(System.getProperty("soak.dir", "target/soak")).toAbsolutePath();
+        int jobs = Integer.getInteger("soak.jobs", 100000);
+        int rounds = Math.max(2, Integer.getInteger("soak.rounds", 10));
+        jobs = Math.max(jobs, rounds);
+        int workers = Integer.getInteger("soak.workers", 4);
+        boolean gui = Boolean.parseBoolean(System.getProperty("soak.gui", "true"));
+
+        if (System.getProperty("audioconverter.data.dir") == null) {
+            System.setProperty("audioconverter.data.dir", dir.resolve("data").toString());
+        }
+        new FakeFfmpeg().install(dir.resolve("bin")).use();
+        List<List<File>> slices = slices(createInputs(dir.resolve("in"), jobs), rounds);
+
+        System.out.printf("%d jobs in %d rounds, %d workers, inputs in %s%n", jobs, rounds, workers, dir);
+        System.out.printf("%-7s %5s %7s %6s %8s %9s %8s %5s %10s %10s%n", "phase", "round", "jobs",
+                "failed", "seconds", "heap MiB", "threads", "fds", "pulse p99", "pulse max");
+
+        List<String> problems = new ArrayList<>();
+        problems.addAll(check(runEngine(dir, slices, workers)));
+        if (gui) {
+            problems.addAll(check(runGui(dir, slices)));
+        }
+
+        if (problems.isEmpty()) {
+            System.out.println("Soak passed");
+            System.exit(0);
+        }
+        problems.forEach(problem -> System.out.println("FAIL " + problem));
+        System.exit(1);
+    }
+
+    private static List<Sample> runEngine(Path dir, List<List<File>> slices, int workers)
+            throws Exception {
+        FFmpegService ffmpegService = new FFmpegService();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        DeviceAwareScheduler scheduler = DeviceAwareScheduler.fromConfig(pool, workers, AppConfig.get());
+        Path outputDir = emptyDirectory(dir.resolve("out-engine"));
+        ConversionSettings settings = new ConversionSettings();
+
+        List<Sample> samples = new ArrayList<>();
+        for (int round = 0; round < slices.size(); round++) {
+            AtomicInteger failed = new AtomicInteger();
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (File file : slices.get(round)) {
+                AudioFile audioFile = new AudioFile(file.getAbsolutePath());
+                futures.add(scheduler.submit(() -> {
+                    ffmpegService.convertAudio(audioFile, settings, outputDir.toString(), null);
+                    return null;
+                }, file.toPath(), outputDir).exceptionally(e -> {
+                    failed.incrementAndGet();
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            samples.add(sample("engine", round, slices.get(round).size(), failed.get(),
+                    (System.nanoTime() - start) / 1e9));
+        }
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        ffmpegService.shutdown();
+        return samples;
+    }
+
+    private static List<Sample> runGui(Path dir, List<List<File>> slices) throws Exception {
+        long timeoutMillis = TimeUnit.MINUTES.toMillis(Integer.getInteger("soak.roundTimeoutMinutes", 30));
+        Path outputDir = emptyDirectory(dir.resolve("out-gui"));
+
+        CompletableFuture<MainViewController> ready = new CompletableFuture<>();
+        Platform.startup(() -> {
+            try {
+                FXMLLoader loader = new FXMLLoader(Launcher.class.getResource("main-view.fxml"));
+                Stage stage = new Stage();
+                stage.setScene(new Scene(loader.load()));
+                Launcher.primaryStage = stage;
+                stage.show();
+                pulseTimer().start();
+                ready.complete(loader.getController());
+            } catch (IOException | RuntimeException e) {
+                ready.completeExceptionally(e);
+            }
+        });
+        MainViewController controller = ready.get(1, TimeUnit.MINUTES);
+
+        List<Sample> samples = new ArrayList<>();
+        for (int round = 0; round < slices.size(); round++) {
+            List<File> slice = slices.get(round);
+            synchronized (pulseGaps) {
+                pulseGaps.clear();
+            }
+            long start = System.nanoTime();
+            onFx(() -> {
+                controller.clearFiles();
+                controller.addFiles(slice);
+                controller.startConversionTo(outputDir.toFile());
+                return null;
+            });
+
+            // The completion alert is modal; closing it lets the controller re-enable the UI
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (onFx(() -> {
+                closeDialogs();
+                return controller.isConverting();
+            })) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("GUI round " + round + " did not finish");
+                }
+                Thread.sleep(250);
+            }
+            int failed = onFx(() -> (int) controller.getAudioFiles().stream()
+                    .filter(f -> f.getStatus() != AudioFile.ConversionStatus.COMPLETED)
+                    .count());
+            samples.add(sample("gui", round, slice.size(), failed, (System.nanoTime() - start) / 1e9));
+        }
+
+        onFx(() -> {
+            controller.clearFiles();
+            return null;
+        });
+        Platform.exit();
+        return samples;
+    }
+
+    // Every pulse runs the timer, so the gap between calls is the pulse interval the user sees
+    private static AnimationTimer pulseTimer() {
+        return new AnimationTimer() {
+            private long last;
+
+            @Override
+            public void handle(long now) {
+                if (last != 0) {
+                    synchronized (pulseGaps) {
+                        pulseGaps.add((now - last) / 1_000_000);
+                    }
+                }
+                last = now;
+            }
+        };
+    }
+
+    private static void closeDialogs() {
+        for (Window window : new ArrayList<>(Window.getWindows())) {
+            if (window != Launcher.primaryStage && window instanceof Stage stage) {
+                stage.close();
+            }
+        }
+    }
+
+    private static <T> T onFx(Callable<T> action) throws Exception {
+        FutureTask<T> task = new FutureTask<>(action);
+        Platform.runLater(task);
+        return task.get(1, TimeUnit.MINUTES);
+    }
+
+    private static Sample sample(String phase, int round, int jobs, int failed, double seconds)
+            throws InterruptedException {
+        // Two collections so objects with finalizers/cleaners from the round are gone too
+        System.gc();
+        Thread.sleep(200);
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long fds = os instanceof UnixOperatingSystemMXBean unix ? unix.getOpenFileDescriptorCount() : -1;
+
+        long p99 = 0;
+        long max = 0;
+        synchronized (pulseGaps) {
+            if (!pulseGaps.isEmpty()) {
+                long[] gaps = pulseGaps.stream().mapToLong(Long::longValue).sorted().toArray();
+                p99 = gaps[(int) Math.min(gaps.length - 1, Math.ceil(gaps.length * 0.99) - 1)];
+                max = gaps[gaps.length - 1];
+            }
+        }
+
+        Sample sample = new Sample(phase, round, jobs, failed, seconds, heap, threads, fds, p99, max);
+        System.out.printf("%-7s %5d %7d %6d %8.1f %9.1f %8d %5d %10d %10d%n", phase, round, jobs, failed,
+                seconds, heap / 1048576.0, threads, fds, p99, max);
+        return sample;
+    }
+
+    private static List<String> check(List<Sample> samples) {
+        long maxHeapGrowth = Long.getLong("soak.maxHeapGrowthMiB", 64) * 1048576;
+        int maxThreadGrowth = Integer.getInteger("soak.maxThreadGrowth", 4);
+        int maxFdGrowth = Integer.getInteger("soak.maxFdGrowth", 16);
+        long maxPulseGap = Long.getLong("soak.maxPulseGapMillis", 250);
+
+        List<String> problems = new ArrayList<>();
+        Sample baseline = samples.get(1);
+        Sample last = samples.get(samples.size() - 1);
+        String phase = baseline.phase;
+
+        int failed = samples.stream().mapToInt(s -> s.failed).sum();
+        if (failed > 0) {
+            problems.add(phase + ": " + failed + " job(s) failed");
+        }
+        if (last.heapBytes - baseline.heapBytes > maxHeapGrowth) {
+            problems.add(String.format("%s: heap grew %.1f MiB after warm-up (limit %d MiB)", phase,
+                    (last.heapBytes - baseline.heapBytes) / 1048576.0, maxHeapGrowth / 1048576));
+        }
+        if (last.threads - baseline.threads > maxThreadGrowth) {
+            problems.add(phase + ": thread count grew from " + baseline.threads + " to " + last.threads);
+        }
+        if (baseline.fds >= 0 && last.fds - baseline.fds > maxFdGrowth) {
+            problems.add(phase + ": open file descriptors grew from " + baseline.fds + " to " + last.fds);
+        }
+        samples.stream().filter(s -> s.round > 0 && s.pulseP99Millis > maxPulseGap).findFirst()
+                .ifPresent(s -> problems.add(phase + ": FX pulse p99 " + s.pulseP99Millis
+                        + " ms in round " + s.round + " (limit " + maxPulseGap + " ms)"));
+        return problems;
+    }
+
+    // Contents differ per file so content deduplication does not collapse the batch
+    static List<File> createInputs(Path dir, int count) throws IOException {
+        Files.createDirectories(dir);
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Path file = dir.resolve(String.format("%03d", i / 1000)).resolve(String.format("in-%06d.wav", i));
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Files.write(file, tinyWav(i));
+            }
+            files.add(file.toFile());
+        }
+        return files;
+    }
+
+    // 64 frames of 8 kHz mono 16-bit PCM, the index spelled into the first samples
+    private static byte[] tinyWav(int index) {
+        int frames = 64;
+        ByteBuffer wav = ByteBuffer.allocate(44 + frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + frames * 2).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(8000).putInt(16000).putShort((short) 2).putShort((short) 16);
+        wav.put("data".getBytes()).putInt(frames * 2);
+        wav.putInt(index);
+        return wav.array();
+    }
+
+    private static List<List<File>> slices(List<File> files, int rounds) {
+        List<List<File>> slices = new ArrayList<>();
+        int size = (files.size() + rounds - 1) / rounds;
+        for (int i = 0; i < files.size(); i += size) {
+            slices.add(files.subList(i, Math.min(files.size(), i + size)));
+        }
+        return slices;
+    }
+
+    private static Path emptyDirectory(Path dir) throws IOException {
+        if (Files.exists(dir)) {
+            try (Stream<Path> walk = Files.walk(dir)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        return Files.createDirectories(dir);
+    }
+}
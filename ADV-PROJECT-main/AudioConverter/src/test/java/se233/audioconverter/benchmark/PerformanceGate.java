@@ -0,0 +1,331 @@
+package se233.audioconverter.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import se233.audioconverter.controller.FileDropStageController;
+import se233.audioconverter.model.AudioFile;
+import se233.audioconverter.model.AudioFileTable;
+import se233.audioconverter.model.ConversionSettings;
+import se233.audioconverter.service.FFmpegService;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Runs a fixed set of benchmarks and compares them with the committed baseline
+// (perf-baseline.json in the project root), failing on any metric that moved past its
+// tolerance in the bad direction:
+//   jmh.*                  the JMH benchmarks in JMH_BENCHMARKS, short iterations
+//   e2e.filesPerSecond     scheduled conversions against the fake ffmpeg at zero codec time
+//   e2e.jobOverheadMicros  FFmpegService per-job cost above a bare process spawn (median block)
+//   import.addFilesMillis  FileDropStageController.addFiles of perf.importFiles paths
+// The import metric needs the JavaFX toolkit (Monocle when headless); without it the row
+// is SKIPPED. With -Dperf.requireAll=true (the perf profile) skipping a metric that is in the
+// baseline fails the gate. A metric with no baseline entry yet, measured or skipped, only
+// warns until a recording (-Dperf.update=true) adds it.
+//
+// Baselines are per machine. Record one on the machine that runs the gate with
+// -Dperf.update=true, which rewrites the values and keeps units, directions and tolerances.
+//
+// Usage: PerformanceGate [baseline=perf-baseline.json] [dir]
+//   -Dperf.jobs=1000 -Dperf.workers=<cores> -Dperf.importFiles=100000 -Dperf.jmh=true
+public class PerformanceGate {
+    private static final List<String> JMH_BENCHMARKS = List.of(PcmKernelBenchmark.class.getName());
+    private static final double DEFAULT_TOLERANCE = 0.2;
+
+    // One baseline entry; tolerance is the allowed relative change in the bad direction
+    static final class Metric {
+        double value;
+        String unit;
+        boolean higherIsBetter;
+        double tolerance = DEFAULT_TOLERANCE;
+
+        Metric(double value, String unit, boolean higherIsBetter) {
+            this.value = value;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        double limit() {
+            return higherIsBetter ? value * (1 - tolerance) : value * (1 + tolerance);
+        }
+
+        boolean regressed(double measured) {
+            return higherIsBetter ? measured < limit() : measured > limit();
+        }
+    }
+
+    static final class Baseline {
+        String note;
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path baselineFile = Paths.get(args.length > 0 ? args[0] : "perf-baseline.json");
+        Path dir = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"))
+                .resolve("perf-gate");
+        if (System.getProperty("audioconverter.data.dir") == null) {
+            System.setProperty("audioconverter.data.dir", dir.resolve("data").toString());
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Baseline baseline = new Baseline();
+        if (Files.exists(baselineFile)) {
+            try (Reader reader = Files.newBufferedReader(baselineFile)) {
+                baseline = gson.fromJson(reader, Baseline.class);
+            }
+        }
+
+        Map<String, Metric> measured = new LinkedHashMap<>();
+        List<String> skipped = new ArrayList<>();
+        if (Boolean.parseBoolean(System.getProperty("perf.jmh", "true"))) {
+            runJmh(measured);
+        } else {
+            baseline.metrics.keySet().stream().filter(name -> name.startsWith("jmh.")).forEach(skipped::add);
+        }
+        runEndToEnd(dir, measured);
+        try {
+            measured.put("import.addFilesMillis", new Metric(measureImport(dir), "ms", false));
+        } catch (Exception | LinkageError e) {
+            System.out.println("Import benchmark skipped, no JavaFX toolkit: " + e);
+            skipped.add("import.addFilesMillis");
+        }
+
+        if (Boolean.getBoolean("perf.update")) {
+            for (Map.Entry<String, Metric> entry : measured.entrySet()) {
+                Metric old = baseline.metrics.get(entry.getKey());
+                Metric updated = entry.getValue();
+                if (old != null) {
+                    updated.tolerance = old.tolerance;
+                }
+                updated.value = Math.round(updated.value * 100) / 100.0;
+                baseline.metrics.put(entry.getKey(), updated);
+            }
+            try (Writer writer = Files.newBufferedWriter(baselineFile)) {
+                gson.toJson(baseline, writer);
+                writer.write(System.lineSeparator());
+            }
+            System.out.println("Baseline written to " + baselineFile.toAbsolutePath());
+            return;
+        }
+
+        int regressions = report(baseline, measured, skipped);
+        // Nothing to compare against yet: warn until a recording adds them
+        List<String> unrecorded = new ArrayList<>(measured.keySet());
+        unrecorded.addAll(skipped);
+        unrecorded.removeAll(baseline.metrics.keySet());
+        if (!unrecorded.isEmpty()) {
+            System.out.println("WARNING: not in the baseline, record with -Dperf.update=true: " + unrecorded);
+        }
+        // A recorded metric that was not measured this time would silently stop being gated
+        List<String> unmeasured = new ArrayList<>(skipped);
+        unmeasured.retainAll(baseline.metrics.keySet());
+        boolean missing = Boolean.getBoolean("perf.requireAll") && !unmeasured.isEmpty();
+        if (regressions > 0 || missing) {
+            System.out.printf("FAILED: %d regression(s)%s%n", regressions,
+                    missing ? ", baseline metrics skipped: " + unmeasured : "");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static void runJmh(Map<String, Metric> measured) throws Exception {
+        // Enough to catch a lost vector path or an extra copy, not a publication run
+        OptionsBuilder builder = new OptionsBuilder();
+        for (String benchmark : JMH_BENCHMARKS) {
+            builder.include(benchmark.replace(".", "\\.") + "\\.");
+        }
+        Options options = builder
+                .warmupIterations(2).warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3).measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+        for (RunResult result : new Runner(options).run()) {
+            String name = result.getParams().getBenchmark();
+            name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+            List<String> params = new ArrayList<>();
+            for (String key : result.getParams().getParamsKeys()) {
+                params.add(result.getParams().getParam(key));
+            }
+            if (!params.isEmpty()) {
+                name += "[" + String.join(",", params) + "]";
+            }
+            measured.put("jmh." + name, new Metric(result.getPrimaryResult().getScore(),
+                    result.getPrimaryResult().getScoreUnit(), true));
+        }
+    }
+
+    private static void runEndToEnd(Path dir, Map<String, Metric> measured) throws Exception {
+        int jobs = Integer.getInteger("perf.jobs", 1000);
+        int workers = Integer.getInteger("perf.workers", Runtime.getRuntime().availableProcessors());
+        FakeFfmpeg fake = new FakeFfmpeg().install(dir.resolve("bin")).use();
+        List<File> inputs = OrchestrationSoak.createInputs(dir.resolve("in"), jobs);
+        Path outputDir = Files.createDirectories(dir.resolve("out"));
+        ConversionSettings settings = new ConversionSettings();
+        FFmpegService ffmpegService = new FFmpegService();
+
+        OrchestrationOverheadBenchmark.runService(ffmpegService, inputs.subList(0, Math.min(200, jobs)),
+                settings, outputDir);
+
+        // Spawn and service blocks alternate and the median block difference is kept, so
+        // drift in fork cost on a busy host does not land on one side only
+        List<String> command = ffmpegService.templateFor(settings).render(inputs.get(0).getPath(), null,
+                outputDir.resolve("spawn.mp3").toString());
+        int blocks = 10;
+        int blockJobs = Math.max(1, jobs / blocks);
+        double[] overhead = new double[blocks];
+        double spawnMicros = 0;
+        double serviceMicros = 0;
+        for (int b = 0; b < blocks; b++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < blockJobs; i++) {
+                new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start()
+                        .waitFor();
+            }
+            double spawn = (System.nanoTime() - start) / 1e3 / blockJobs;
+            List<File> block = inputs.subList(b * blockJobs, Math.min(jobs, (b + 1) * blockJobs));
+            start = OrchestrationOverheadBenchmark.runService(ffmpegService, block, settings, outputDir);
+            double service = (System.nanoTime() - start) / 1e3 / block.size();
+            overhead[b] = Math.max(0, service - spawn);
+            spawnMicros += spawn / blocks;
+            serviceMicros += service / blocks;
+        }
+        Arrays.sort(overhead);
+        long start = OrchestrationOverheadBenchmark.runScheduled(ffmpegService, inputs, settings, outputDir, workers);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        ffmpegService.shutdown();
+
+        System.out.printf("e2e: %d jobs on %s, spawn %.0f us, service %.0f us, scheduled x%d %.2f s%n",
+                jobs, fake.getFfmpeg(), spawnMicros, serviceMicros, workers, seconds);
+        measured.put("e2e.filesPerSecond", new Metric(jobs / seconds, "files/s", true));
+        measured.put("e2e.jobOverheadMicros", new Metric(overhead[blocks / 2], "us/job", false));
+    }
+
+    // Median of five imports into a shown list, clearing in between
+    private static double measureImport(Path dir) throws Exception {
+        int count = Integer.getInteger("perf.importFiles", 100000);
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Paths need not exist; the cost under test is the controller, not stat()
+            files.add(dir.resolve("import").resolve(String.format("track-%06d.wav", i)).toFile());
+        }
+
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Platform.startup(() -> started.complete(null));
+        started.get(1, TimeUnit.MINUTES);
+
+        double[] millis = new double[5];
+        try {
+            FileDropStageController controller = onFx(() -> {
+                AudioFileTable audioFiles = new AudioFileTable();
+                ListView<AudioFile> list = new ListView<>();
+                VBox previewBox = new VBox(list);
+                VBox root = new VBox(new VBox(), previewBox, new Label());
+                Stage stage = new Stage();
+                stage.setScene(new Scene(root, 800, 600));
+                stage.show();
+                return new FileDropStageController(audioFiles, (VBox) root.getChildren().get(0), list,
+                        previewBox, (Label) root.getChildren().get(2), null);
+            });
+
+            for (int i = 0; i < millis.length; i++) {
+                onFx(() -> {
+                    controller.clearFiles();
+                    return null;
+                });
+                millis[i] = onFx(() -> {
+                    long start = System.nanoTime();
+                    controller.addFiles(files);
+                    return (System.nanoTime() - start) / 1e6;
+                });
+            }
+        } finally {
+            Platform.exit();
+        }
+        Arrays.sort(millis);
+        System.out.printf("import: %d files, median %.1f ms%n", count, millis[millis.length / 2]);
+        return millis[millis.length / 2];
+    }
+
+    private static <T> T onFx(Callable<T> task) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                // Toolkit failures (missing native libraries) are Errors; fail now, not after the timeout
+                result.completeExceptionally(t);
+            }
+        });
+        return result.get(5, TimeUnit.MINUTES);
+    }
+
+    private static int report(Baseline baseline, Map<String, Metric> measured, List<String> skipped) {
+        System.out.printf("%n%-40s %12s %12s %9s %12s  %s%n", "metric", "baseline", "measured", "change",
+                "limit", "status");
+        int regressions = 0;
+        List<String> names = new ArrayList<>(baseline.metrics.keySet());
+        for (String name : measured.keySet()) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        for (String name : skipped) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        for (String name : names) {
+            Metric base = baseline.metrics.get(name);
+            Metric now = measured.get(name);
+            String status;
+            if (now == null) {
+                status = skipped.contains(name) ? "SKIPPED" : "MISSING";
+                regressions += skipped.contains(name) ? 0 : 1;
+                System.out.printf("%-40s %12s %12s %9s %12s  %s%n", name, base != null ? String.format("%.2f", base.value) : "-",
+                        "-", "-", base != null ? String.format("%.2f", base.limit()) : "-", status);
+                continue;
+            }
+            if (base == null) {
+                System.out.printf("%-40s %12s %12.2f %9s %12s  NEW (%s)%n", name, "-", now.value, "-", "-", now.unit);
+                continue;
+            }
+            double change = base.value != 0 ? (now.value - base.value) / base.value * 100 : 0;
+            boolean better = base.higherIsBetter ? now.value > base.value : now.value < base.value;
+            if (base.regressed(now.value)) {
+                status = "REGRESSED";
+                regressions++;
+            } else {
+                status = better ? "ok, better" : "ok";
+            }
+            System.out.printf("%-40s %12.2f %12.2f %+8.1f%% %12.2f  %s (%s)%n", name, base.value, now.value,
+                    change, base.limit(), status, base.unit);
+        }
+        return regressions;
+    }
+}
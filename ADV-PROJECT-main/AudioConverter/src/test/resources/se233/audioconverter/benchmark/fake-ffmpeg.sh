@@ -0,0 +1,122 @@
+#!/bin/sh
+# Deterministic stand-in for ffmpeg, installed by FakeFfmpeg. Follows the parts of the CLI
+# contract FFmpegService relies on (-version, -i, -progress pipe:1 or pipe:2, loudnorm JSON, s16le to
+# stdout, several -i/-map/output groups in one call, exit codes) without doing any audio work. Behaviour comes from fake-ffmpeg.conf
+# next to this script; all values are integers so no helper process is needed:
+#   DURATION_US             input duration, 0 = input size / INPUT_BYTES_PER_SECOND
+#   INPUT_BYTES_PER_SECOND
+#   SPEED_PERCENT           realtime factor x 100, 0 = finish at once
+#   BITRATE_KBPS            output size = duration x bitrate
+#   FAIL_PER_10000          inputs that fail, picked by hashing SEED and the input path
+#   STALL_PER_10000         inputs that hang after the first progress report
+#   SEED
+DURATION_US=0
+INPUT_BYTES_PER_SECOND=176400
+SPEED_PERCENT=0
+BITRATE_KBPS=128
+FAIL_PER_10000=0
+STALL_PER_10000=0
+SEED=1
+conf="$(dirname "$0")/fake-ffmpeg.conf"
+[ -f "$conf" ] && . "$conf"
+
+if [ "$1" = "-version" ]; then
+    echo "ffmpeg version 6.0-fake Copyright (c) 2000-2023 the FFmpeg developers"
+    exit 0
+fi
+
+# Inputs and outputs are newline separated lists; the nth output is encoded from the nth input
+nl='
+'
+inputs=
+outputs=
+output=
+progress=
+format=
+analyze=
+while [ $# -gt 0 ]; do
+    case "$1" in
+        -i) inputs="$inputs$2$nl"; shift ;;
+        -progress) progress="$2"; shift ;;
+        -f) format="$2"; shift ;;
+        -af) case "$2" in *print_format=json*) analyze=1 ;; esac; shift ;;
+        -c:a|-ac|-ar|-b:a|-q:a|-threads|-v|-compression_level|-aac_coder|-map|-map_metadata) shift ;;
+        -) output="-" ;;
+        -*) ;;
+        *) outputs="$outputs$1$nl" ;;
+    esac
+    shift
+done
+
+# Like ffmpeg, one input that cannot be opened or decoded fails the whole call
+IFS=$nl
+duration_us=0
+sizes=
+stall=0
+for input in $inputs; do
+    if [ ! -f "$input" ]; then
+        echo "$input: No such file or directory" >&2
+        exit 1
+    fi
+    input_us=$DURATION_US
+    if [ "$input_us" -le 0 ]; then
+        size=$(wc -c < "$input")
+        input_us=$((size * 1000000 / INPUT_BYTES_PER_SECOND))
+    fi
+    duration_us=$((duration_us + input_us))
+    sizes="$sizes$((input_us * BITRATE_KBPS / 8000))$nl"
+
+    hash=$(printf '%s:%s' "$SEED" "$input" | cksum)
+    hash=${hash%% *}
+    if [ $((hash % 10000)) -lt "$FAIL_PER_10000" ]; then
+        echo "$input: Invalid data found when processing input" >&2
+        exit 1
+    fi
+    if [ $((hash / 10000 % 10000)) -lt "$STALL_PER_10000" ]; then
+        stall=1
+    fi
+done
+if [ -z "$inputs" ]; then
+    echo "Output file #0 does not contain any stream" >&2
+    exit 1
+fi
+out_bytes=$((duration_us * BITRATE_KBPS / 8000))
+
+# One report per half second of wall time, at least one
+wall_us=0
+if [ "$SPEED_PERCENT" -gt 0 ]; then
+    wall_us=$((duration_us * 100 / SPEED_PERCENT))
+fi
+steps=$((wall_us / 500000))
+[ "$steps" -lt 1 ] && steps=1
+step_us=$((wall_us / steps))
+i=1
+while [ "$i" -le "$steps" ]; do
+    if [ "$step_us" -gt 0 ]; then
+        sleep "$((step_us / 1000000)).$(printf '%06d' $((step_us % 1000000)))"
+    fi
+    if [ "$progress" = "pipe:1" ] || [ "$progress" = "pipe:2" ]; then
+        [ "$progress" = "pipe:2" ] && exec 3>&2 || exec 3>&1
+        printf 'out_time_us=%d\ntotal_size=%d\nprogress=%s\n' $((duration_us * i / steps)) \
+            $((out_bytes * i / steps)) "$([ "$i" -eq "$steps" ] && echo end || echo continue)" >&3
+    fi
+    if [ "$stall" -eq 1 ]; then
+        exec sleep 2147483647
+    fi
+    i=$((i + 1))
+done
+
+if [ -n "$analyze" ]; then
+    printf '{\n"input_i" : "-23.00",\n"input_tp" : "-3.00",\n"input_lra" : "7.00",\n"input_thresh" : "-33.00"\n}\n' >&2
+elif [ "$output" = "-" ]; then
+    if [ "$format" = "s16le" ]; then
+        head -c $((duration_us * 44100 / 1000000)) /dev/zero
+    fi
+else
+    set -- $sizes
+    for target in $outputs; do
+        head -c "$1" /dev/zero > "$target"
+        shift
+    done
+fi
+exit 0
@@ -0,0 +1,30 @@
+#!/bin/sh
+# Stand-in for ffprobe, installed by FakeFfmpeg next to fake ffmpeg and sharing its
+# fake-ffmpeg.conf. Reports one 44.1 kHz stereo audio stream and the same duration the
+# fake encoder would use.
+DURATION_US=0
+INPUT_BYTES_PER_SECOND=176400
+conf="$(dirname "$0")/fake-ffmpeg.conf"
+[ -f "$conf" ] && . "$conf"
+
+if [ "$1" = "-version" ]; then
+    echo "ffprobe version 6.0-fake Copyright (c) 2007-2023 the FFmpeg developers"
+    exit 0
+fi
+
+for arg; do
+    input="$arg"
+done
+if [ ! -f "$input" ]; then
+    echo '{"error":{"code":-2,"string":"No such file or directory"}}'
+    exit 1
+fi
+
+size=$(wc -c < "$input")
+duration_us=$DURATION_US
+if [ "$duration_us" -le 0 ]; then
+    duration_us=$((size * 1000000 / INPUT_BYTES_PER_SECOND))
+fi
+printf '{"streams":[{"index":0,"codec_name":"pcm_s16le","codec_type":"audio","sample_rate":"44100","channels":2,"bit_rate":"1411200"}],'
+printf '"format":{"nb_streams":1,"format_name":"wav","duration":"%d.%06d","size":"%d","bit_rate":"1411200"}}\n' \
+    $((duration_us / 1000000)) $((duration_us % 1000000)) "$size"